@@ -0,0 +1,98 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.benchmarks;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.buffers.bytes.CyclicByteBuffer;
+import be.nabu.utils.io.buffers.bytes.DynamicByteBuffer;
+import be.nabu.utils.io.buffers.bytes.StaticByteBuffer;
+
+/**
+ * Writes a block of data to a buffer and reads or peeks it out again
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BufferBenchmark {
+
+	@Param({ "64", "4096", "65536" })
+	private int size;
+	
+	@Param({ "static", "cyclic", "dynamic" })
+	private String type;
+	
+	private byte [] data, result;
+	private ByteBuffer buffer;
+	private StaticByteBuffer target;
+	
+	@Setup
+	public void setup() {
+		data = new byte[size];
+		new Random(size).nextBytes(data);
+		result = new byte[size];
+		target = new StaticByteBuffer(size);
+		if (type.equals("static"))
+			buffer = new StaticByteBuffer(size);
+		else if (type.equals("cyclic"))
+			buffer = new CyclicByteBuffer(size);
+		else
+			buffer = new DynamicByteBuffer();
+	}
+	
+	@Benchmark
+	public int writeRead() throws IOException {
+		buffer.truncate();
+		buffer.write(data);
+		return buffer.read(result);
+	}
+	
+	@Benchmark
+	public long writePeek() throws IOException {
+		buffer.truncate();
+		target.truncate();
+		buffer.write(data);
+		return buffer.peek(target);
+	}
+	
+	@Benchmark
+	public long writeReadBuffer() throws IOException {
+		buffer.truncate();
+		target.truncate();
+		buffer.write(data);
+		return buffer.read(target);
+	}
+}
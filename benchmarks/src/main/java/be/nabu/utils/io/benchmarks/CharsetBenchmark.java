@@ -0,0 +1,104 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import be.nabu.utils.io.IOUtils;
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.CharBuffer;
+import be.nabu.utils.io.containers.chars.BackedReadableCharContainer;
+import be.nabu.utils.io.containers.chars.BackedWritableCharContainer;
+import be.nabu.utils.io.containers.chars.FastReadableCharContainer;
+
+/**
+ * Decodes and encodes text through the backed char containers, the fast decoder is what IOUtils.wrapReadable() picks for these charsets
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CharsetBenchmark {
+
+	@Param({ "UTF-8", "ISO-8859-1" })
+	private String charsetName;
+	
+	@Param({ "128", "16384" })
+	private int length;
+	
+	/**
+	 * The text is mostly ascii with some characters that can be represented in both charsets
+	 */
+	@Param({ "ascii", "mixed" })
+	private String content;
+	
+	private Charset charset;
+	private String text;
+	private byte [] encoded;
+	private char [] decoded;
+	private ByteBuffer target;
+	
+	@Setup
+	public void setup() {
+		charset = Charset.forName(charsetName);
+		String sample = content.equals("ascii") ? "writing some special characters " : "writing some spécial chäractèrs ";
+		StringBuilder builder = new StringBuilder();
+		while (builder.length() < length)
+			builder.append(sample);
+		text = builder.substring(0, length);
+		encoded = text.getBytes(charset);
+		decoded = new char[length];
+		target = IOUtils.newByteBuffer(encoded.length, false);
+	}
+	
+	@Benchmark
+	public long decode() throws IOException {
+		return new BackedReadableCharContainer(IOUtils.wrap(encoded, true), charset).read(IOUtils.wrap(decoded, false));
+	}
+	
+	@Benchmark
+	public long decodeFast() throws IOException {
+		return new FastReadableCharContainer(IOUtils.wrap(encoded, true), charset).read(IOUtils.wrap(decoded, false));
+	}
+	
+	@Benchmark
+	public long encode() throws IOException {
+		target.truncate();
+		BackedWritableCharContainer writable = new BackedWritableCharContainer(target, charset);
+		CharBuffer source = IOUtils.wrap(text);
+		long written = writable.write(source);
+		writable.flush();
+		return written;
+	}
+}
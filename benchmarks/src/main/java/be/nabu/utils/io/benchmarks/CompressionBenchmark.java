@@ -0,0 +1,82 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.benchmarks;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import be.nabu.utils.io.IOUtils;
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.containers.bytes.DeflateWritableContainer;
+import be.nabu.utils.io.containers.bytes.ParallelDeflateWritableContainer;
+
+/**
+ * Gzips a compressible payload with a single deflater and with the parallel container on the common pool
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CompressionBenchmark {
+
+	@Param({ "1048576", "16777216" })
+	private int size;
+	
+	private byte [] data;
+	
+	@Setup
+	public void setup() {
+		data = new byte[size];
+		Random random = new Random(size);
+		for (int i = 0; i < data.length; i++)
+			data[i] = (byte) ('a' + random.nextInt(16));
+	}
+	
+	@Benchmark
+	public long gzip() throws IOException {
+		ByteBuffer target = IOUtils.newByteBuffer();
+		DeflateWritableContainer writable = new DeflateWritableContainer(target, true);
+		writable.write(IOUtils.wrap(data, true));
+		writable.close();
+		return target.remainingData();
+	}
+	
+	@Benchmark
+	public long parallelGzip() throws IOException {
+		ByteBuffer target = IOUtils.newByteBuffer();
+		ParallelDeflateWritableContainer writable = new ParallelDeflateWritableContainer(target);
+		writable.write(IOUtils.wrap(data, true));
+		writable.close();
+		return target.remainingData();
+	}
+}
@@ -0,0 +1,100 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import be.nabu.utils.io.IOUtils;
+import be.nabu.utils.io.api.CharBuffer;
+import be.nabu.utils.io.api.DelimitedCharContainer;
+import be.nabu.utils.io.api.MarkableContainer;
+import be.nabu.utils.io.containers.chars.BackedDelimitedCharContainer;
+
+/**
+ * Splits a line of comma separated fields with both delimited container implementations
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DelimiterBenchmark {
+
+	@Param({ "8", "64" })
+	private int fieldLength;
+	
+	@Param({ "100" })
+	private int fields;
+	
+	private String text;
+	
+	@Setup
+	public void setup() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < fields; i++) {
+			if (i > 0)
+				builder.append(',');
+			for (int j = 0; j < fieldLength; j++)
+				builder.append((char) ('a' + (i + j) % 26));
+		}
+		text = builder.toString();
+	}
+	
+	@Benchmark
+	public void delimited(Blackhole blackhole) throws IOException {
+		MarkableContainer<CharBuffer> original = IOUtils.mark(IOUtils.wrap(text));
+		DelimitedCharContainer delimited;
+		do {
+			delimited = IOUtils.delimit(original, ",");
+			blackhole.consume(IOUtils.toString(delimited));
+		}
+		while (delimited.isDelimiterFound());
+	}
+	
+	@Benchmark
+	public void backedDelimited(Blackhole blackhole) throws IOException {
+		MarkableContainer<CharBuffer> original = IOUtils.mark(IOUtils.wrap(text));
+		original.mark();
+		BackedDelimitedCharContainer delimited;
+		do {
+			delimited = new BackedDelimitedCharContainer(original, fieldLength * 2, ",");
+			String field = IOUtils.toString(delimited);
+			blackhole.consume(field);
+			// the backed container reads ahead, go back to right after the delimiter
+			original.reset();
+			IOUtils.skipChars(original, field.length() + 1);
+			original.remark();
+		}
+		while (delimited.isDelimiterFound());
+	}
+}
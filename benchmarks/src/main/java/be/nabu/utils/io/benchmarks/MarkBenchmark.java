@@ -0,0 +1,86 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.benchmarks;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import be.nabu.utils.io.IOUtils;
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.MarkableContainer;
+
+/**
+ * Reads through a marked container, resetting it regularly as a parser looking ahead would
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MarkBenchmark {
+
+	@Param({ "65536" })
+	private int size;
+	
+	/**
+	 * How much is read before resetting to the mark
+	 */
+	@Param({ "16", "1024" })
+	private int lookahead;
+	
+	private byte [] data;
+	private ByteBuffer target;
+	
+	@Setup
+	public void setup() {
+		data = new byte[size];
+		new Random(size).nextBytes(data);
+		target = IOUtils.newByteBuffer(lookahead, false);
+	}
+	
+	@Benchmark
+	public long markReset() throws IOException {
+		MarkableContainer<ByteBuffer> marked = IOUtils.mark(IOUtils.wrap(data, true));
+		long total = 0;
+		while (true) {
+			marked.mark();
+			target.truncate();
+			if (marked.read(target) <= 0)
+				break;
+			// read it again after the reset, then move on
+			marked.reset();
+			target.truncate();
+			total += marked.read(target);
+		}
+		return total;
+	}
+}
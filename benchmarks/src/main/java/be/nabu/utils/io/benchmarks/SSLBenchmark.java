@@ -0,0 +1,165 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import be.nabu.utils.io.IOUtils;
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.Container;
+import be.nabu.utils.io.containers.bytes.SSLSocketByteContainer;
+
+/**
+ * Sends data from an SSL client to an SSL server over an in-memory loopback
+ * The handshake is done once during setup, the benchmark measures the record layer: encrypting, framing and decrypting
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SSLBenchmark {
+
+	@Param({ "1024", "16384", "262144" })
+	private int size;
+	
+	/**
+	 * The coalesce size of the writing side, 0 writes every record separately
+	 */
+	@Param({ "0", "65536" })
+	private int coalesce;
+	
+	private byte [] data;
+	private ByteBuffer target;
+	private SSLSocketByteContainer client, server;
+	private File keystore;
+	
+	@Setup
+	public void setup() throws Exception {
+		data = new byte[size];
+		new Random(size).nextBytes(data);
+		target = IOUtils.newByteBuffer(size, false);
+		
+		SSLContext context = newContext();
+		// the pipes are read and written by different threads during the handshake
+		ByteBuffer clientToServer = IOUtils.newByteBuffer(), serverToClient = IOUtils.newByteBuffer();
+		Container<ByteBuffer> clientPipe = IOUtils.synchronize(IOUtils.wrap(serverToClient, clientToServer));
+		Container<ByteBuffer> serverPipe = IOUtils.synchronize(IOUtils.wrap(clientToServer, serverToClient));
+		client = new SSLSocketByteContainer(clientPipe, context, true);
+		server = new SSLSocketByteContainer(serverPipe, context, false);
+		client.setCoalesceSize(coalesce);
+		
+		// the handshake blocks until the other side answers so both sides need their own thread
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Boolean> clientHandshake = executor.submit(handshake(client));
+			Future<Boolean> serverHandshake = executor.submit(handshake(server));
+			if (!clientHandshake.get(30, TimeUnit.SECONDS) || !serverHandshake.get(30, TimeUnit.SECONDS))
+				throw new IllegalStateException("The handshake failed");
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	private static Callable<Boolean> handshake(final SSLSocketByteContainer container) {
+		return new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				return container.shakeHands();
+			}
+		};
+	}
+	
+	/**
+	 * Generates a throwaway self-signed certificate with the keytool of the running jvm
+	 */
+	private SSLContext newContext() throws Exception {
+		keystore = File.createTempFile("benchmark", ".p12");
+		keystore.delete();
+		String keytool = new File(new File(System.getProperty("java.home"), "bin"), "keytool").getAbsolutePath();
+		Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "benchmark", "-keyalg", "RSA", "-keysize", "2048",
+			"-dname", "CN=localhost", "-validity", "1", "-storetype", "PKCS12", "-keystore", keystore.getAbsolutePath(),
+			"-storepass", "benchmark", "-keypass", "benchmark").inheritIO().start();
+		if (process.waitFor() != 0)
+			throw new IllegalStateException("Could not generate a keystore");
+		KeyStore store = KeyStore.getInstance("PKCS12");
+		InputStream input = new FileInputStream(keystore);
+		try {
+			store.load(input, "benchmark".toCharArray());
+		}
+		finally {
+			input.close();
+		}
+		KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+		keyManagerFactory.init(store, "benchmark".toCharArray());
+		TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		trustManagerFactory.init(store);
+		SSLContext context = SSLContext.getInstance("TLS");
+		context.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(), null);
+		return context;
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException {
+		keystore.delete();
+	}
+	
+	@Benchmark
+	public long transfer() throws IOException {
+		client.write(IOUtils.wrap(data, true));
+		client.flush();
+		target.truncate();
+		long total = 0;
+		while (total < size) {
+			long read = server.read(target);
+			if (read <= 0)
+				throw new IOException("The server could only read " + total + "/" + size);
+			total += read;
+		}
+		return total;
+	}
+}
@@ -0,0 +1,36 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io;
+
+/**
+ * How IOUtils.copyBytes() moves the data from the input to the output
+ */
+public enum CopyStrategy {
+	/**
+	 * A file is sent to a channel by the kernel (sendfile where available)
+	 */
+	TRANSFER_TO,
+	/**
+	 * A channel is written to a file by the file channel
+	 */
+	TRANSFER_FROM,
+	/**
+	 * The data is pumped through an intermediate buffer
+	 */
+	BUFFERED
+}
@@ -33,6 +33,7 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.Checksum;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLException;
@@ -85,9 +86,13 @@ import be.nabu.utils.io.containers.bytes.ByteChannelContainer;
 import be.nabu.utils.io.containers.bytes.ByteContainerDigest;
 import be.nabu.utils.io.containers.bytes.ByteContainerInputStream;
 import be.nabu.utils.io.containers.bytes.ByteContainerOutputStream;
+import be.nabu.utils.io.containers.bytes.ChecksumReadableContainer;
+import be.nabu.utils.io.containers.bytes.ChecksumWritableContainer;
 import be.nabu.utils.io.containers.bytes.FileWrapper;
 import be.nabu.utils.io.containers.bytes.InputStreamWrapper;
+import be.nabu.utils.io.containers.bytes.MappedFileContainer;
 import be.nabu.utils.io.containers.bytes.OutputStreamWrapper;
+import be.nabu.utils.io.containers.bytes.ReadOnlyFileWrapper;
 import be.nabu.utils.io.containers.bytes.ReadableCharToByteContainer;
 import be.nabu.utils.io.containers.bytes.SSLSocketByteContainer;
 import be.nabu.utils.io.containers.bytes.SocketByteContainer;
@@ -96,6 +101,7 @@ import be.nabu.utils.io.containers.chars.BackedWritableCharContainer;
 import be.nabu.utils.io.containers.chars.CharContainerReader;
 import be.nabu.utils.io.containers.chars.CharContainerWriter;
 import be.nabu.utils.io.containers.chars.DelimitedCharContainerImpl;
+import be.nabu.utils.io.containers.chars.FastReadableCharContainer;
 import be.nabu.utils.io.containers.chars.IgnoreReadableCharContainer;
 import be.nabu.utils.io.containers.chars.ReaderWrapper;
 import be.nabu.utils.io.containers.chars.ValidatedReadableCharContainer;
@@ -208,7 +214,26 @@ public class IOUtils {
 
 	
 	public static long copyBytes(ReadableContainer<ByteBuffer> input, WritableContainer<ByteBuffer> output) throws IOException {
-		return copy(input, output, new CyclicByteBuffer(4096));
+		switch (getCopyStrategy(input, output)) {
+			case TRANSFER_TO:
+				return Math.max(0, ((ByteChannelContainer<?>) output).transferFrom((ReadOnlyFileWrapper) input));
+			case TRANSFER_FROM:
+				return Math.max(0, ((ByteChannelContainer<?>) input).transferTo((FileWrapper) output));
+			default:
+				return copy(input, output, new CyclicByteBuffer(4096));
+		}
+	}
+	
+	/**
+	 * Determines how copyBytes() will move the data: files and channels can be connected directly, anything else goes through a buffer
+	 */
+	public static CopyStrategy getCopyStrategy(ReadableContainer<ByteBuffer> input, WritableContainer<ByteBuffer> output) {
+		if (input instanceof ReadOnlyFileWrapper && output instanceof ByteChannelContainer)
+			return CopyStrategy.TRANSFER_TO;
+		else if (input instanceof ByteChannelContainer && output instanceof FileWrapper)
+			return CopyStrategy.TRANSFER_FROM;
+		else
+			return CopyStrategy.BUFFERED;
 	}
 	
 	public static long copyChars(ReadableContainer<CharBuffer> input, WritableContainer<CharBuffer> output) throws IOException {
@@ -281,6 +306,13 @@ public class IOUtils {
 		return new FileWrapper(file);
 	}
 	
+	/**
+	 * Opens the file for reading through memory mapping, this is best suited for large files or files that are read repeatedly
+	 */
+	public static MappedFileContainer map(File file) throws IOException {
+		return new MappedFileContainer(file);
+	}
+	
 	public static ReadableContainer<CharBuffer> wrap(Reader reader) {
 		return new ReaderWrapper(reader);
 	}
@@ -320,7 +352,7 @@ public class IOUtils {
 	}
 	
 	public static ReadableContainer<CharBuffer> wrapReadable(ReadableContainer<ByteBuffer> bytes, Charset charset) {
-		return new BackedReadableCharContainer(bytes, charset);
+		return FastReadableCharContainer.isSupported(charset) ? new FastReadableCharContainer(bytes, charset) : new BackedReadableCharContainer(bytes, charset);
 	}
 	public static WritableContainer<CharBuffer> wrapWritable(WritableContainer<ByteBuffer> bytes, Charset charset) {
 		return new BackedWritableCharContainer(bytes, charset);
@@ -479,6 +511,14 @@ public class IOUtils {
 		return new ByteContainerDigest(chainedOutput, digest);
 	}
 	
+	public static ChecksumReadableContainer checksumReadable(ReadableContainer<ByteBuffer> parent, Checksum checksum) {
+		return new ChecksumReadableContainer(parent, checksum);
+	}
+	
+	public static ChecksumWritableContainer checksumWritable(WritableContainer<ByteBuffer> parent, Checksum checksum) {
+		return new ChecksumWritableContainer(parent, checksum);
+	}
+	
 	public static <T extends Buffer<T>> ReadableContainer<T> fixReadableLength(ReadableContainer<T> container, long fixedLength) {
 		return new FixedLengthReadableContainer<T>(container, fixedLength);
 	}
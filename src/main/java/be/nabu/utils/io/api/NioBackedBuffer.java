@@ -0,0 +1,46 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.api;
+
+/**
+ * A buffer that can expose its backing memory as java.nio views so channels and codecs can work on it without intermediate copies
+ * The views are only valid until the next operation on the buffer, moving their position does not change the state of the buffer: use consumed() and produced() for that
+ */
+public interface NioBackedBuffer<B extends java.nio.Buffer> {
+	/**
+	 * Fills in views on the data that can be read, in order, starting at the given offset in the array
+	 * Returns the amount of views that were filled in, this is limited by the size of the array
+	 */
+	public int getDataViews(B [] views, int offset);
+	
+	/**
+	 * Fills in views on the space that can be written to, in order, starting at the given offset in the array
+	 * Returns the amount of views that were filled in, this is limited by the size of the array
+	 */
+	public int getSpaceViews(B [] views, int offset);
+	
+	/**
+	 * Marks the given amount of data as read
+	 */
+	public void consumed(long amount);
+	
+	/**
+	 * Marks the given amount of space as written
+	 */
+	public void produced(long amount);
+}
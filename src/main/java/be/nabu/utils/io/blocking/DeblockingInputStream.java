@@ -19,76 +19,212 @@ package be.nabu.utils.io.blocking;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import be.nabu.utils.io.api.ByteBuffer;
 import be.nabu.utils.io.buffers.bytes.ByteBufferFactory;
 
+/**
+ * Reads a blocking input stream in the background into a buffer that can be read from without blocking (or with, using newInputStream())
+ * The actual reads are done by a shared, bounded pool of pumps: a pump does a single read and then reschedules the stream so the pumps are shared fairly
+ * A pump only reads what the input reports as available so it never blocks, if nothing is available the stream waits for data on a separate, bounded pool of waiters
+ * This way idle streams can not starve the streams that do have data as long as there are enough waiters, once they are all busy a pump does the blocking read itself
+ * When the buffer is full the stream is not rescheduled until a reader makes room
+ */
 public class DeblockingInputStream implements AutoCloseable {
 	
+	private static volatile ThreadPoolExecutor pumps;
+	
+	/**
+	 * The shared pumps, the amount of threads can be set with "io.deblocking.pumps", idle threads are stopped after a minute
+	 */
+	public static Executor getPumps() {
+		if (pumps == null) {
+			synchronized(DeblockingInputStream.class) {
+				if (pumps == null) {
+					int size = Integer.parseInt(System.getProperty("io.deblocking.pumps", "" + Math.max(4, Runtime.getRuntime().availableProcessors() * 4)));
+					final AtomicInteger counter = new AtomicInteger();
+					ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable, "deblocking-pump-" + counter.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+					executor.allowCoreThreadTimeOut(true);
+					pumps = executor;
+				}
+			}
+		}
+		return pumps;
+	}
+	
+	private static volatile ThreadPoolExecutor waiters;
+	
+	/**
+	 * The threads that do the blocking reads for streams that have no data available, the maximum amount can be set with "io.deblocking.waiters"
+	 * Threads are created as needed and stopped after a minute of inactivity, if all of them are busy the stream is rejected and the pump reads itself
+	 */
+	public static Executor getWaiters() {
+		if (waiters == null) {
+			synchronized(DeblockingInputStream.class) {
+				if (waiters == null) {
+					int size = Integer.parseInt(System.getProperty("io.deblocking.waiters", "256"));
+					final AtomicInteger counter = new AtomicInteger();
+					waiters = new ThreadPoolExecutor(0, size, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable, "deblocking-waiter-" + counter.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+				}
+			}
+		}
+		return waiters;
+	}
+	
 	private ByteBuffer deblockingBuffer;
 	private InputStream input;
-	private Thread thread;
-	private List<Thread> ioThreads = new ArrayList<Thread>();
-	private boolean closed;
+	private Executor executor;
+	private byte [] chunk = new byte[8192];
+	
+	private ReentrantLock lock = new ReentrantLock();
+	private Condition dataAvailable = lock.newCondition();
+	
+	/**
+	 * Whether a pump is reading (or is about to read) from the input
+	 */
+	private boolean scheduled;
+	private volatile boolean closed;
+	
+	private Runnable pump = new Runnable() {
+		@Override
+		public void run() {
+			pump(false);
+		}
+	};
+	
+	private Runnable wait = new Runnable() {
+		@Override
+		public void run() {
+			pump(true);
+		}
+	};
 	
 	public DeblockingInputStream(InputStream input) {
+		this(input, getPumps());
+	}
+	
+	public DeblockingInputStream(InputStream input, Executor executor) {
 		this.input = input;
+		this.executor = executor;
 		deblockingBuffer = ByteBufferFactory.getInstance().newInstance(1024 * 100, true);
-		start();
+		lock.lock();
+		try {
+			schedule();
+		}
+		finally {
+			lock.unlock();
+		}
 	}
 	
-	private void start() {
-		// this reads the io
-		thread = new Thread(new Runnable() {
-			@Override
-			public void run() {
-				int read = 0;
-				byte [] buffer = new byte[1024];
-				try {
-					// the read will block until available
-					while ((read = input.read(buffer)) >= 0) {
-						// we continue writing until it is empty
-						while (read > 0) {
-							read -= deblockingBuffer.write(buffer, 0, read);
-							// we just wrote shizzle, wake up the last thread to register
-							if (!ioThreads.isEmpty()) {
-								ioThreads.get(ioThreads.size() - 1).interrupt();
-							}
-							if (read > 0) {
-								try {
-									Thread.sleep(5000);
-								}
-								catch (InterruptedException e) {
-									// ignore, we continue
-									// clear flag?
-									Thread.interrupted();
-								}
-							}
-						}
-					}
-					closed = true;
-				}
-				catch (IOException e) {
+	/**
+	 * Must be called while holding the lock
+	 */
+	private void schedule() {
+		if (!scheduled && !closed && deblockingBuffer.remainingSpace() > 0) {
+			scheduled = true;
+			try {
+				executor.execute(pump);
+			}
+			catch (RejectedExecutionException e) {
+				scheduled = false;
+				closed = true;
+				dataAvailable.signalAll();
+			}
+		}
+	}
+	
+	/**
+	 * If we are not allowed to block, we only read what is available and hand the stream off to a waiter if there is nothing
+	 */
+	private void pump(boolean block) {
+		int read;
+		boolean failed = false;
+		try {
+			int space;
+			lock.lock();
+			try {
+				space = (int) Math.min(chunk.length, deblockingBuffer.remainingSpace());
+			}
+			finally {
+				lock.unlock();
+			}
+			if (!block) {
+				int available = input.available();
+				if (available <= 0) {
 					try {
-						close();
+						// the stream stays scheduled while the waiter has it
+						getWaiters().execute(wait);
+						return;
 					}
-					catch (Exception e1) {
-						// do nothing
+					catch (RejectedExecutionException e) {
+						// all the waiters are busy, fall back to a blocking read on the pump
+						available = space;
 					}
 				}
-				finally {
-					// interrupt them all to stop them!
-					while (!ioThreads.isEmpty()) {
-						ioThreads.remove(ioThreads.size() - 1).interrupt();
-					}
+				space = Math.min(space, available);
+			}
+			// a blocking read is done without holding the lock
+			read = input.read(chunk, 0, space);
+		}
+		catch (IOException e) {
+			read = -1;
+			failed = true;
+		}
+		lock.lock();
+		try {
+			scheduled = false;
+			if (read < 0) {
+				closed = true;
+			}
+			else if (read > 0) {
+				// we only read as much as there was room for and only the pump writes to the buffer
+				try {
+					deblockingBuffer.write(chunk, 0, read);
 				}
+				catch (IOException e) {
+					closed = true;
+				}
+			}
+			dataAvailable.signalAll();
+			// continue reading, unless the buffer is full in which case the next reader will reschedule
+			schedule();
+		}
+		finally {
+			lock.unlock();
+		}
+		if (failed) {
+			try {
+				input.close();
 			}
-		});
-		thread.setDaemon(true);
-		thread.setName("deblocking-inputstream");
-		thread.start();
+			catch (IOException e) {
+				// do nothing
+			}
+		}
 	}
 	
 	public InputStream newInputStream() {
@@ -97,15 +233,18 @@ public class DeblockingInputStream implements AutoCloseable {
 			private byte [] single = new byte[1];
 			@Override
 			public int available() throws IOException {
-				return (int) (isClosed() ? 0 : deblockingBuffer.remainingData());
+				lock.lock();
+				try {
+					return (int) (closed ? 0 : deblockingBuffer.remainingData());
+				}
+				finally {
+					lock.unlock();
+				}
 			}
 			@Override
 			public void close() throws IOException {
 				closed = true;
 			}
-			private boolean isClosed() {
-				return closed || DeblockingInputStream.this.closed;
-			}
 			@Override
 			public int read() throws IOException {
 				int read = read(single);
@@ -118,44 +257,36 @@ public class DeblockingInputStream implements AutoCloseable {
 			}
 			@Override
 			public int read(byte[] b, int off, int len) throws IOException {
-				synchronized (ioThreads) {
-					ioThreads.add(Thread.currentThread());
+				if (len == 0) {
+					return 0;
 				}
+				lock.lock();
 				try {
-					int read = 0;
-					// we wait as long as we have no data, we need to block
-					while (!isClosed() && read == 0) {
-						if (available() == 0) {
-							try {
-								Thread.sleep(5000);
-							}
-							// interruptible I/O!
-							catch (InterruptedException e) {
-								// ignore
-							}
+					// we wait as long as we have no data, other streams that wrap on top of this one do not always like a 0 (e.g. the buffered reader)
+					while (!closed && deblockingBuffer.remainingData() == 0) {
+						if (DeblockingInputStream.this.closed) {
+							return -1;
 						}
-						read = deblockingBuffer.read(b, off, len);
-						// we read some data, go fetch some more!
-						thread.interrupt();
-						if (read < 0) {
-							closed = true;
+						schedule();
+						try {
+							dataAvailable.await();
 						}
-						if (read != 0) {
-							return read;
+						catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							throw new InterruptedIOException("Interrupted while waiting for data");
 						}
 					}
-					// other streams that wrap on top of this one do not always like a 0 :(
-					// especially the buffered reader for example
-//					else {
-//						return 0;
-//					}
+					if (closed) {
+						return -1;
+					}
+					int read = deblockingBuffer.read(b, off, len);
+					// we read some data, go fetch some more!
+					schedule();
+					return read;
 				}
 				finally {
-					synchronized (ioThreads) {
-						ioThreads.remove(Thread.currentThread());
-					}
+					lock.unlock();
 				}
-				return -1;
 			}
 			@Override
 			public int read(byte[] b) throws IOException {
@@ -166,7 +297,14 @@ public class DeblockingInputStream implements AutoCloseable {
 
 	@Override
 	public void close() throws Exception {
-		closed = true;
+		lock.lock();
+		try {
+			closed = true;
+			dataAvailable.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
 		input.close();
 	}
 }
@@ -0,0 +1,357 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.buffers;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A size-classed pool of backing storage (byte arrays, char arrays,...) for buffers
+ * 
+ * Each size class is a power of two, a request is rounded up to the nearest class so the returned storage may be larger than requested.
+ * Requests larger than the biggest class are not pooled, they are simply allocated and dropped on release.
+ * 
+ * Every thread has a small local cache per size class which is checked first, if that is empty or full the shared free list is used.
+ * The shared free list is lock-free and bounded so a burst does not permanently retain memory.
+ * 
+ * Leak detection (disabled by default) keeps a weak reference to every storage that is handed out, if it is garbage collected without being released, it is counted as a leak.
+ * Note that leak detection is expensive and should only be used while debugging.
+ * 
+ * Each pool family is configured with system properties that share a prefix (only read once at creation):
+ * - [prefix].max: the biggest storage that is pooled, expressed in the unit of the storage (bytes, chars,...)
+ * - [prefix].local: the amount of instances per size class cached on each thread
+ * - [prefix].shared: the amount of instances per size class kept in the shared free list
+ * - [prefix].leaks: whether or not leak detection is enabled
+ */
+abstract public class BufferPool<T> {
+	
+	/**
+	 * The smallest size class is 2^MIN_SHIFT
+	 */
+	private static final int MIN_SHIFT = 10;
+	
+	private final int classes;
+	private final int localCapacity;
+	private final int sharedCapacity;
+	
+	private final ThreadLocal<LocalCache<T>> localCaches = new ThreadLocal<LocalCache<T>>();
+	private final Queue<T>[] shared;
+	private final AtomicInteger[] sharedSizes;
+	
+	private final LongAdder localHits = new LongAdder(), 
+		sharedHits = new LongAdder(), 
+		misses = new LongAdder(), 
+		releases = new LongAdder(), 
+		discards = new LongAdder(),
+		leaks = new LongAdder();
+	
+	private volatile boolean leakDetection;
+	private final ReferenceQueue<T> leakQueue = new ReferenceQueue<T>();
+	/**
+	 * The tracked instances by identity hash, we can not use the instance itself as key as that would prevent it from being collected
+	 */
+	private final Map<Integer, List<TrackedReference<T>>> tracked = new HashMap<Integer, List<TrackedReference<T>>>();
+	private int outstanding;
+
+	/**
+	 * @param property the prefix of the system properties that configure this pool family
+	 * @param maxSize the biggest size that is pooled, it is rounded up to a power of two
+	 * @param localCapacity how many instances per size class each thread can hold on to
+	 * @param sharedCapacity how many instances per size class are kept in the shared free list
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	protected BufferPool(String property, int maxSize, int localCapacity, int sharedCapacity) {
+		this.classes = Math.max(1, shift(maxSize) - MIN_SHIFT + 1);
+		this.localCapacity = localCapacity;
+		this.sharedCapacity = sharedCapacity;
+		this.shared = new Queue[classes];
+		this.sharedSizes = new AtomicInteger[classes];
+		for (int i = 0; i < classes; i++) {
+			shared[i] = new ConcurrentLinkedQueue<T>();
+			sharedSizes[i] = new AtomicInteger();
+		}
+		setLeakDetection(Boolean.parseBoolean(System.getProperty(property + ".leaks", "false")));
+	}
+	
+	/**
+	 * Reads a numeric setting of the pool family with the given property prefix
+	 */
+	protected static int getSetting(String property, String name, int defaultValue) {
+		return Integer.parseInt(System.getProperty(property + "." + name, Integer.toString(defaultValue)));
+	}
+	
+	protected abstract T newInstance(int size);
+	
+	protected abstract int size(T instance);
+	
+	/**
+	 * Returns storage that is at least the requested size
+	 */
+	public T acquire(int size) {
+		int index = index(size);
+		if (index >= classes) {
+			misses.increment();
+			return newInstance(size);
+		}
+		LocalCache<T> local = getLocalCache();
+		T instance = local.pop(index);
+		if (instance != null) {
+			localHits.increment();
+		}
+		else {
+			instance = shared[index].poll();
+			if (instance != null) {
+				sharedSizes[index].decrementAndGet();
+				sharedHits.increment();
+			}
+			else {
+				misses.increment();
+				instance = newInstance(1 << (index + MIN_SHIFT));
+			}
+		}
+		if (leakDetection) {
+			track(instance);
+		}
+		return instance;
+	}
+	
+	/**
+	 * Returns the storage to the pool, the caller must not use it anymore after this
+	 */
+	public void release(T instance) {
+		if (instance == null) {
+			return;
+		}
+		if (leakDetection) {
+			untrack(instance);
+		}
+		releases.increment();
+		int size = size(instance);
+		int index = index(size);
+		// only exact size classes are pooled
+		if (index >= classes || size != 1 << (index + MIN_SHIFT)) {
+			discards.increment();
+			return;
+		}
+		if (getLocalCache().push(index, instance)) {
+			return;
+		}
+		if (sharedSizes[index].incrementAndGet() <= sharedCapacity) {
+			shared[index].offer(instance);
+		}
+		else {
+			sharedSizes[index].decrementAndGet();
+			discards.increment();
+		}
+	}
+	
+	private LocalCache<T> getLocalCache() {
+		LocalCache<T> cache = localCaches.get();
+		if (cache == null) {
+			cache = new LocalCache<T>(classes, localCapacity);
+			localCaches.set(cache);
+		}
+		return cache;
+	}
+	
+	private void track(T instance) {
+		pollLeaks();
+		TrackedReference<T> reference = new TrackedReference<T>(instance, leakQueue);
+		synchronized(tracked) {
+			List<TrackedReference<T>> references = tracked.get(reference.hash);
+			if (references == null) {
+				references = new ArrayList<TrackedReference<T>>(1);
+				tracked.put(reference.hash, references);
+			}
+			references.add(reference);
+			outstanding++;
+		}
+	}
+	
+	private void untrack(T instance) {
+		int hash = System.identityHashCode(instance);
+		synchronized(tracked) {
+			List<TrackedReference<T>> references = tracked.get(hash);
+			if (references != null) {
+				for (int i = 0; i < references.size(); i++) {
+					if (references.get(i).get() == instance) {
+						// make sure it is not enqueued
+						references.remove(i).clear();
+						outstanding--;
+						break;
+					}
+				}
+				if (references.isEmpty()) {
+					tracked.remove(hash);
+				}
+			}
+		}
+		pollLeaks();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void pollLeaks() {
+		Reference<? extends T> reference;
+		while ((reference = leakQueue.poll()) != null) {
+			TrackedReference<T> leaked = (TrackedReference<T>) reference;
+			synchronized(tracked) {
+				List<TrackedReference<T>> references = tracked.get(leaked.hash);
+				if (references != null && references.remove(leaked)) {
+					outstanding--;
+					if (references.isEmpty()) {
+						tracked.remove(leaked.hash);
+					}
+				}
+			}
+			leaks.increment();
+		}
+	}
+	
+	/**
+	 * The size that will actually be handed out for a given request
+	 */
+	public int getPooledSize(int size) {
+		int index = index(size);
+		return index >= classes ? size : 1 << (index + MIN_SHIFT);
+	}
+	
+	private static int index(int size) {
+		return size <= 1 << MIN_SHIFT ? 0 : shift(size) - MIN_SHIFT;
+	}
+	
+	/**
+	 * The amount of bits needed to represent the size rounded up to a power of two
+	 */
+	private static int shift(int size) {
+		return 32 - Integer.numberOfLeadingZeros(size - 1);
+	}
+	
+	public long getHits() {
+		return localHits.sum() + sharedHits.sum();
+	}
+	
+	public long getLocalHits() {
+		return localHits.sum();
+	}
+	
+	public long getSharedHits() {
+		return sharedHits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+	
+	public long getReleases() {
+		return releases.sum();
+	}
+	
+	/**
+	 * How many released instances were dropped because they could not be pooled
+	 */
+	public long getDiscards() {
+		return discards.sum();
+	}
+	
+	/**
+	 * The amount of instances that were garbage collected without being released, only available if leak detection is enabled
+	 */
+	public long getLeaks() {
+		pollLeaks();
+		return leaks.sum();
+	}
+	
+	/**
+	 * The amount of instances that are currently handed out and not yet released, only available if leak detection is enabled
+	 */
+	public int getOutstanding() {
+		pollLeaks();
+		synchronized(tracked) {
+			return outstanding;
+		}
+	}
+	
+	public boolean isLeakDetection() {
+		return leakDetection;
+	}
+
+	public void setLeakDetection(boolean leakDetection) {
+		this.leakDetection = leakDetection;
+		if (!leakDetection) {
+			synchronized(tracked) {
+				tracked.clear();
+				outstanding = 0;
+			}
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[hits=" + getHits() + ", misses=" + getMisses() + ", releases=" + getReleases() + ", discards=" + getDiscards() + ", leaks=" + getLeaks() + "]";
+	}
+
+	private static class TrackedReference<T> extends WeakReference<T> {
+		private final int hash;
+		
+		private TrackedReference(T instance, ReferenceQueue<? super T> queue) {
+			super(instance, queue);
+			this.hash = System.identityHashCode(instance);
+		}
+	}
+	
+	/**
+	 * A simple stack per size class, this is only ever accessed by the owning thread
+	 */
+	private static class LocalCache<T> {
+		private final Object [][] stacks;
+		private final int [] sizes;
+		
+		private LocalCache(int classes, int capacity) {
+			stacks = new Object[classes][capacity];
+			sizes = new int[classes];
+		}
+		
+		@SuppressWarnings("unchecked")
+		private T pop(int index) {
+			if (sizes[index] == 0) {
+				return null;
+			}
+			int position = --sizes[index];
+			T instance = (T) stacks[index][position];
+			stacks[index][position] = null;
+			return instance;
+		}
+		
+		private boolean push(int index, T instance) {
+			if (sizes[index] >= stacks[index].length) {
+				return false;
+			}
+			stacks[index][sizes[index]++] = instance;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,239 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.buffers;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import be.nabu.utils.io.api.Buffer;
+import be.nabu.utils.io.api.BufferFactory;
+
+/**
+ * A first in first out composite buffer that can be written by any number of threads without locking and read by a single thread
+ * The segments are kept in a linked queue: a writer swaps itself in as the new tail and then links the previous tail to it, the reader follows the links from the head
+ * Until a writer has linked its segment, the reader simply does not see it (nor anything appended after it) yet
+ * 
+ * Each write appends exactly one segment so the data of a single write is never interleaved with that of another thread
+ * The writing side may call write(), flush() and close(), the reading side may call read(), peek(), skip() and truncate()
+ */
+public class ConcurrentCompositeBuffer<T extends Buffer<T>> implements Buffer<T> {
+
+	private static final class Segment<T extends Buffer<T>> {
+		private Buffer<T> buffer;
+		private volatile Segment<T> next;
+		
+		private Segment(Buffer<T> buffer) {
+			this.buffer = buffer;
+		}
+	}
+	
+	private BufferFactory<T> factory;
+	
+	/**
+	 * The head is a consumed segment that is only touched by the reader, the tail is shared by the writers
+	 */
+	private Segment<T> head;
+	private final AtomicReference<Segment<T>> tail;
+	
+	/**
+	 * The data appended by writers minus the data consumed by the reader
+	 */
+	private final AtomicLong remaining = new AtomicLong();
+	
+	/**
+	 * The writers that are past the closed check but may not have linked their segment yet
+	 */
+	private final AtomicInteger writers = new AtomicInteger();
+	
+	private volatile boolean closed;
+	
+	public ConcurrentCompositeBuffer(BufferFactory<T> factory) {
+		this.factory = factory;
+		this.head = new Segment<T>(null);
+		this.tail = new AtomicReference<Segment<T>>(head);
+	}
+	
+	/**
+	 * The data is copied into a new buffer so the source is fully consumed like any other buffer write
+	 */
+	@Override
+	public long write(T buffer) throws IOException {
+		return link(buffer, true);
+	}
+	
+	/**
+	 * Queues the buffer itself without copying it, the buffer is owned by this composite afterwards so the caller must no longer touch it
+	 * Returns the amount of data that was appended or -1 if the composite is closed
+	 */
+	public long append(T buffer) throws IOException {
+		return link(buffer, false);
+	}
+	
+	private long link(T buffer, boolean copy) throws IOException {
+		// register before checking closed, a reader that sees no writers after the close knows that no more segments will be linked
+		writers.incrementAndGet();
+		try {
+			if (closed) {
+				return -1;
+			}
+			Buffer<T> target;
+			long written;
+			if (copy) {
+				target = factory.newInstance();
+				written = target.write(buffer);
+			}
+			else {
+				target = buffer;
+				written = buffer.remainingData();
+			}
+			if (written > 0) {
+				Segment<T> segment = new Segment<T>(target);
+				tail.getAndSet(segment).next = segment;
+				remaining.addAndGet(written);
+			}
+			return written;
+		}
+		finally {
+			writers.decrementAndGet();
+		}
+	}
+	
+	@Override
+	public long read(T target) throws IOException {
+		long total = 0;
+		Segment<T> next;
+		while (target.remainingSpace() > 0 && (next = head.next) != null) {
+			long read = next.buffer.read(target);
+			if (read > 0) {
+				total += read;
+			}
+			if (next.buffer.remainingData() == 0) {
+				consume(next);
+			}
+			else if (read <= 0) {
+				break;
+			}
+		}
+		if (total > 0) {
+			remaining.addAndGet(-total);
+		}
+		return total == 0 && isDone() ? -1 : total;
+	}
+	
+	/**
+	 * Closed, no writer is still busy and everything that was linked has been consumed
+	 */
+	private boolean isDone() {
+		return closed && writers.get() == 0 && tail.get() == head;
+	}
+	
+	/**
+	 * The consumed segment becomes the new head, its buffer is released so it can be collected while the segment itself might still be referenced as tail
+	 */
+	private void consume(Segment<T> segment) {
+		segment.buffer = null;
+		head = segment;
+	}
+
+	@Override
+	public long skip(long amount) throws IOException {
+		long total = 0;
+		Segment<T> next;
+		while (total < amount && (next = head.next) != null) {
+			long skipped = next.buffer.skip(amount - total);
+			if (skipped > 0) {
+				total += skipped;
+			}
+			if (next.buffer.remainingData() == 0) {
+				consume(next);
+			}
+			else if (skipped <= 0) {
+				break;
+			}
+		}
+		if (total > 0) {
+			remaining.addAndGet(-total);
+		}
+		return total;
+	}
+
+	@Override
+	public long peek(T target) throws IOException {
+		long total = 0;
+		Segment<T> next = head.next;
+		while (next != null && target.remainingSpace() > 0) {
+			long available = next.buffer.remainingData();
+			long peeked = next.buffer.peek(target);
+			if (peeked > 0) {
+				total += peeked;
+			}
+			// only continue with the next segment if this one fit entirely, otherwise the peeked data would have a gap
+			if (peeked < available) {
+				break;
+			}
+			next = next.next;
+		}
+		return total;
+	}
+	
+	/**
+	 * Drops everything that has been linked so far, this must be called by the reader
+	 */
+	@Override
+	public void truncate() {
+		long total = 0;
+		Segment<T> next;
+		while ((next = head.next) != null) {
+			total += next.buffer.remainingData();
+			consume(next);
+		}
+		if (total > 0) {
+			remaining.addAndGet(-total);
+		}
+	}
+
+	@Override
+	public long remainingData() {
+		return Math.max(0, remaining.get());
+	}
+
+	@Override
+	public long remainingSpace() {
+		return closed ? 0 : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Writes that were already in progress can still end up in the buffer, the reader will only report the end once they are done and all their data is read
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		// do nothing
+	}
+
+	@Override
+	public BufferFactory<T> getFactory() {
+		return factory;
+	}
+}
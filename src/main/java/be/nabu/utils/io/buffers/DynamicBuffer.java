@@ -24,6 +24,7 @@ import java.util.Date;
 import be.nabu.utils.io.api.Buffer;
 import be.nabu.utils.io.api.BufferFactory;
 import be.nabu.utils.io.api.DuplicatableContainer;
+import be.nabu.utils.io.api.NioBackedBuffer;
 import be.nabu.utils.io.api.PeekableContainer;
 import be.nabu.utils.io.api.PositionableContainer;
 import be.nabu.utils.io.api.ResettableContainer;
@@ -36,6 +37,11 @@ abstract public class DynamicBuffer<T extends Buffer<T>, S extends Buffer<T> & D
 	
 	private Date lastModified = new Date();
 	
+	/**
+	 * The index of the first fragment that was handed out in the last space views, -1 if there are none outstanding
+	 */
+	private int spaceIndex = -1;
+	
 	public DynamicBuffer(BufferFactory<T> factory) {
 		this(factory, 10240);
 	}
@@ -55,11 +61,23 @@ abstract public class DynamicBuffer<T extends Buffer<T>, S extends Buffer<T> & D
 
 	@Override
 	public void truncate() {
+		if (!isShared()) {
+			for (S backingArray : backingArrays)
+				release(backingArray);
+		}
 		backingArrays.clear();
 		readIndex = 0;
 		markIndex = 0;
 	}
 	
+	@Override
+	public void close() {
+		super.close();
+		// if everything has been read and we can't go back, recycle the backing arrays
+		if (isReleaseRead() && remainingData() == 0)
+			truncate();
+	}
+	
 	@Override
 	public long remainingSpace() {
 		return Long.MAX_VALUE;
@@ -88,5 +106,70 @@ abstract public class DynamicBuffer<T extends Buffer<T>, S extends Buffer<T> & D
 		return totalWritten;
 	}
 	
+	/**
+	 * Collects the data views of all the fragments, this can only be used if the fragments are nio backed
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	protected int collectDataViews(java.nio.Buffer [] views, int offset) {
+		int amount = 0;
+		for (int i = readIndex; i < backingArrays.size() && offset + amount < views.length; i++)
+			amount += ((NioBackedBuffer) backingArrays.get(i)).getDataViews(views, offset + amount);
+		return amount;
+	}
+	
+	/**
+	 * Collects the space views of the last fragment, if that fragment is already partially filled, a new fragment is added so the views can hold at least a full fragment
+	 * A fragment that is still empty after produced() is dropped again
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	protected int collectSpaceViews(java.nio.Buffer [] views, int offset) {
+		if (closed || offset >= views.length)
+			return 0;
+		S tail = getWritableBackingArray();
+		spaceIndex = backingArrays.size() - 1;
+		int amount = ((NioBackedBuffer) tail).getSpaceViews(views, offset);
+		if (tail.remainingSpace() < bufferSize && offset + amount < views.length) {
+			S fragment = newBuffer(bufferSize);
+			backingArrays.add(fragment);
+			amount += ((NioBackedBuffer) fragment).getSpaceViews(views, offset + amount);
+		}
+		return amount;
+	}
+	
+	@SuppressWarnings("rawtypes")
+	public void produced(long amount) {
+		if (spaceIndex < 0)
+			throw new IllegalStateException("No space views have been handed out");
+		if (amount > 0)
+			lastModified = new Date();
+		for (int i = spaceIndex; i < backingArrays.size() && amount > 0; i++) {
+			S fragment = backingArrays.get(i);
+			long produced = Math.min(amount, fragment.remainingSpace());
+			((NioBackedBuffer) fragment).produced(produced);
+			amount -= produced;
+		}
+		// drop the additional fragment if nothing ended up in it
+		S last = backingArrays.get(backingArrays.size() - 1);
+		if (backingArrays.size() - 1 > spaceIndex && last.remainingData() == 0) {
+			backingArrays.remove(backingArrays.size() - 1);
+			if (!isShared())
+				release(last);
+		}
+		spaceIndex = -1;
+	}
+	
+	public void consumed(long amount) {
+		try {
+			skip(amount);
+		}
+		catch (IOException e) {
+			// the fragments are in memory, skipping them does not throw
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Creates a new backing array, it is handed back through release() once it is no longer needed
+	 */
 	protected abstract S newBuffer(int size);
 }
@@ -50,6 +50,11 @@ public class FragmentedReadableContainer<T extends Buffer<T>, S extends Buffer<T
 	 */
 	private boolean releaseRead = true;
 	
+	/**
+	 * Once a duplicate is created, the backing arrays are shared and can no longer be recycled
+	 */
+	private boolean shared = false;
+	
 	protected List<S> backingArrays = null;
 
 	/**
@@ -153,6 +158,7 @@ public class FragmentedReadableContainer<T extends Buffer<T>, S extends Buffer<T
 	public FragmentedReadableContainer<T, S> duplicate(boolean reset) {
 		if (releaseRead)
 			throw new IllegalStateException("No mark has been set, can not clone");
+		shared = true;
 		return new FragmentedReadableContainer<T, S>(factory, this, reset);
 	}
 
@@ -167,8 +173,11 @@ public class FragmentedReadableContainer<T extends Buffer<T>, S extends Buffer<T
 	public void unmark() {
 		releaseRead = true;
 		// forcefully release all data up to the read index
-		for (int i = 0; i < readIndex; i++)
+		for (int i = 0; i < readIndex; i++) {
+			if (parent == null && !shared)
+				release(backingArrays.get(i));
 			backingArrays.set(i, null);
+		}
 	}
 
 	@Override
@@ -199,8 +208,11 @@ public class FragmentedReadableContainer<T extends Buffer<T>, S extends Buffer<T
 				}
 				else {
 					// release the backing array without changing the index count of the list
-					if (releaseRead && !peek)
+					if (releaseRead && !peek) {
+						if (parent == null && !shared)
+							release(data);
 						backingArrays.set(readIndex, null);
+					}
 					readIndex++;
 					data = getBackingArray(readIndex);
 				}
@@ -239,6 +251,28 @@ public class FragmentedReadableContainer<T extends Buffer<T>, S extends Buffer<T
 	public BufferFactory<T> getFactory() {
 		return factory;
 	}
+	
+	/**
+	 * Called when a fully read backing array is dropped, it will not be accessed by this container anymore
+	 * Note that the buffer can be null if it was already released
+	 */
+	protected void release(S buffer) {
+		// do nothing
+	}
+	
+	/**
+	 * Whether or not the backing arrays are only accessible to this container
+	 */
+	protected boolean isShared() {
+		return shared;
+	}
+	
+	/**
+	 * Whether or not data that has been read can be dropped, this is not the case if there is a mark 
+	 */
+	protected boolean isReleaseRead() {
+		return releaseRead;
+	}
 
 	@Override
 	public void remark() {
@@ -22,26 +22,52 @@ import be.nabu.utils.io.api.ByteBuffer;
 
 public class ByteBufferFactory implements BufferFactory<ByteBuffer> {
 
-	private static ByteBufferFactory instance;
+	private static ByteBufferFactory instance, directInstance;
 	
 	public static ByteBufferFactory getInstance() {
 		if (instance == null)
-			instance = new ByteBufferFactory();
+			instance = new ByteBufferFactory(false);
 		return instance;
 	}
 	
-	private ByteBufferFactory() {
-		// hide
+	/**
+	 * The off-heap factory creates buffers that are backed by direct memory
+	 */
+	public static ByteBufferFactory getDirectInstance() {
+		if (directInstance == null)
+			directInstance = new ByteBufferFactory(true);
+		return directInstance;
+	}
+	
+	private boolean direct;
+	
+	private ByteBufferFactory(boolean direct) {
+		this.direct = direct;
 	}
 	
 	@Override
 	public ByteBuffer newInstance(long size, boolean cyclic) {
-		return cyclic ? new CyclicByteBuffer((int) size) : new StaticByteBuffer((int) size);
+		// direct memory is taken from the pool so release() can hand it back
+		if (direct)
+			return cyclic ? new CyclicDirectByteBuffer((int) size, DirectBufferPool.getInstance()) : new StaticDirectByteBuffer((int) size, DirectBufferPool.getInstance());
+		else
+			return cyclic ? new CyclicByteBuffer((int) size) : new StaticByteBuffer((int) size);
 	}
 
 	@Override
 	public ByteBuffer newInstance() {
-		return new DynamicByteBuffer();
+		return direct ? new DynamicDirectByteBuffer() : new DynamicByteBuffer();
+	}
+	
+	/**
+	 * Allocates a nio buffer for code that has to deal with nio directly (e.g. channels and ssl engines)
+	 */
+	public java.nio.ByteBuffer newNioBuffer(int size) {
+		return direct ? java.nio.ByteBuffer.allocateDirect(size) : java.nio.ByteBuffer.allocate(size);
+	}
+	
+	public boolean isDirect() {
+		return direct;
 	}
 
 	@Override
@@ -0,0 +1,64 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.buffers.bytes;
+
+import be.nabu.utils.io.buffers.BufferPool;
+
+/**
+ * Pools the byte arrays that back dynamic buffers
+ * 
+ * The pool is disabled by default, it can be enabled with the system property "io.buffer.pool"
+ * It is configured with the "io.buffer.pool.*" properties described in {@link BufferPool}, the max defaults to 64kb
+ */
+public class ByteBufferPool extends BufferPool<byte[]> {
+
+	public static final String PROPERTY = "io.buffer.pool";
+	
+	private static ByteBufferPool instance;
+	
+	public static ByteBufferPool getInstance() {
+		if (instance == null)
+			instance = new ByteBufferPool(
+				getSetting(PROPERTY, "max", 65536), 
+				getSetting(PROPERTY, "local", 8), 
+				getSetting(PROPERTY, "shared", 256)
+			);
+		return instance;
+	}
+	
+	/**
+	 * Whether the default dynamic buffers should use the pool
+	 */
+	public static boolean isEnabled() {
+		return Boolean.parseBoolean(System.getProperty(PROPERTY, "false"));
+	}
+	
+	public ByteBufferPool(int maxSize, int localCapacity, int sharedCapacity) {
+		super(PROPERTY, maxSize, localCapacity, sharedCapacity);
+	}
+
+	@Override
+	protected byte[] newInstance(int size) {
+		return new byte[size];
+	}
+
+	@Override
+	protected int size(byte[] instance) {
+		return instance.length;
+	}
+}
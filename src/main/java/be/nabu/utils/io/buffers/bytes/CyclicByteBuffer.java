@@ -21,12 +21,18 @@ import java.io.IOException;
 
 import be.nabu.utils.io.api.BufferFactory;
 import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.NioBackedBuffer;
 import be.nabu.utils.io.api.PeekableContainer;
 
-public class CyclicByteBuffer implements ByteBuffer, PeekableContainer<ByteBuffer> {
+public class CyclicByteBuffer implements ByteBuffer, PeekableContainer<ByteBuffer>, NioBackedBuffer<java.nio.ByteBuffer> {
 	
 	private byte [] buffer;
 	
+	/**
+	 * Lazily created nio wrappers, the data and the space can both wrap around the end so they need up to two views each
+	 */
+	private java.nio.ByteBuffer [] segments;
+	
 	private boolean closed;
 	
 	private int writePointer = 0, 
@@ -60,7 +66,8 @@ public class CyclicByteBuffer implements ByteBuffer, PeekableContainer<ByteBuffe
 		int amountWritten = 0;
 		int amountAvailable = 0;
 		while ((amountAvailable = Math.min(getWriteAmountAvailable(cycled, readPointer, writePointer), length)) > 0) {
-			System.arraycopy(bytes, offset, buffer, writePointer, amountAvailable);
+			if (bytes != null)
+				System.arraycopy(bytes, offset, buffer, writePointer, amountAvailable);
 			writePointer += amountAvailable;
 			if (writePointer >= buffer.length) {
 				writePointer = 0;
@@ -219,6 +226,53 @@ public class CyclicByteBuffer implements ByteBuffer, PeekableContainer<ByteBuffe
 		return amount;
 	}
 
+	private int segment(java.nio.ByteBuffer[] views, int offset, int index, int position, int length) {
+		if (length <= 0 || offset >= views.length)
+			return 0;
+		if (segments == null)
+			segments = new java.nio.ByteBuffer[4];
+		if (segments[index] == null)
+			segments[index] = java.nio.ByteBuffer.wrap(buffer);
+		views[offset] = DirectByteBuffers.view(segments[index], position, length);
+		return 1;
+	}
+	
+	@Override
+	public int getDataViews(java.nio.ByteBuffer[] views, int offset) {
+		if (readPointer == -1)
+			return segment(views, offset, 0, 0, cycled ? buffer.length : writePointer);
+		else if (cycled) {
+			int amount = segment(views, offset, 0, readPointer, buffer.length - readPointer);
+			return amount + segment(views, offset + amount, 1, 0, writePointer);
+		}
+		else
+			return segment(views, offset, 0, readPointer, writePointer - readPointer);
+	}
+
+	@Override
+	public int getSpaceViews(java.nio.ByteBuffer[] views, int offset) {
+		if (closed || (writePointer == 0 && cycled && readPointer == -1))
+			return 0;
+		else if (cycled)
+			return segment(views, offset, 2, writePointer, readPointer - writePointer);
+		else {
+			int amount = segment(views, offset, 2, writePointer, buffer.length - writePointer);
+			return amount + segment(views, offset + amount, 3, 0, readPointer);
+		}
+	}
+
+	@Override
+	public void consumed(long amount) {
+		skip(amount);
+	}
+
+	@Override
+	public void produced(long amount) {
+		// a write without source only moves the pointers
+		if (amount > 0)
+			write(null, 0, (int) amount);
+	}
+	
 	@Override
 	public BufferFactory<ByteBuffer> getFactory() {
 		return ByteBufferFactory.getInstance();
@@ -0,0 +1,282 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.buffers.bytes;
+
+import java.io.IOException;
+
+import be.nabu.utils.io.api.BufferFactory;
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.NioBackedBuffer;
+import be.nabu.utils.io.api.PeekableContainer;
+
+/**
+ * The direct memory equivalent of the CyclicByteBuffer
+ */
+public class CyclicDirectByteBuffer implements DirectByteBuffer, PeekableContainer<ByteBuffer>, NioBackedBuffer<java.nio.ByteBuffer> {
+
+	private java.nio.ByteBuffer memory, view;
+	
+	/**
+	 * The data and the space can both wrap around the end of the memory so they need up to two views each
+	 */
+	private java.nio.ByteBuffer [] segments;
+	
+	private boolean closed;
+	
+	/**
+	 * Where the data starts and how much data there is, the data can wrap around the end of the memory
+	 */
+	private int readPointer = 0, 
+		size = 0;
+	
+	private DirectBufferPool pool;
+	private java.nio.ByteBuffer pooled;
+	
+	public CyclicDirectByteBuffer(int size) {
+		this.memory = java.nio.ByteBuffer.allocateDirect(size);
+	}
+	
+	/**
+	 * Takes memory from the pool, the pool may hand out a bigger instance but the buffer only uses the requested size
+	 */
+	public CyclicDirectByteBuffer(int size, DirectBufferPool pool) {
+		this.pool = pool;
+		this.pooled = pool.acquire(size);
+		this.memory = DirectBufferPool.slice(pooled, size);
+	}
+	
+	private int capacity() {
+		return memory == null ? 0 : memory.capacity();
+	}
+	
+	private java.nio.ByteBuffer getView(int position, int length) {
+		if (view == null)
+			view = memory.duplicate();
+		return DirectByteBuffers.view(view, position, length);
+	}
+	
+	/**
+	 * The amount of contiguous data available at the given offset (relative to the read pointer)
+	 */
+	private int dataSegment(int offset, int length) {
+		if (size - offset <= 0)
+			return 0;
+		int start = (readPointer + offset) % capacity();
+		return Math.min(length, Math.min(size - offset, capacity() - start));
+	}
+	
+	/**
+	 * The amount of contiguous space available at the given offset (relative to the write pointer)
+	 */
+	private int spaceSegment(int offset, int length) {
+		if (capacity() - size - offset <= 0)
+			return 0;
+		int start = (readPointer + size + offset) % capacity();
+		return Math.min(length, Math.min(capacity() - size - offset, capacity() - start));
+	}
+	
+	@Override
+	public int write(byte[] bytes, int offset, int length) {
+		if (closed)
+			return -1;
+		int written = 0, amount;
+		while (written < length && (amount = spaceSegment(0, length - written)) > 0) {
+			getView((readPointer + size) % capacity(), amount).put(bytes, offset + written, amount);
+			size += amount;
+			written += amount;
+		}
+		return written;
+	}
+	
+	@Override
+	public int write(java.nio.ByteBuffer source) {
+		if (closed)
+			return -1;
+		int written = 0, amount;
+		int limit = source.limit();
+		while (source.hasRemaining() && (amount = spaceSegment(0, source.remaining())) > 0) {
+			source.limit(source.position() + amount);
+			getView((readPointer + size) % capacity(), amount).put(source);
+			source.limit(limit);
+			size += amount;
+			written += amount;
+		}
+		return written;
+	}
+	
+	@Override
+	public int read(byte[] bytes, int offset, int length) {
+		int read = 0, amount;
+		while (read < length && (amount = dataSegment(0, length - read)) > 0) {
+			getView(readPointer, amount).get(bytes, offset + read, amount);
+			consume(amount);
+			read += amount;
+		}
+		return read == 0 && closed ? -1 : read;
+	}
+	
+	@Override
+	public int read(java.nio.ByteBuffer target) {
+		int read = peek(target);
+		consume(read);
+		return read == 0 && closed ? -1 : read;
+	}
+	
+	@Override
+	public int peek(java.nio.ByteBuffer target) {
+		int read = 0, amount;
+		while (target.hasRemaining() && (amount = dataSegment(read, target.remaining())) > 0) {
+			target.put(getView((readPointer + read) % capacity(), amount));
+			read += amount;
+		}
+		return read;
+	}
+	
+	@Override
+	public long read(ByteBuffer target) throws IOException {
+		long read = peek(target);
+		consume((int) read);
+		return read == 0 && closed ? -1 : read;
+	}
+	
+	@Override
+	public long peek(ByteBuffer target) throws IOException {
+		int read = 0, amount;
+		while ((amount = dataSegment(read, (int) Math.min(Integer.MAX_VALUE, target.remainingSpace()))) > 0) {
+			int transferred = DirectByteBuffers.transfer(getView((readPointer + read) % capacity(), amount), target);
+			read += transferred;
+			if (transferred < amount)
+				break;
+		}
+		return read;
+	}
+	
+	private void consume(int amount) {
+		size -= amount;
+		// if the buffer is empty, start at the beginning again, this maximizes contiguous space
+		readPointer = size == 0 ? 0 : (readPointer + amount) % capacity();
+	}
+
+	@Override
+	public long write(ByteBuffer source) throws IOException {
+		return source.read(this);
+	}
+
+	@Override
+	public long remainingData() {
+		return size;
+	}
+
+	@Override
+	public long remainingSpace() {
+		return capacity() - size;
+	}
+
+	@Override
+	public void truncate() {
+		readPointer = 0;
+		size = 0;
+	}
+
+	@Override
+	public long skip(long amount) {
+		int skipped = (int) Math.min(amount, size);
+		if (skipped > 0)
+			consume(skipped);
+		return skipped;
+	}
+	
+	@Override
+	public int read(byte[] bytes) throws IOException {
+		return read(bytes, 0, bytes.length);
+	}
+
+	@Override
+	public int write(byte[] bytes) throws IOException {
+		return write(bytes, 0, bytes.length);
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+	}
+
+	@Override
+	public void flush() {
+		// do nothing
+	}
+	
+	@Override
+	public void release() {
+		if (memory != null && pool != null)
+			pool.release(pooled);
+		pooled = null;
+		memory = null;
+		view = null;
+		segments = null;
+		truncate();
+		closed = true;
+	}
+
+	private java.nio.ByteBuffer getSegment(int index, int position, int length) {
+		if (segments == null)
+			segments = new java.nio.ByteBuffer[4];
+		if (segments[index] == null)
+			segments[index] = memory.duplicate();
+		return DirectByteBuffers.view(segments[index], position, length);
+	}
+	
+	@Override
+	public int getDataViews(java.nio.ByteBuffer[] views, int offset) {
+		int amount = 0, viewed = 0, length;
+		while (offset + amount < views.length && amount < 2 && (length = dataSegment(viewed, Integer.MAX_VALUE)) > 0) {
+			views[offset + amount] = getSegment(amount, (readPointer + viewed) % capacity(), length);
+			viewed += length;
+			amount++;
+		}
+		return amount;
+	}
+
+	@Override
+	public int getSpaceViews(java.nio.ByteBuffer[] views, int offset) {
+		if (closed)
+			return 0;
+		int amount = 0, viewed = 0, length;
+		while (offset + amount < views.length && amount < 2 && (length = spaceSegment(viewed, Integer.MAX_VALUE)) > 0) {
+			views[offset + amount] = getSegment(2 + amount, (readPointer + size + viewed) % capacity(), length);
+			viewed += length;
+			amount++;
+		}
+		return amount;
+	}
+
+	@Override
+	public void consumed(long amount) {
+		skip(amount);
+	}
+
+	@Override
+	public void produced(long amount) {
+		size += (int) Math.min(amount, remainingSpace());
+	}
+	
+	@Override
+	public BufferFactory<ByteBuffer> getFactory() {
+		return ByteBufferFactory.getDirectInstance();
+	}
+}
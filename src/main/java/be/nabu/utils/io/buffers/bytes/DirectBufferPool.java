@@ -0,0 +1,67 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.buffers.bytes;
+
+import be.nabu.utils.io.buffers.BufferPool;
+
+/**
+ * Pools direct memory, allocating and freeing it is a lot more expensive than heap memory
+ * 
+ * It is configured with the "io.direct.pool.*" properties described in {@link BufferPool}, the max defaults to 1mb
+ */
+public class DirectBufferPool extends BufferPool<java.nio.ByteBuffer> {
+
+	public static final String PROPERTY = "io.direct.pool";
+	
+	private static DirectBufferPool instance;
+	
+	public static DirectBufferPool getInstance() {
+		if (instance == null)
+			instance = new DirectBufferPool(
+				getSetting(PROPERTY, "max", 1048576), 
+				getSetting(PROPERTY, "local", 4), 
+				getSetting(PROPERTY, "shared", 64)
+			);
+		return instance;
+	}
+	
+	public DirectBufferPool(int maxSize, int localCapacity, int sharedCapacity) {
+		super(PROPERTY, maxSize, localCapacity, sharedCapacity);
+	}
+	
+	/**
+	 * A view on the first part of a pooled instance so a buffer does not see more memory than it asked for
+	 * The pooled instance itself must be kept to release it
+	 */
+	static java.nio.ByteBuffer slice(java.nio.ByteBuffer pooled, int size) {
+		java.nio.ByteBuffer duplicate = pooled.duplicate();
+		duplicate.clear();
+		duplicate.limit(size);
+		return duplicate.slice();
+	}
+	
+	@Override
+	protected java.nio.ByteBuffer newInstance(int size) {
+		return java.nio.ByteBuffer.allocateDirect(size);
+	}
+
+	@Override
+	protected int size(java.nio.ByteBuffer instance) {
+		return instance.capacity();
+	}
+}
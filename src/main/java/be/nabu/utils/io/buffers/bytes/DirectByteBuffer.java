@@ -0,0 +1,52 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.buffers.bytes;
+
+import java.io.IOException;
+
+import be.nabu.utils.io.api.ByteBuffer;
+
+/**
+ * A byte buffer that is backed by memory outside of the java heap
+ * The nio methods allow data to be moved between direct memory (and channels) without passing through a byte array
+ * 
+ * Direct memory is only reclaimed by the garbage collector long after the buffer is unreachable so it should be released explicitly when no longer needed
+ */
+public interface DirectByteBuffer extends ByteBuffer {
+	
+	/**
+	 * Reads as much data as possible into the remaining space of the target, the position of the target is updated
+	 */
+	public int read(java.nio.ByteBuffer target) throws IOException;
+	
+	/**
+	 * Same as read() but does not update the internal state of this buffer
+	 */
+	public int peek(java.nio.ByteBuffer target) throws IOException;
+	
+	/**
+	 * Writes as much of the remaining data in the source as possible, the position of the source is updated
+	 */
+	public int write(java.nio.ByteBuffer source) throws IOException;
+	
+	/**
+	 * Releases the underlying memory, the buffer can not be used anymore afterwards
+	 * Pooled memory (which includes all the buffers created by the direct factory) is handed back to the pool, memory that was allocated directly is left to the garbage collector
+	 */
+	public void release();
+}
@@ -0,0 +1,74 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.buffers.bytes;
+
+import java.io.IOException;
+
+import be.nabu.utils.io.api.ByteBuffer;
+
+/**
+ * Shared logic to move data out of direct memory
+ */
+class DirectByteBuffers {
+	
+	/**
+	 * Moving data from direct memory to a heap based buffer requires an intermediate array, it is reused per thread
+	 */
+	private static ThreadLocal<byte[]> scratch = new ThreadLocal<byte[]>();
+	
+	/**
+	 * Positions the view on the given region of its memory
+	 */
+	static java.nio.ByteBuffer view(java.nio.ByteBuffer view, int position, int length) {
+		view.clear();
+		view.position(position);
+		view.limit(position + length);
+		return view;
+	}
+	
+	/**
+	 * Writes the remaining data of the source to the target, the caller is responsible for making sure the target has enough space
+	 * The position of the source is updated to reflect the amount written
+	 */
+	static int transfer(java.nio.ByteBuffer source, ByteBuffer target) throws IOException {
+		if (target instanceof DirectByteBuffer) {
+			return ((DirectByteBuffer) target).write(source);
+		}
+		byte [] bytes = scratch.get();
+		if (bytes == null) {
+			bytes = new byte[8192];
+			scratch.set(bytes);
+		}
+		int total = 0;
+		while (source.hasRemaining()) {
+			int amount = Math.min(bytes.length, source.remaining());
+			source.get(bytes, 0, amount);
+			int written = target.write(bytes, 0, amount);
+			if (written < amount) {
+				// push back what could not be written
+				source.position(source.position() - (amount - Math.max(0, written)));
+				if (written > 0) {
+					total += written;
+				}
+				break;
+			}
+			total += written;
+		}
+		return total;
+	}
+}
@@ -21,21 +21,39 @@ import java.io.IOException;
 
 import be.nabu.utils.io.IOUtils;
 import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.NioBackedBuffer;
 import be.nabu.utils.io.buffers.DynamicBuffer;
 
-public class DynamicByteBuffer extends DynamicBuffer<ByteBuffer, StaticByteBuffer> implements ByteBuffer {
+public class DynamicByteBuffer extends DynamicBuffer<ByteBuffer, StaticByteBuffer> implements ByteBuffer, NioBackedBuffer<java.nio.ByteBuffer> {
+	
+	/**
+	 * If the pool is set, the backing arrays are taken from it and handed back once they are fully read
+	 */
+	private ByteBufferPool pool;
 	
 	public DynamicByteBuffer() {
 		super(ByteBufferFactory.getInstance());
+		this.pool = ByteBufferPool.isEnabled() ? ByteBufferPool.getInstance() : null;
 	}
 
 	public DynamicByteBuffer(int bufferSize) {
+		this(bufferSize, ByteBufferPool.isEnabled() ? ByteBufferPool.getInstance() : null);
+	}
+	
+	public DynamicByteBuffer(int bufferSize, ByteBufferPool pool) {
 		super(ByteBufferFactory.getInstance(), bufferSize);
+		this.pool = pool;
 	}
 
 	@Override
 	protected StaticByteBuffer newBuffer(int size) {
-		return new StaticByteBuffer(size);
+		return pool == null ? new StaticByteBuffer(size) : new StaticByteBuffer(pool.acquire(size), false);
+	}
+	
+	@Override
+	protected void release(StaticByteBuffer buffer) {
+		if (pool != null && buffer != null)
+			pool.release(buffer.detach());
 	}
 
 	@Override
@@ -57,6 +75,16 @@ public class DynamicByteBuffer extends DynamicBuffer<ByteBuffer, StaticByteBuffe
 		return write(bytes, 0, bytes.length);
 	}
 	
+	@Override
+	public int getDataViews(java.nio.ByteBuffer[] views, int offset) {
+		return collectDataViews(views, offset);
+	}
+
+	@Override
+	public int getSpaceViews(java.nio.ByteBuffer[] views, int offset) {
+		return collectSpaceViews(views, offset);
+	}
+	
 	@Override
 	public ByteBufferFactory getFactory() {
 		return (ByteBufferFactory) super.getFactory();
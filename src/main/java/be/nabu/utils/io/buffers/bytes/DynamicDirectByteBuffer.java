@@ -0,0 +1,127 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.buffers.bytes;
+
+import java.io.IOException;
+
+import be.nabu.utils.io.IOUtils;
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.NioBackedBuffer;
+import be.nabu.utils.io.buffers.DynamicBuffer;
+
+/**
+ * The direct memory equivalent of the DynamicByteBuffer
+ * By default the fragments are taken from the shared direct buffer pool and handed back once they are read, release() hands back all the remaining fragments
+ */
+public class DynamicDirectByteBuffer extends DynamicBuffer<ByteBuffer, StaticDirectByteBuffer> implements DirectByteBuffer, NioBackedBuffer<java.nio.ByteBuffer> {
+
+	private DirectBufferPool pool;
+	
+	public DynamicDirectByteBuffer() {
+		super(ByteBufferFactory.getDirectInstance());
+		this.pool = DirectBufferPool.getInstance();
+	}
+	
+	public DynamicDirectByteBuffer(int bufferSize) {
+		this(bufferSize, DirectBufferPool.getInstance());
+	}
+	
+	/**
+	 * If no pool is given, the fragments are allocated as needed and left to the garbage collector
+	 */
+	public DynamicDirectByteBuffer(int bufferSize, DirectBufferPool pool) {
+		super(ByteBufferFactory.getDirectInstance(), bufferSize);
+		this.pool = pool;
+	}
+
+	@Override
+	protected StaticDirectByteBuffer newBuffer(int size) {
+		return pool == null ? new StaticDirectByteBuffer(size) : new StaticDirectByteBuffer(size, pool);
+	}
+	
+	@Override
+	protected void release(StaticDirectByteBuffer buffer) {
+		if (buffer != null)
+			buffer.release();
+	}
+	
+	@Override
+	public void release() {
+		truncate();
+		close();
+	}
+	
+	@Override
+	public int read(java.nio.ByteBuffer target) throws IOException {
+		int read = (int) read(new StaticDirectByteBuffer(target, false));
+		if (read > 0)
+			target.position(target.position() + read);
+		return read;
+	}
+	
+	@Override
+	public int peek(java.nio.ByteBuffer target) throws IOException {
+		int read = (int) peek(new StaticDirectByteBuffer(target, false));
+		if (read > 0)
+			target.position(target.position() + read);
+		return read;
+	}
+	
+	@Override
+	public int write(java.nio.ByteBuffer source) throws IOException {
+		int written = (int) write(new StaticDirectByteBuffer(source, true));
+		if (written > 0)
+			source.position(source.position() + written);
+		return written;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		return (int) read(IOUtils.wrap(bytes, offset, length, false));
+	}
+
+	@Override
+	public int write(byte[] bytes, int offset, int length) throws IOException {
+		return (int) write(IOUtils.wrap(bytes, offset, length, true));
+	}
+	
+	@Override
+	public int read(byte[] bytes) throws IOException {
+		return read(bytes, 0, bytes.length);
+	}
+
+	@Override
+	public int write(byte[] bytes) throws IOException {
+		return write(bytes, 0, bytes.length);
+	}
+	
+	@Override
+	public int getDataViews(java.nio.ByteBuffer[] views, int offset) {
+		return collectDataViews(views, offset);
+	}
+
+	@Override
+	public int getSpaceViews(java.nio.ByteBuffer[] views, int offset) {
+		return collectSpaceViews(views, offset);
+	}
+	
+	@Override
+	public ByteBufferFactory getFactory() {
+		return (ByteBufferFactory) super.getFactory();
+	}
+}
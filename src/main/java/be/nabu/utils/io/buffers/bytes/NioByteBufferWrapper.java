@@ -20,12 +20,26 @@ package be.nabu.utils.io.buffers.bytes;
 import java.io.IOException;
 
 import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.NioBackedBuffer;
 
-public class NioByteBufferWrapper implements ByteBuffer {
+public class NioByteBufferWrapper implements ByteBuffer, NioBackedBuffer<java.nio.ByteBuffer> {
 
 	private java.nio.ByteBuffer buffer;
 	
-	private byte [] copyBuffer = new byte[40960];
+	/**
+	 * A duplicate of the buffer that is handed out as data or space view
+	 */
+	private java.nio.ByteBuffer view;
+	
+	/**
+	 * Only needed when copying from or to a heap based buffer, it is allocated on first use
+	 */
+	private byte [] copyBuffer;
+	
+	/**
+	 * Used to collect the space views of nio backed targets
+	 */
+	private java.nio.ByteBuffer [] targetViews;
 	
 	private boolean closed = false;
 	
@@ -115,6 +129,7 @@ public class NioByteBufferWrapper implements ByteBuffer {
 	public long read(ByteBuffer buffer) throws IOException {
 		return read(buffer, true);
 	}
+	@SuppressWarnings("unchecked")
 	private long read(ByteBuffer target, boolean updateState) throws IOException {
 		if (!wasReading) {
 			wasReading = true;
@@ -124,6 +139,19 @@ public class NioByteBufferWrapper implements ByteBuffer {
 		if (read == 0)
 			return closed ? -1 : read;
 		java.nio.ByteBuffer source = updateState ? this.buffer : this.buffer.duplicate();
+		if (target instanceof DirectByteBuffer) {
+			int limit = source.limit();
+			source.limit(source.position() + read);
+			int totalRead = ((DirectByteBuffer) target).write(source);
+			source.limit(limit);
+			return totalRead;
+		}
+		else if (target instanceof NioBackedBuffer) {
+			int totalRead = copyToViews(source, (NioBackedBuffer<java.nio.ByteBuffer>) target, read);
+			if (totalRead >= 0)
+				return totalRead;
+		}
+		byte [] copyBuffer = getCopyBuffer();
 		int totalRead = 0;
 		while (read > 0) {
 			int readSize = Math.min(copyBuffer.length, read);
@@ -141,6 +169,10 @@ public class NioByteBufferWrapper implements ByteBuffer {
 			wasReading = false;
 			this.buffer.compact();
 		}
+		if (buffer instanceof DirectByteBuffer) {
+			return Math.max(0, ((DirectByteBuffer) buffer).read(this.buffer));
+		}
+		byte [] copyBuffer = getCopyBuffer();
 		long total = 0;
 		while(buffer.remainingData() > 0) {
 			int read = (int) Math.min(buffer.remainingData(), remainingSpace());
@@ -154,6 +186,40 @@ public class NioByteBufferWrapper implements ByteBuffer {
 		return total;
 	}
 
+	/**
+	 * Copies straight into the space views of the target, returns -1 if the target has no views available
+	 */
+	private int copyToViews(java.nio.ByteBuffer source, NioBackedBuffer<java.nio.ByteBuffer> target, int amount) {
+		if (targetViews == null)
+			targetViews = new java.nio.ByteBuffer[4];
+		int views = target.getSpaceViews(targetViews, 0);
+		if (views == 0)
+			return -1;
+		int limit = source.limit();
+		int totalRead = 0;
+		try {
+			for (int i = 0; i < views && totalRead < amount; i++) {
+				int size = Math.min(targetViews[i].remaining(), amount - totalRead);
+				source.limit(source.position() + size);
+				targetViews[i].put(source);
+				totalRead += size;
+			}
+		}
+		finally {
+			source.limit(limit);
+			target.produced(totalRead);
+			for (int i = 0; i < views; i++)
+				targetViews[i] = null;
+		}
+		return totalRead;
+	}
+	
+	private byte [] getCopyBuffer() {
+		if (copyBuffer == null)
+			copyBuffer = new byte[40960];
+		return copyBuffer;
+	}
+
 	@Override
 	public void truncate() {
 		buffer.clear();
@@ -182,4 +248,36 @@ public class NioByteBufferWrapper implements ByteBuffer {
 	public long peek(ByteBuffer target) throws IOException {
 		return read(target, false);
 	}
+
+	@Override
+	public int getDataViews(java.nio.ByteBuffer[] views, int offset) {
+		if (offset >= views.length || remainingData() == 0)
+			return 0;
+		views[offset] = getView();
+		return 1;
+	}
+
+	@Override
+	public int getSpaceViews(java.nio.ByteBuffer[] views, int offset) {
+		if (offset >= views.length || closed || remainingSpace() == 0)
+			return 0;
+		views[offset] = getView();
+		return 1;
+	}
+	
+	private java.nio.ByteBuffer getView() {
+		if (view == null)
+			view = buffer.duplicate();
+		return DirectByteBuffers.view(view, buffer.position(), buffer.remaining());
+	}
+
+	@Override
+	public void consumed(long amount) {
+		buffer.position(buffer.position() + (int) Math.min(amount, remainingData()));
+	}
+
+	@Override
+	public void produced(long amount) {
+		buffer.position(buffer.position() + (int) Math.min(amount, remainingSpace()));
+	}
 }
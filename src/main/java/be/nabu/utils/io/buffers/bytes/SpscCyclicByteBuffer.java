@@ -0,0 +1,237 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.buffers.bytes;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import be.nabu.utils.io.api.BufferFactory;
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.PeekableContainer;
+
+/**
+ * A cyclic buffer that can be written by one thread and read by another without locking
+ * The read and write positions are ever increasing sequences: only the reader moves the read sequence and only the writer moves the write sequence
+ * Each side publishes its sequence with an ordered write and keeps a cached copy of the other sequence so it only has to do a volatile read when it seems to run out of data or space
+ * 
+ * The writing side may call write(), flush() and close(), the reading side may call read(), peek(), skip() and truncate()
+ * The remaining data and space can be asked by either side but are only guaranteed not to decrease for the side that owns them
+ */
+public class SpscCyclicByteBuffer implements ByteBuffer, PeekableContainer<ByteBuffer> {
+
+	/**
+	 * The sequences are stored in an array with enough room in between them that they never share a cache line (or an adjacent one that is prefetched along)
+	 * Each side keeps its cached copy of the other sequence right next to its own sequence so the cached copies do not share a cache line either
+	 */
+	private static final int READ = 15, CACHED_WRITE = 16, WRITE = 32, CACHED_READ = 33, PADDED = 49;
+	
+	private final AtomicLongArray sequences = new AtomicLongArray(PADDED);
+	private final byte [] buffer;
+	private final int capacity;
+	
+	private volatile boolean closed;
+	
+	public SpscCyclicByteBuffer(int size) {
+		this.buffer = new byte[size];
+		this.capacity = size;
+	}
+	
+	@Override
+	public int read(byte[] bytes, int offset, int length) {
+		long read = sequences.get(READ);
+		int amount = (int) Math.min(length, available(read, length));
+		if (amount <= 0) {
+			return isEmptyAndClosed(read) ? -1 : 0;
+		}
+		if (bytes != null) {
+			int index = index(read);
+			int first = Math.min(amount, capacity - index);
+			System.arraycopy(buffer, index, bytes, offset, first);
+			if (first < amount) {
+				System.arraycopy(buffer, 0, bytes, offset + first, amount - first);
+			}
+		}
+		sequences.lazySet(READ, read + amount);
+		return amount;
+	}
+	
+	@Override
+	public int write(byte[] bytes, int offset, int length) {
+		if (closed) {
+			return -1;
+		}
+		long write = sequences.get(WRITE);
+		int amount = (int) Math.min(length, space(write, length));
+		if (amount <= 0) {
+			return 0;
+		}
+		int index = index(write);
+		int first = Math.min(amount, capacity - index);
+		System.arraycopy(bytes, offset, buffer, index, first);
+		if (first < amount) {
+			System.arraycopy(bytes, offset + first, buffer, 0, amount - first);
+		}
+		sequences.lazySet(WRITE, write + amount);
+		return amount;
+	}
+	
+	/**
+	 * The data available to the reader, the write sequence is only read again if the cached one does not suffice
+	 */
+	private long available(long read, long wanted) {
+		long cachedWrite = sequences.get(CACHED_WRITE);
+		if (cachedWrite - read < wanted) {
+			cachedWrite = sequences.get(WRITE);
+			sequences.lazySet(CACHED_WRITE, cachedWrite);
+		}
+		return cachedWrite - read;
+	}
+	
+	/**
+	 * The space available to the writer, the read sequence is only read again if the cached one does not suffice
+	 */
+	private long space(long write, long wanted) {
+		long cachedRead = sequences.get(CACHED_READ);
+		if (capacity - (write - cachedRead) < wanted) {
+			cachedRead = sequences.get(READ);
+			sequences.lazySet(CACHED_READ, cachedRead);
+		}
+		return capacity - (write - cachedRead);
+	}
+	
+	private int index(long sequence) {
+		return (int) (sequence % capacity);
+	}
+	
+	/**
+	 * The writer closes after its last write so if the buffer is closed, the write sequence we read afterwards is final
+	 */
+	private boolean isEmptyAndClosed(long read) {
+		return closed && sequences.get(WRITE) == read;
+	}
+
+	@Override
+	public long read(ByteBuffer target) throws IOException {
+		long read = sequences.get(READ);
+		long wanted = target.remainingSpace();
+		int amount = (int) Math.min(wanted, available(read, wanted));
+		if (amount <= 0) {
+			return isEmptyAndClosed(read) ? -1 : 0;
+		}
+		int index = index(read);
+		int first = Math.min(amount, capacity - index);
+		int written = target.write(buffer, index, first);
+		if (written == first && first < amount) {
+			written += target.write(buffer, 0, amount - first);
+		}
+		if (written > 0) {
+			sequences.lazySet(READ, read + written);
+		}
+		return written;
+	}
+
+	@Override
+	public long write(ByteBuffer source) throws IOException {
+		if (closed) {
+			return -1;
+		}
+		long write = sequences.get(WRITE);
+		long wanted = source.remainingData();
+		int amount = (int) Math.min(wanted, space(write, wanted));
+		if (amount <= 0) {
+			return 0;
+		}
+		int index = index(write);
+		int first = Math.min(amount, capacity - index);
+		int read = source.read(buffer, index, first);
+		if (read == first && first < amount) {
+			read += source.read(buffer, 0, amount - first);
+		}
+		if (read > 0) {
+			sequences.lazySet(WRITE, write + read);
+		}
+		return Math.max(0, read);
+	}
+	
+	@Override
+	public long peek(ByteBuffer target) throws IOException {
+		long read = sequences.get(READ);
+		long wanted = target.remainingSpace();
+		int amount = (int) Math.min(wanted, available(read, wanted));
+		if (amount <= 0) {
+			return 0;
+		}
+		int index = index(read);
+		int first = Math.min(amount, capacity - index);
+		int written = target.write(buffer, index, first);
+		if (written == first && first < amount) {
+			written += target.write(buffer, 0, amount - first);
+		}
+		if (written != amount)
+			throw new IOException("Could not peek " + amount);
+		return amount;
+	}
+
+	@Override
+	public long skip(long amount) {
+		return amount > 0 ? Math.max(0, read(null, 0, (int) Math.min(amount, Integer.MAX_VALUE))) : 0;
+	}
+	
+	/**
+	 * Drops all the data that is currently available, this must be called by the reader
+	 */
+	@Override
+	public void truncate() {
+		sequences.lazySet(READ, sequences.get(WRITE));
+	}
+
+	@Override
+	public long remainingData() {
+		return sequences.get(WRITE) - sequences.get(READ);
+	}
+
+	@Override
+	public long remainingSpace() {
+		return capacity - (sequences.get(WRITE) - sequences.get(READ));
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+	}
+
+	@Override
+	public void flush() {
+		// do nothing
+	}
+
+	@Override
+	public int read(byte[] bytes) {
+		return read(bytes, 0, bytes.length);
+	}
+
+	@Override
+	public int write(byte[] bytes) {
+		return write(bytes, 0, bytes.length);
+	}
+
+	@Override
+	public BufferFactory<ByteBuffer> getFactory() {
+		return ByteBufferFactory.getInstance();
+	}
+}
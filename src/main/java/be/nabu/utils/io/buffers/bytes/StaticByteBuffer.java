@@ -22,13 +22,19 @@ import java.io.IOException;
 import be.nabu.utils.io.api.BufferFactory;
 import be.nabu.utils.io.api.ByteBuffer;
 import be.nabu.utils.io.api.DuplicatableContainer;
+import be.nabu.utils.io.api.NioBackedBuffer;
 import be.nabu.utils.io.api.PeekableContainer;
 import be.nabu.utils.io.api.PositionableContainer;
 import be.nabu.utils.io.api.ResettableContainer;
 
-public class StaticByteBuffer implements ByteBuffer, ResettableContainer<ByteBuffer>, PositionableContainer<ByteBuffer>, DuplicatableContainer<ByteBuffer, StaticByteBuffer>, PeekableContainer<ByteBuffer> {
+public class StaticByteBuffer implements ByteBuffer, ResettableContainer<ByteBuffer>, PositionableContainer<ByteBuffer>, DuplicatableContainer<ByteBuffer, StaticByteBuffer>, PeekableContainer<ByteBuffer>, NioBackedBuffer<java.nio.ByteBuffer> {
 
 	private byte [] bytes;
+	
+	/**
+	 * Lazily created nio wrappers around the array, they are repositioned whenever views are requested
+	 */
+	private java.nio.ByteBuffer dataView, spaceView;
 
 	private int writePointer = 0, 
 		readPointer = 0;
@@ -119,6 +125,25 @@ public class StaticByteBuffer implements ByteBuffer, ResettableContainer<ByteBuf
 		return parent == null ? buffer.read(this) : 0;
 	}
 
+	/**
+	 * Hands over the backing array so it can be recycled, this buffer can not be used anymore afterwards
+	 * Views (duplicates) do not own the array so they return null
+	 */
+	byte [] detach() {
+		if (parent != null)
+			return null;
+		byte [] bytes = this.bytes;
+		this.bytes = null;
+		dataView = null;
+		spaceView = null;
+		writePointer = 0;
+		readPointer = 0;
+		readStart = 0;
+		writeEnd = 0;
+		closed = true;
+		return bytes;
+	}
+
 	private byte [] getBytes() {
 		return parent == null ? bytes : parent.bytes;
 	}
@@ -193,6 +218,38 @@ public class StaticByteBuffer implements ByteBuffer, ResettableContainer<ByteBuf
 		return write(bytes, 0, bytes.length);
 	}
 	
+	@Override
+	public int getDataViews(java.nio.ByteBuffer[] views, int offset) {
+		int length = (int) remainingData();
+		if (length == 0 || offset >= views.length || getBytes() == null)
+			return 0;
+		if (dataView == null)
+			dataView = java.nio.ByteBuffer.wrap(getBytes());
+		views[offset] = DirectByteBuffers.view(dataView, readPointer, length);
+		return 1;
+	}
+
+	@Override
+	public int getSpaceViews(java.nio.ByteBuffer[] views, int offset) {
+		int length = (int) remainingSpace();
+		if (length == 0 || closed || offset >= views.length)
+			return 0;
+		if (spaceView == null)
+			spaceView = java.nio.ByteBuffer.wrap(bytes);
+		views[offset] = DirectByteBuffers.view(spaceView, writePointer, length);
+		return 1;
+	}
+
+	@Override
+	public void consumed(long amount) {
+		readPointer += Math.min(amount, remainingData());
+	}
+
+	@Override
+	public void produced(long amount) {
+		writePointer += Math.min(amount, remainingSpace());
+	}
+	
 	@Override
 	public BufferFactory<ByteBuffer> getFactory() {
 		return ByteBufferFactory.getInstance();
@@ -0,0 +1,301 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.buffers.bytes;
+
+import java.io.IOException;
+
+import be.nabu.utils.io.api.BufferFactory;
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.DuplicatableContainer;
+import be.nabu.utils.io.api.NioBackedBuffer;
+import be.nabu.utils.io.api.PeekableContainer;
+import be.nabu.utils.io.api.PositionableContainer;
+import be.nabu.utils.io.api.ResettableContainer;
+
+/**
+ * The direct memory equivalent of the StaticByteBuffer
+ */
+public class StaticDirectByteBuffer implements DirectByteBuffer, ResettableContainer<ByteBuffer>, PositionableContainer<ByteBuffer>, DuplicatableContainer<ByteBuffer, StaticDirectByteBuffer>, PeekableContainer<ByteBuffer>, NioBackedBuffer<java.nio.ByteBuffer> {
+
+	private java.nio.ByteBuffer memory;
+	
+	/**
+	 * Views on the memory that are repositioned for each operation, this allows us to use the bulk operations without allocating new buffers
+	 */
+	private java.nio.ByteBuffer readView, writeView;
+	
+	private int writePointer = 0, 
+		readPointer = 0;
+	
+	private boolean closed;
+	
+	/**
+	 * If the buffer has a parent, it is a read-only view of the parent
+	 */
+	private StaticDirectByteBuffer parent;
+	
+	/**
+	 * If the memory came from a pool, the instance we acquired is returned there on release
+	 */
+	private DirectBufferPool pool;
+	private java.nio.ByteBuffer pooled;
+	
+	private StaticDirectByteBuffer(StaticDirectByteBuffer parent, boolean duplicateState) {
+		this.parent = parent;
+		if (duplicateState)
+			readPointer = parent.readPointer;
+	}
+	
+	public StaticDirectByteBuffer(int size) {
+		this(java.nio.ByteBuffer.allocateDirect(size), false);
+	}
+	
+	/**
+	 * Takes memory from the pool, the pool may hand out a bigger instance but the buffer only uses the requested size
+	 */
+	public StaticDirectByteBuffer(int size, DirectBufferPool pool) {
+		this.pool = pool;
+		// we keep the pooled instance itself so we can hand it back
+		this.pooled = pool.acquire(size);
+		this.memory = DirectBufferPool.slice(pooled, size);
+	}
+	
+	/**
+	 * Wraps the region between the position and the limit of the given buffer, this does not have to be direct memory
+	 */
+	public StaticDirectByteBuffer(java.nio.ByteBuffer memory, boolean containsData) {
+		this.memory = memory.slice();
+		this.writePointer = containsData ? this.memory.capacity() : 0;
+	}
+	
+	private java.nio.ByteBuffer getMemory() {
+		return parent == null ? memory : parent.memory;
+	}
+	
+	private int getWritePointer() {
+		return parent == null ? writePointer : parent.writePointer;
+	}
+	
+	private java.nio.ByteBuffer getReadView(int length) {
+		if (readView == null)
+			readView = getMemory().duplicate();
+		return DirectByteBuffers.view(readView, readPointer, length);
+	}
+	
+	private java.nio.ByteBuffer getWriteView(int length) {
+		if (writeView == null)
+			writeView = memory.duplicate();
+		return DirectByteBuffers.view(writeView, writePointer, length);
+	}
+	
+	@Override
+	public long remainingData() {
+		return getWritePointer() - readPointer;
+	}
+
+	@Override
+	public long remainingSpace() {
+		// can not write if the memory is owned by the parent
+		return parent != null || memory == null ? 0 : memory.capacity() - writePointer;
+	}
+
+	@Override
+	public void truncate() {
+		writePointer = 0;
+		readPointer = 0;
+	}
+
+	@Override
+	public long skip(long amount) {
+		amount = Math.min(amount, remainingData());
+		readPointer += amount;
+		return amount;
+	}
+
+	@Override
+	public long read(ByteBuffer target) throws IOException {
+		long remainingSpace = target.remainingSpace();
+		if (remainingSpace == 0) {
+			return 0;
+		}
+		int amountToRead = (int) Math.min(remainingData(), remainingSpace);
+		if (amountToRead > 0) {
+			amountToRead = DirectByteBuffers.transfer(getReadView(amountToRead), target);
+			readPointer += amountToRead;
+		}
+		return amountToRead == 0 && (remainingSpace() == 0 || closed) && remainingData() == 0 ? -1 : amountToRead;
+	}
+	
+	@Override
+	public int read(java.nio.ByteBuffer target) {
+		if (!target.hasRemaining())
+			return 0;
+		int amountToRead = (int) Math.min(remainingData(), target.remaining());
+		if (amountToRead > 0) {
+			target.put(getReadView(amountToRead));
+			readPointer += amountToRead;
+			return amountToRead;
+		}
+		return remainingSpace() == 0 || closed ? -1 : 0;
+	}
+	
+	@Override
+	public int peek(java.nio.ByteBuffer target) {
+		int amountToRead = (int) Math.min(remainingData(), target.remaining());
+		if (amountToRead > 0)
+			target.put(getReadView(amountToRead));
+		return amountToRead;
+	}
+
+	@Override
+	public long write(ByteBuffer source) throws IOException {
+		return parent == null ? source.read(this) : 0;
+	}
+	
+	@Override
+	public int write(java.nio.ByteBuffer source) {
+		if (closed)
+			return -1;
+		int amount = (int) Math.min(source.remaining(), remainingSpace());
+		if (amount > 0) {
+			int limit = source.limit();
+			source.limit(source.position() + amount);
+			getWriteView(amount).put(source);
+			source.limit(limit);
+			writePointer += amount;
+		}
+		return amount;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) {
+		if (length == 0)
+			return 0;
+		length = (int) Math.min(length, remainingData());
+		if (length > 0) {
+			getReadView(length).get(bytes, offset, length);
+			readPointer += length;
+			return length;
+		}
+		else
+			// if we couldn't read anything and you can't write anything anymore, stop
+			return remainingSpace() == 0 || closed ? -1 : length;
+	}
+
+	@Override
+	public int write(byte[] bytes, int offset, int length) {
+		if (closed)
+			return -1;
+		length = (int) Math.min(length, remainingSpace());
+		if (length > 0) {
+			getWriteView(length).put(bytes, offset, length);
+			writePointer += length;
+		}
+		return length;
+	}
+	
+	@Override
+	public int read(byte[] bytes) throws IOException {
+		return read(bytes, 0, bytes.length);
+	}
+
+	@Override
+	public int write(byte[] bytes) throws IOException {
+		return write(bytes, 0, bytes.length);
+	}
+	
+	@Override
+	public long peek(ByteBuffer target) throws IOException {
+		int amount = (int) Math.min(remainingData(), target.remainingSpace());
+		return amount > 0 ? DirectByteBuffers.transfer(getReadView(amount), target) : 0;
+	}
+
+	@Override
+	public StaticDirectByteBuffer duplicate(boolean duplicateState) {
+		return new StaticDirectByteBuffer(this, duplicateState);
+	}
+	
+	@Override
+	public void reset() {
+		readPointer = 0;
+	}
+
+	@Override
+	public long position() {
+		return readPointer;
+	}
+	
+	@Override
+	public void close() {
+		closed = true;
+	}
+
+	@Override
+	public void flush() {
+		// do nothing
+	}
+	
+	@Override
+	public void release() {
+		// views do not own the memory
+		if (parent == null && memory != null) {
+			if (pool != null)
+				pool.release(pooled);
+			pooled = null;
+			memory = null;
+		}
+		readView = null;
+		writeView = null;
+		writePointer = 0;
+		readPointer = 0;
+		closed = true;
+	}
+	
+	@Override
+	public int getDataViews(java.nio.ByteBuffer[] views, int offset) {
+		int length = (int) remainingData();
+		if (length == 0 || offset >= views.length || getMemory() == null)
+			return 0;
+		views[offset] = getReadView(length);
+		return 1;
+	}
+
+	@Override
+	public int getSpaceViews(java.nio.ByteBuffer[] views, int offset) {
+		int length = (int) remainingSpace();
+		if (length == 0 || closed || offset >= views.length)
+			return 0;
+		views[offset] = getWriteView(length);
+		return 1;
+	}
+
+	@Override
+	public void consumed(long amount) {
+		readPointer += Math.min(amount, remainingData());
+	}
+
+	@Override
+	public void produced(long amount) {
+		writePointer += Math.min(amount, remainingSpace());
+	}
+	
+	@Override
+	public BufferFactory<ByteBuffer> getFactory() {
+		return ByteBufferFactory.getDirectInstance();
+	}
+}
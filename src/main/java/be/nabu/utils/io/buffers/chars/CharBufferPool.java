@@ -0,0 +1,66 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.buffers.chars;
+
+import be.nabu.utils.io.buffers.BufferPool;
+import be.nabu.utils.io.buffers.bytes.ByteBufferPool;
+
+/**
+ * Pools the char arrays that back dynamic buffers
+ * 
+ * The pool is disabled by default, it can be enabled with the system property "io.char.pool", if that is not set it follows "io.buffer.pool"
+ * It is configured with its own "io.char.pool.*" properties described in {@link BufferPool}
+ * The max is expressed in chars and defaults to 32k chars so a size class takes up the same memory as its counterpart in the byte pool
+ */
+public class CharBufferPool extends BufferPool<char[]> {
+
+	public static final String PROPERTY = "io.char.pool";
+	
+	private static CharBufferPool instance;
+	
+	public static CharBufferPool getInstance() {
+		if (instance == null)
+			instance = new CharBufferPool(
+				getSetting(PROPERTY, "max", 32768), 
+				getSetting(PROPERTY, "local", 8), 
+				getSetting(PROPERTY, "shared", 256)
+			);
+		return instance;
+	}
+	
+	/**
+	 * Whether the default dynamic buffers should use the pool
+	 */
+	public static boolean isEnabled() {
+		return Boolean.parseBoolean(System.getProperty(PROPERTY, System.getProperty(ByteBufferPool.PROPERTY, "false")));
+	}
+	
+	public CharBufferPool(int maxSize, int localCapacity, int sharedCapacity) {
+		super(PROPERTY, maxSize, localCapacity, sharedCapacity);
+	}
+
+	@Override
+	protected char[] newInstance(int size) {
+		return new char[size];
+	}
+
+	@Override
+	protected int size(char[] instance) {
+		return instance.length;
+	}
+}
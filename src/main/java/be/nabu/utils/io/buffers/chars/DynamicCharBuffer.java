@@ -25,17 +25,34 @@ import be.nabu.utils.io.buffers.DynamicBuffer;
 
 public class DynamicCharBuffer extends DynamicBuffer<CharBuffer, StaticCharBuffer> implements CharBuffer {
 
+	/**
+	 * If the pool is set, the backing arrays are taken from it and handed back once they are fully read
+	 */
+	private CharBufferPool pool;
+	
 	public DynamicCharBuffer() {
 		super(CharBufferFactory.getInstance());
+		this.pool = CharBufferPool.isEnabled() ? CharBufferPool.getInstance() : null;
 	}
 
 	public DynamicCharBuffer(int bufferSize) {
+		this(bufferSize, CharBufferPool.isEnabled() ? CharBufferPool.getInstance() : null);
+	}
+	
+	public DynamicCharBuffer(int bufferSize, CharBufferPool pool) {
 		super(CharBufferFactory.getInstance(), bufferSize);
+		this.pool = pool;
 	}
 
 	@Override
 	protected StaticCharBuffer newBuffer(int size) {
-		return new StaticCharBuffer(size);
+		return pool == null ? new StaticCharBuffer(size) : new StaticCharBuffer(pool.acquire(size), false);
+	}
+	
+	@Override
+	protected void release(StaticCharBuffer buffer) {
+		if (pool != null && buffer != null)
+			pool.release(buffer.detach());
 	}
 
 	@Override
@@ -115,6 +115,23 @@ public class StaticCharBuffer implements CharBuffer, ResettableContainer<CharBuf
 		return parent == null ? buffer.read(this) : 0;
 	}
 
+	/**
+	 * Hands over the backing array so it can be recycled, this buffer can not be used anymore afterwards
+	 * Views (duplicates) do not own the array so they return null
+	 */
+	char [] detach() {
+		if (parent != null)
+			return null;
+		char [] chars = this.chars;
+		this.chars = null;
+		writePointer = 0;
+		readPointer = 0;
+		readStart = 0;
+		writeEnd = 0;
+		closed = true;
+		return chars;
+	}
+
 	private char [] getChars() {
 		return parent == null ? chars : parent.chars;
 	}
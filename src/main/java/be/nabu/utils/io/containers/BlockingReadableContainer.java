@@ -18,7 +18,6 @@
 package be.nabu.utils.io.containers;
 
 import java.io.IOException;
-import java.util.Date;
 import java.util.concurrent.TimeUnit;
 
 import be.nabu.utils.io.api.Buffer;
@@ -27,7 +26,12 @@ import be.nabu.utils.io.api.ReadableContainer;
 public class BlockingReadableContainer<T extends Buffer<T>> implements ReadableContainer<T> {
 
 	private ReadableContainer<T> parent;
+	/**
+	 * The timeout in nanoseconds
+	 */
 	private long timeout;
+	private BlockingStrategy strategy;
+	private BlockingStrategy.Waiter waiter;
 	
 	public BlockingReadableContainer(ReadableContainer<T> parent) {
 		this(parent, 0, null);
@@ -36,7 +40,7 @@ public class BlockingReadableContainer<T extends Buffer<T>> implements ReadableC
 	public BlockingReadableContainer(ReadableContainer<T> parent, long timeout, TimeUnit timeUnit) {
 		this.parent = parent;
 		if (timeUnit != null)
-			this.timeout = timeUnit.convert(timeout, TimeUnit.MILLISECONDS);
+			this.timeout = timeUnit.toNanos(timeout);
 	}
 	
 	@Override
@@ -46,19 +50,34 @@ public class BlockingReadableContainer<T extends Buffer<T>> implements ReadableC
 	
 	@Override
 	public long read(T buffer) throws IOException {
-		long read = 0;
-		Date startedReading = timeout == 0 ? null : new Date();
-		while (read == 0) {
-			read = parent.read(buffer);
-			if (read == 0) {
-				// if there is no timeout, retry indefinitely
-				if (timeout == 0)
-					continue;
-				// if we have exceeded the timeout, stop reading
-				else if (new Date().getTime() - startedReading.getTime() > timeout)
-					break;
+		long read = parent.read(buffer);
+		if (read == 0 && buffer.remainingSpace() > 0) {
+			// if there is no timeout, retry indefinitely
+			long deadline = BlockingStrategy.deadline(timeout, TimeUnit.NANOSECONDS);
+			if (waiter == null) {
+				waiter = getStrategy().forData(parent);
+			}
+			try {
+				while (read == 0 && waiter.await(deadline)) {
+					read = parent.read(buffer);
+				}
+			}
+			finally {
+				waiter.done();
 			}
 		}
 		return read;
 	}
+
+	public BlockingStrategy getStrategy() {
+		if (strategy == null) {
+			strategy = BlockingStrategy.getInstance();
+		}
+		return strategy;
+	}
+
+	public void setStrategy(BlockingStrategy strategy) {
+		this.strategy = strategy;
+		this.waiter = null;
+	}
 }
@@ -0,0 +1,186 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.containers;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import be.nabu.utils.io.api.EventfulReadableContainer;
+import be.nabu.utils.io.api.EventfulSubscriber;
+import be.nabu.utils.io.api.EventfulSubscription;
+import be.nabu.utils.io.api.EventfulWritableContainer;
+
+/**
+ * Decides how a blocking container waits for its parent: first it retries straight away, then it yields and finally it parks for increasingly longer periods
+ * If the parent is eventful, a parked thread is woken up as soon as the parent signals data (or space) so it can park a lot longer without adding latency
+ * Virtual threads skip straight to parking, spinning or yielding them only keeps their carrier thread busy
+ */
+public class BlockingStrategy {
+
+	private static BlockingStrategy instance;
+	
+	public static BlockingStrategy getInstance() {
+		if (instance == null) {
+			instance = new BlockingStrategy(
+				Integer.parseInt(System.getProperty("io.blocking.spins", "100")),
+				Integer.parseInt(System.getProperty("io.blocking.yields", "10")),
+				Long.parseLong(System.getProperty("io.blocking.park", "1000")),
+				Long.parseLong(System.getProperty("io.blocking.park.eventful", "100000")),
+				TimeUnit.MICROSECONDS
+			);
+		}
+		return instance;
+	}
+	
+	private static final long MINIMUM_PARK = TimeUnit.MICROSECONDS.toNanos(10);
+	
+	private int spins, yields;
+	private long maximumPark, eventfulPark;
+	
+	public BlockingStrategy(int spins, int yields, long maximumPark, long eventfulPark, TimeUnit timeUnit) {
+		this.spins = spins;
+		this.yields = yields;
+		this.maximumPark = Math.max(MINIMUM_PARK, timeUnit.toNanos(maximumPark));
+		this.eventfulPark = Math.max(MINIMUM_PARK, timeUnit.toNanos(eventfulPark));
+	}
+	
+	/**
+	 * The waiter will be woken up by the data events of the container if it is eventful
+	 */
+	public Waiter forData(Object container) {
+		return new Waiter(container, true);
+	}
+	
+	/**
+	 * The waiter will be woken up by the space events of the container if it is eventful
+	 */
+	public Waiter forSpace(Object container) {
+		return new Waiter(container, false);
+	}
+	
+	/**
+	 * Keeps track of how long someone has been waiting, a waiter should only be used by one thread at a time
+	 */
+	public class Waiter implements EventfulSubscriber {
+		
+		private Object container;
+		private boolean data;
+		private int attempts;
+		private long park;
+		private EventfulSubscription subscription;
+		private volatile Thread waiting;
+		/**
+		 * Set by every event so an event that arrives between the last attempt of the caller and the park is not lost
+		 */
+		private volatile boolean signalled;
+		
+		private Waiter(Object container, boolean data) {
+			this.container = container;
+			this.data = data;
+		}
+		
+		/**
+		 * Waits for the next attempt, returns false if the deadline (in nanotime) has passed, a deadline of 0 means there is none
+		 */
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		public boolean await(long deadline) throws InterruptedIOException {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new InterruptedIOException("Interrupted while waiting");
+			}
+			long remaining = deadline == 0 ? Long.MAX_VALUE : deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return false;
+			}
+			if (attempts == 0 && Threads.isVirtual(Thread.currentThread())) {
+				attempts = spins + yields;
+			}
+			if (attempts < spins) {
+				attempts++;
+			}
+			else if (attempts < spins + yields) {
+				attempts++;
+				Thread.yield();
+			}
+			// subscribe before the first park, the caller retries once more so an event that fired just before the subscription is not missed
+			else if (subscription == null && data && container instanceof EventfulReadableContainer) {
+				subscription = ((EventfulReadableContainer) container).availableData(this);
+			}
+			else if (subscription == null && !data && container instanceof EventfulWritableContainer) {
+				subscription = ((EventfulWritableContainer) container).availableSpace(this);
+			}
+			else {
+				park = subscription == null ? Math.min(maximumPark, Math.max(MINIMUM_PARK, park * 2)) : eventfulPark;
+				waiting = Thread.currentThread();
+				try {
+					// an event since the last park means the caller should retry right away
+					if (signalled) {
+						signalled = false;
+					}
+					else {
+						LockSupport.parkNanos(this, Math.min(park, remaining));
+					}
+				}
+				finally {
+					waiting = null;
+				}
+			}
+			return true;
+		}
+		
+		/**
+		 * Progress was made, the next wait starts from scratch
+		 */
+		public void reset() {
+			attempts = 0;
+			park = 0;
+		}
+		
+		/**
+		 * Stops listening to the container, this should be called when the blocking call returns
+		 */
+		public void done() {
+			reset();
+			if (subscription != null) {
+				subscription.unsubscribe();
+				subscription = null;
+			}
+		}
+
+		@Override
+		public void on(EventfulSubscription subscription) {
+			signalled = true;
+			Thread waiting = this.waiting;
+			if (waiting != null) {
+				LockSupport.unpark(waiting);
+			}
+		}
+	}
+	
+	/**
+	 * Calculates the deadline for a timeout, 0 means there is no deadline
+	 */
+	public static long deadline(long timeout, TimeUnit timeUnit) {
+		if (timeout <= 0 || timeUnit == null) {
+			return 0;
+		}
+		long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+		// avoid clashing with "no deadline"
+		return deadline == 0 ? 1 : deadline;
+	}
+}
@@ -18,7 +18,6 @@
 package be.nabu.utils.io.containers;
 
 import java.io.IOException;
-import java.util.Date;
 import java.util.concurrent.TimeUnit;
 
 import be.nabu.utils.io.api.Buffer;
@@ -28,7 +27,12 @@ public class BlockingWritableContainer<T extends Buffer<T>> implements WritableC
 
 	private WritableContainer<T> parent;
 	
+	/**
+	 * The timeout in nanoseconds, it is reset whenever something is written
+	 */
 	private long timeout;
+	private BlockingStrategy strategy;
+	private BlockingStrategy.Waiter waiter;
 	
 	public BlockingWritableContainer(WritableContainer<T> parent) {
 		this(parent, 0, null);
@@ -37,7 +41,7 @@ public class BlockingWritableContainer<T extends Buffer<T>> implements WritableC
 	public BlockingWritableContainer(WritableContainer<T> parent, long timeout, TimeUnit timeUnit) {
 		this.parent = parent;
 		if (timeUnit != null)
-			this.timeout = timeUnit.convert(timeout, TimeUnit.MILLISECONDS);
+			this.timeout = timeUnit.toNanos(timeout);
 	}
 	
 	@Override
@@ -48,21 +52,39 @@ public class BlockingWritableContainer<T extends Buffer<T>> implements WritableC
 	@Override
 	public long write(T buffer) throws IOException {
 		long totalWritten = 0;
-		Date lastWritten = timeout == 0 ? null : new Date();
-		while (buffer.remainingData() > 0) {
-			long written = parent.write(buffer);
-			if (written == 0) {
-				// if there is no timeout, retry indefinitely
-				if (timeout == 0)
-					continue;
-				else if (new Date().getTime() - lastWritten.getTime() > timeout)
-					break;
+		long deadline = 0;
+		try {
+			while (buffer.remainingData() > 0) {
+				long written = parent.write(buffer);
+				if (written == 0) {
+					// if there is no timeout, retry indefinitely
+					if (deadline == 0) {
+						deadline = BlockingStrategy.deadline(timeout, TimeUnit.NANOSECONDS);
+					}
+					if (waiter == null) {
+						waiter = getStrategy().forSpace(parent);
+					}
+					if (!waiter.await(deadline)) {
+						break;
+					}
+				}
+				// the parent is closed
+				else if (written < 0) {
+					return totalWritten == 0 ? -1 : totalWritten;
+				}
+				else {
+					// the timeout starts over
+					deadline = 0;
+					if (waiter != null) {
+						waiter.reset();
+					}
+					totalWritten += written;
+				}
 			}
-			else {
-				// if there is a timeout, update the last written date
-				if (timeout > 0)
-					lastWritten = new Date();
-				totalWritten += written;
+		}
+		finally {
+			if (waiter != null) {
+				waiter.done();
 			}
 		}
 		return totalWritten;
@@ -72,4 +94,16 @@ public class BlockingWritableContainer<T extends Buffer<T>> implements WritableC
 	public void flush() throws IOException {
 		parent.flush();
 	}
+
+	public BlockingStrategy getStrategy() {
+		if (strategy == null) {
+			strategy = BlockingStrategy.getInstance();
+		}
+		return strategy;
+	}
+
+	public void setStrategy(BlockingStrategy strategy) {
+		this.strategy = strategy;
+		this.waiter = null;
+	}
 }
@@ -18,8 +18,6 @@
 package be.nabu.utils.io.containers;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 import be.nabu.utils.io.api.Buffer;
 import be.nabu.utils.io.api.Container;
@@ -29,28 +27,14 @@ import be.nabu.utils.io.api.EventfulSubscriber;
 import be.nabu.utils.io.api.EventfulSubscription;
 import be.nabu.utils.io.api.EventfulWritableContainer;
 
+/**
+ * The subscribers are notified without holding a lock, a subscriber that blocks does not hold up (or pin) anyone else
+ */
 public class EventfulContainerImpl<T extends Buffer<T>> implements Container<T>, EventfulReadableContainer<T>, EventfulWritableContainer<T>, EventfulCloseableContainer {
 
-	private final class SubscriptionImplementation implements EventfulSubscription {
-		private final EventfulSubscriber subscriber;
-		private List<EventfulSubscriber> subscribers;
-
-		private SubscriptionImplementation(EventfulSubscriber subscriber, List<EventfulSubscriber> subscribers) {
-			this.subscriber = subscriber;
-			this.subscribers = subscribers;
-		}
-
-		@Override
-		public void unsubscribe() {
-			synchronized(subscribers) {
-				subscribers.remove(subscriber);
-			}
-		}
-	}
-
-	private List<EventfulSubscriber> availableDataSubscribers = new ArrayList<EventfulSubscriber>();
-	private List<EventfulSubscriber> availableSpaceSubscribers = new ArrayList<EventfulSubscriber>();
-	private List<EventfulSubscriber> closedSubscribers = new ArrayList<EventfulSubscriber>();
+	private EventfulSubscriberList availableDataSubscribers = new EventfulSubscriberList();
+	private EventfulSubscriberList availableSpaceSubscribers = new EventfulSubscriberList();
+	private EventfulSubscriberList closedSubscribers = new EventfulSubscriberList();
 	
 	private Container<T> parent;
 	private boolean fireDataOnClose = true;
@@ -62,93 +46,45 @@ public class EventfulContainerImpl<T extends Buffer<T>> implements Container<T>,
 	@Override
 	public long read(T buffer) throws IOException {
 		long read = parent.read(buffer);
-		fireAvailableSpace();
+		availableSpaceSubscribers.fire();
 		return read;
 	}
 
 	@Override
 	public void close() throws IOException {
 		parent.close();
-		fireClosed();
+		closedSubscribers.fire();
+		if (fireDataOnClose) {
+			availableDataSubscribers.fire();
+		}
 	}
+	
 	@Override
 	public EventfulSubscription availableData(EventfulSubscriber subscriber) {
-		synchronized(availableDataSubscribers) {
-			availableDataSubscribers.add(subscriber);
-		}
-		return new SubscriptionImplementation(subscriber, availableDataSubscribers);
-	}
-
-	private void fireAvailableData() {
-		synchronized(availableDataSubscribers) {
-			// need new arraylist because we send in the subscription specifically to allow you to unsubscribe
-			for (EventfulSubscriber subscriber : new ArrayList<EventfulSubscriber>(availableDataSubscribers)) {
-				try {
-					subscriber.on(new SubscriptionImplementation(subscriber, availableDataSubscribers));
-				}
-				catch (Exception e) {
-					e.printStackTrace();
-				}
-			}
-		}
+		return availableDataSubscribers.subscribe(subscriber);
 	}
 
 	@Override
 	public EventfulSubscription availableSpace(EventfulSubscriber subscriber) {
-		synchronized(availableSpaceSubscribers) {
-			availableSpaceSubscribers.add(subscriber);
-		}
-		return new SubscriptionImplementation(subscriber, availableSpaceSubscribers);
+		return availableSpaceSubscribers.subscribe(subscriber);
 	}
 	
-	private void fireAvailableSpace() {
-		synchronized(availableSpaceSubscribers) {
-			for (EventfulSubscriber subscriber : new ArrayList<EventfulSubscriber>(availableSpaceSubscribers)) {
-				try {
-					subscriber.on(new SubscriptionImplementation(subscriber, availableSpaceSubscribers));
-				}
-				catch (Exception e) {
-					e.printStackTrace();
-				}
-			}
-		}
-	}
-
 	@Override
 	public EventfulSubscription closed(EventfulSubscriber subscriber) {
-		synchronized(closedSubscribers) {
-			closedSubscribers.add(subscriber);
-		}
-		return new SubscriptionImplementation(subscriber, closedSubscribers);
-	}
-	
-	private void fireClosed() {
-		synchronized(closedSubscribers) {
-			for (EventfulSubscriber subscriber : new ArrayList<EventfulSubscriber>(closedSubscribers)) {
-				try {
-					subscriber.on(new SubscriptionImplementation(subscriber, closedSubscribers));
-				}
-				catch (Exception e) {
-					e.printStackTrace();
-				}
-			}
-		}
-		if (fireDataOnClose) {
-			fireAvailableData();
-		}
+		return closedSubscribers.subscribe(subscriber);
 	}
 
 	@Override
 	public long write(T buffer) throws IOException {
 		long write = parent.write(buffer);
-		fireAvailableData();
+		availableDataSubscribers.fire();
 		return write;
 	}
 
 	@Override
 	public void flush() throws IOException {
 		parent.flush();
-		fireAvailableData();
+		availableDataSubscribers.fire();
 	}
 
 	public boolean isFireDataOnClose() {
@@ -0,0 +1,66 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.containers;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import be.nabu.utils.io.api.EventfulSubscriber;
+import be.nabu.utils.io.api.EventfulSubscription;
+
+/**
+ * Manages the subscribers for a single event
+ * Subscribing and firing can happen from different threads, the subscribers are notified without holding a lock so they can (un)subscribe or do I/O from the callback
+ */
+public class EventfulSubscriberList {
+
+	private List<EventfulSubscriber> subscribers = new CopyOnWriteArrayList<EventfulSubscriber>();
+	
+	private final class SubscriptionImplementation implements EventfulSubscription {
+		private final EventfulSubscriber subscriber;
+
+		private SubscriptionImplementation(EventfulSubscriber subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void unsubscribe() {
+			subscribers.remove(subscriber);
+		}
+	}
+	
+	public EventfulSubscription subscribe(EventfulSubscriber subscriber) {
+		subscribers.add(subscriber);
+		return new SubscriptionImplementation(subscriber);
+	}
+	
+	public void fire() {
+		for (EventfulSubscriber subscriber : subscribers) {
+			try {
+				subscriber.on(new SubscriptionImplementation(subscriber));
+			}
+			catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	public boolean isEmpty() {
+		return subscribers.isEmpty();
+	}
+}
@@ -18,7 +18,7 @@
 package be.nabu.utils.io.containers;
 
 import java.io.IOException;
-import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 import be.nabu.utils.io.api.Buffer;
 import be.nabu.utils.io.api.ReadableContainer;
@@ -31,6 +31,8 @@ public class MinimalReadableContainer<T extends Buffer<T>> implements ReadableCo
 
 	private ReadableContainer<T> parent;
 	private long alreadyRead, minimumAmountToRead, timeout;
+	private BlockingStrategy strategy;
+	private BlockingStrategy.Waiter waiter;
 	
 	public MinimalReadableContainer(ReadableContainer<T> parent, long minimumAmountToRead) {
 		this(parent, minimumAmountToRead, 0);
@@ -50,24 +52,54 @@ public class MinimalReadableContainer<T extends Buffer<T>> implements ReadableCo
 	@Override
 	public long read(T target) throws IOException {
 		int totalRead = 0;
-		Date started = timeout == 0 ? null : new Date();
-		// if we still need to read something and we haven't done so already, do so
-		while (target.remainingSpace() > 0) {
-			long read = parent.read(target);
-			if (read == -1) {
-				return totalRead == 0 ? -1 : totalRead;
+		long deadline = BlockingStrategy.deadline(timeout, TimeUnit.MILLISECONDS);
+		try {
+			// if we still need to read something and we haven't done so already, do so
+			while (target.remainingSpace() > 0) {
+				long read = parent.read(target);
+				if (read == -1) {
+					return totalRead == 0 ? -1 : totalRead;
+				}
+				else if (read == 0 && alreadyRead >= minimumAmountToRead) {
+					break;
+				}
+				// the minimum amount is not yet reached
+				// check that the read did not time out (avoid long read attacks)
+				else if (alreadyRead < minimumAmountToRead && deadline != 0 && System.nanoTime() - deadline > 0) {
+					throw new IOException("The read timed out");
+				}
+				else if (read == 0) {
+					if (waiter == null) {
+						waiter = getStrategy().forData(parent);
+					}
+					if (!waiter.await(deadline)) {
+						throw new IOException("The read timed out");
+					}
+				}
+				else if (waiter != null) {
+					waiter.reset();
+				}
+				totalRead += read;
+				alreadyRead += read;
 			}
-			else if (read == 0 && alreadyRead >= minimumAmountToRead) {
-				break;
-			}
-			// the minimum amount is not yet reached
-			// check that the read did not time out (avoid long read attacks)
-			else if (alreadyRead < minimumAmountToRead && started != null && new Date().getTime() - started.getTime() > timeout) {
-				throw new IOException("The read timed out");
+		}
+		finally {
+			if (waiter != null) {
+				waiter.done();
 			}
-			totalRead += read;
-			alreadyRead += read;
 		}
 		return totalRead;
 	}
+
+	public BlockingStrategy getStrategy() {
+		if (strategy == null) {
+			strategy = BlockingStrategy.getInstance();
+		}
+		return strategy;
+	}
+
+	public void setStrategy(BlockingStrategy strategy) {
+		this.strategy = strategy;
+		this.waiter = null;
+	}
 }
@@ -26,6 +26,8 @@ public class MinimalWritableContainer<T extends Buffer<T>> implements WritableCo
 	
 	private WritableContainer<T> parent;
 	private long alreadyWritten, minimumAmountToWrite;
+	private BlockingStrategy strategy;
+	private BlockingStrategy.Waiter waiter;
 	
 	public MinimalWritableContainer(WritableContainer<T> parent, long minimumAmountToWrite) {
 		this.parent = parent;
@@ -40,15 +42,31 @@ public class MinimalWritableContainer<T extends Buffer<T>> implements WritableCo
 	@Override
 	public long write(T source) throws IOException {
 		int totalWritten = 0;
-		// if we still need to read something and we haven't done so already, do so
-		while (source.remainingData() > 0) {
-			long write = parent.write(source);
-			if (write == -1)
-				return totalWritten == 0 ? -1 : totalWritten;
-			else if (write == 0 && alreadyWritten >= minimumAmountToWrite)
-				break;
-			totalWritten += write;
-			alreadyWritten += write;
+		try {
+			// if we still need to read something and we haven't done so already, do so
+			while (source.remainingData() > 0) {
+				long write = parent.write(source);
+				if (write == -1)
+					return totalWritten == 0 ? -1 : totalWritten;
+				else if (write == 0 && alreadyWritten >= minimumAmountToWrite)
+					break;
+				else if (write == 0) {
+					if (waiter == null) {
+						waiter = getStrategy().forSpace(parent);
+					}
+					waiter.await(0);
+				}
+				else if (waiter != null) {
+					waiter.reset();
+				}
+				totalWritten += write;
+				alreadyWritten += write;
+			}
+		}
+		finally {
+			if (waiter != null) {
+				waiter.done();
+			}
 		}
 		return totalWritten;
 	}
@@ -57,4 +75,16 @@ public class MinimalWritableContainer<T extends Buffer<T>> implements WritableCo
 	public void flush() throws IOException {
 		parent.flush();
 	}
+
+	public BlockingStrategy getStrategy() {
+		if (strategy == null) {
+			strategy = BlockingStrategy.getInstance();
+		}
+		return strategy;
+	}
+
+	public void setStrategy(BlockingStrategy strategy) {
+		this.strategy = strategy;
+		this.waiter = null;
+	}
 }
@@ -0,0 +1,53 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.containers;
+
+import java.lang.reflect.Method;
+
+/**
+ * The library targets java 8 so Thread.isVirtual() (java 21+) is looked up once and invoked reflectively
+ */
+final class Threads {
+
+	private static final Method IS_VIRTUAL = findIsVirtual();
+	
+	private Threads() {
+		// static helper
+	}
+	
+	private static Method findIsVirtual() {
+		try {
+			return Thread.class.getMethod("isVirtual");
+		}
+		catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+	
+	static boolean isVirtual(Thread thread) {
+		if (IS_VIRTUAL == null) {
+			return false;
+		}
+		try {
+			return (Boolean) IS_VIRTUAL.invoke(thread);
+		}
+		catch (Exception e) {
+			return false;
+		}
+	}
+}
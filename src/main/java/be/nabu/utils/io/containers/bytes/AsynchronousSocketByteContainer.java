@@ -22,31 +22,150 @@ import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousChannelGroup;
 import java.nio.channels.AsynchronousSocketChannel;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.nio.channels.CompletionHandler;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
 
-import be.nabu.utils.io.IOUtils;
 import be.nabu.utils.io.api.Container;
-import be.nabu.utils.io.buffers.bytes.DynamicByteBuffer;
-import be.nabu.utils.io.buffers.bytes.NioByteBufferWrapper;
+import be.nabu.utils.io.api.EventfulCloseableContainer;
+import be.nabu.utils.io.api.EventfulReadableContainer;
+import be.nabu.utils.io.api.EventfulSubscriber;
+import be.nabu.utils.io.api.EventfulSubscription;
+import be.nabu.utils.io.api.EventfulWritableContainer;
+import be.nabu.utils.io.api.NioBackedBuffer;
+import be.nabu.utils.io.containers.EventfulSubscriberList;
 
 /**
  * This can only be compiled with java 1.7+
+ * 
+ * The socket is read into one of two buffers while the other is drained by read(), once the reader has caught up the buffers switch places
+ * Written data is queued in chunks up to a configurable maximum and sent with gathering writes
+ * Neither read() nor write() ever block, the subscribers are notified from the completion handlers when it makes sense to try again
  */
-public class AsynchronousSocketByteContainer implements Container<be.nabu.utils.io.api.ByteBuffer> {
+public class AsynchronousSocketByteContainer implements Container<be.nabu.utils.io.api.ByteBuffer>, EventfulReadableContainer<be.nabu.utils.io.api.ByteBuffer>, EventfulWritableContainer<be.nabu.utils.io.api.ByteBuffer>, EventfulCloseableContainer {
 
-	private Future<Void> connect;
-	private Future<Integer> read, write;
 	private AsynchronousSocketChannel socket;
 	private AsynchronousChannelGroup group;
-	private ByteBuffer buffer;
-	private DynamicByteBuffer writeBuffer = new DynamicByteBuffer();
-	private boolean readyForReading = false;
+	
+	/**
+	 * The buffer that is being drained by read() (ready for reading) and the buffer the socket reads into (ready for writing unless it is full)
+	 */
+	private ByteBuffer draining, filling;
+	
+	/**
+	 * Whether the socket is currently reading into the filling buffer and whether that buffer is waiting for the draining buffer to be emptied
+	 */
+	private boolean reading, filled, endOfStream;
+	
+	/**
+	 * The chunks that still have to be written (ready for reading) and chunks that can be reused
+	 */
+	private Deque<ByteBuffer> outbound = new ArrayDeque<ByteBuffer>(), free = new ArrayDeque<ByteBuffer>();
+	private ByteBuffer [] gather = new ByteBuffer[16];
+	private long queued;
+	private boolean writing;
+	/**
+	 * The amount of chunks at the head of the outbound queue that are handed to the write in progress, chunks after them can still be appended to
+	 */
+	private int inFlight;
+	private Integer writeQueueSize;
+	private int chunkSize;
+	
+	private volatile boolean connected, closing, closed;
+	private volatile Throwable failure;
+	
+	private EventfulSubscriberList dataSubscribers = new EventfulSubscriberList(),
+		spaceSubscribers = new EventfulSubscriberList(),
+		closedSubscribers = new EventfulSubscriberList();
+	
+	private CompletionHandler<Void, Void> connectHandler = new CompletionHandler<Void, Void>() {
+		@Override
+		public void completed(Void result, Void attachment) {
+			connected = true;
+			synchronized(AsynchronousSocketByteContainer.this) {
+				startRead();
+				startWrite();
+			}
+			spaceSubscribers.fire();
+		}
+		@Override
+		public void failed(Throwable exc, Void attachment) {
+			fail(exc);
+		}
+	};
+	
+	private CompletionHandler<Integer, Void> readHandler = new CompletionHandler<Integer, Void>() {
+		@Override
+		public void completed(Integer result, Void attachment) {
+			synchronized(AsynchronousSocketByteContainer.this) {
+				reading = false;
+				if (result < 0) {
+					endOfStream = true;
+				}
+				else {
+					filling.flip();
+					filled = true;
+					switchBuffers();
+					startRead();
+				}
+			}
+			dataSubscribers.fire();
+		}
+		@Override
+		public void failed(Throwable exc, Void attachment) {
+			synchronized(AsynchronousSocketByteContainer.this) {
+				reading = false;
+			}
+			fail(exc);
+		}
+	};
+	
+	private CompletionHandler<Long, Void> writeHandler = new CompletionHandler<Long, Void>() {
+		@Override
+		public void completed(Long result, Void attachment) {
+			boolean drained;
+			synchronized(AsynchronousSocketByteContainer.this) {
+				writing = false;
+				inFlight = 0;
+				queued -= result;
+				while (!outbound.isEmpty() && !outbound.peekFirst().hasRemaining()) {
+					release(outbound.pollFirst());
+				}
+				startWrite();
+				drained = outbound.isEmpty();
+			}
+			if (drained && closing) {
+				closeSocket();
+			}
+			else {
+				spaceSubscribers.fire();
+			}
+		}
+		@Override
+		public void failed(Throwable exc, Void attachment) {
+			synchronized(AsynchronousSocketByteContainer.this) {
+				writing = false;
+			}
+			fail(exc);
+		}
+	};
 	
 	public AsynchronousSocketByteContainer(AsynchronousChannelGroup group, AsynchronousSocketChannel socket, int bufferSize) {
 		this.group = group;
 		this.socket = socket;
-		this.buffer = ByteBuffer.allocate(bufferSize);
+		allocate(bufferSize);
+		try {
+			connected = socket.getRemoteAddress() != null;
+		}
+		catch (IOException e) {
+			fail(e);
+		}
+		if (connected) {
+			synchronized(this) {
+				startRead();
+			}
+		}
 	}
 	
 	public AsynchronousSocketByteContainer(SocketAddress remote) throws IOException {
@@ -58,115 +177,269 @@ public class AsynchronousSocketByteContainer implements Container<be.nabu.utils.
 		socket = AsynchronousSocketChannel.open(group);
 		if (local != null)
 			socket.bind(local);
-		connect = socket.connect(remote);
-		buffer = ByteBuffer.allocate(bufferSize);
+		allocate(bufferSize);
+		socket.connect(remote, null, connectHandler);
+	}
+	
+	private void allocate(int bufferSize) {
+		chunkSize = bufferSize;
+		draining = ByteBuffer.allocate(bufferSize);
+		// the draining buffer starts out empty and ready for reading
+		draining.flip();
+		filling = ByteBuffer.allocate(bufferSize);
+	}
+	
+	/**
+	 * If the reader has emptied its buffer and the socket has filled the other one, they switch places
+	 */
+	private void switchBuffers() {
+		if (filled && !draining.hasRemaining()) {
+			ByteBuffer drained = draining;
+			draining = filling;
+			filling = drained;
+			filling.clear();
+			filled = false;
+		}
+	}
+	
+	private void startRead() {
+		if (connected && !reading && !filled && !endOfStream && !closed && failure == null) {
+			reading = true;
+			try {
+				socket.read(filling, null, readHandler);
+			}
+			catch (RuntimeException e) {
+				reading = false;
+				throw e;
+			}
+		}
+	}
+	
+	private void startWrite() {
+		if (connected && !writing && !outbound.isEmpty() && !closed && failure == null) {
+			int amount = 0;
+			for (ByteBuffer chunk : outbound) {
+				if (amount == gather.length)
+					break;
+				gather[amount++] = chunk;
+			}
+			writing = true;
+			inFlight = amount;
+			try {
+				// a timeout of 0 means the write does not time out
+				socket.write(gather, 0, amount, 0, TimeUnit.MILLISECONDS, null, writeHandler);
+			}
+			catch (RuntimeException e) {
+				writing = false;
+				inFlight = 0;
+				throw e;
+			}
+			finally {
+				for (int i = 0; i < amount; i++)
+					gather[i] = null;
+			}
+		}
+	}
+	
+	private ByteBuffer acquire() {
+		ByteBuffer chunk = free.pollFirst();
+		if (chunk == null)
+			chunk = ByteBuffer.allocate(chunkSize);
+		chunk.clear();
+		return chunk;
+	}
+	
+	private void release(ByteBuffer chunk) {
+		// only keep as many chunks as a single gathering write can use
+		if (free.size() < gather.length)
+			free.addLast(chunk);
+	}
+	
+	private void fail(Throwable exception) {
+		// closing the socket ourselves aborts the pending operations, that is not a failure
+		if (failure == null && !closed)
+			failure = exception;
+		closeSocket();
+	}
+	
+	private void closeSocket() {
+		synchronized(this) {
+			if (closed)
+				return;
+			closed = true;
+		}
+		try {
+			socket.close();
+		}
+		catch (IOException e) {
+			// ignore, we are closing anyway
+		}
+		finally {
+			closedSubscribers.fire();
+			// readers and writers should find out that the container is closed
+			dataSubscribers.fire();
+			spaceSubscribers.fire();
+		}
+	}
+	
+	private void checkFailure() throws IOException {
+		if (failure != null) {
+			throw failure instanceof IOException ? (IOException) failure : new IOException(failure);
+		}
+	}
+	
+	private void checkConnected() throws IOException {
+		// a socket that was passed in might have been connected afterwards
+		if (!connected && socket.getRemoteAddress() != null) {
+			connected = true;
+			startRead();
+		}
 	}
 
 	@Override
-	public long read(be.nabu.utils.io.api.ByteBuffer source) throws IOException {
-		// the connect has to be done
-		if (connect != null && !connect.isDone())
-			return 0;
-		int totalRead = 0;
-		while (source.remainingSpace() > 0) {
-			// stop reading if one is busy but not ready
-			if (read != null && !read.isDone())
+	public synchronized long read(be.nabu.utils.io.api.ByteBuffer target) throws IOException {
+		checkFailure();
+		if (closed && !draining.hasRemaining() && !filled)
+			return -1;
+		checkConnected();
+		long totalRead = 0;
+		while (target.remainingSpace() > 0) {
+			if (draining.hasRemaining()) {
+				int amount = (int) Math.min(target.remainingSpace(), draining.remaining());
+				int written = target.write(draining.array(), draining.arrayOffset() + draining.position(), amount);
+				draining.position(draining.position() + written);
+				totalRead += written;
+				if (written < amount)
+					break;
+			}
+			else if (filled) {
+				switchBuffers();
+			}
+			else {
 				break;
-			
-			// if the async read was done but we haven't flipped it yet, do so
-			if (read != null && read.isDone() && !readyForReading) {
+			}
+		}
+		// now that there is room again, resume reading from the socket
+		startRead();
+		return totalRead == 0 && endOfStream && !filled && !draining.hasRemaining() ? -1 : totalRead;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public synchronized long write(be.nabu.utils.io.api.ByteBuffer source) throws IOException {
+		checkFailure();
+		if (closed || closing)
+			return -1;
+		checkConnected();
+		long totalWritten = 0;
+		while (source.remainingData() > 0 && queued < getWriteQueueSize()) {
+			// small writes are appended to the last chunk as long as it is not being written, otherwise every write would pin a chunk of its own
+			ByteBuffer chunk = outbound.peekLast();
+			boolean append = chunk != null && outbound.size() > inFlight && chunk.limit() < chunk.capacity();
+			int start = 0;
+			if (append) {
+				start = chunk.position();
+				chunk.position(chunk.limit());
+				chunk.limit(chunk.capacity());
+			}
+			else {
+				chunk = acquire();
+			}
+			int before = chunk.position();
+			chunk.limit((int) Math.min(chunk.limit(), before + getWriteQueueSize() - queued));
+			if (source instanceof NioBackedBuffer) {
+				NioBackedBuffer<ByteBuffer> backed = (NioBackedBuffer<ByteBuffer>) source;
+				int amount = backed.getDataViews(gather, 0);
 				try {
-					int amountRead = read.get();
-					if (amountRead == -1)
-						return totalRead == 0 ? -1 : totalRead;
-					else if (amountRead == 0)
-						return totalRead == 0 ? -1 : totalRead; 
-				}
-				catch (InterruptedException e) {
-					throw new RuntimeException(e);
+					for (int i = 0; i < amount && chunk.hasRemaining(); i++) {
+						int size = Math.min(chunk.remaining(), gather[i].remaining());
+						int limit = gather[i].limit();
+						gather[i].limit(gather[i].position() + size);
+						chunk.put(gather[i]);
+						gather[i].limit(limit);
+					}
 				}
-				catch (ExecutionException e) {
-					throw new RuntimeException(e);
+				finally {
+					backed.consumed(chunk.position() - before);
+					for (int i = 0; i < amount; i++)
+						gather[i] = null;
 				}
-				buffer.flip();
-				readyForReading = true;
-			}
-			if (read != null && read.isDone() && buffer.hasRemaining()) {
-				int amount = (int) Math.min(source.remainingData(), buffer.remaining());
-				source.write(new NioByteBufferWrapper(buffer, true));
-				totalRead += amount;
 			}
 			else {
-				buffer.clear();
-				readyForReading = false;
-				this.read = socket.read(buffer);
+				int read = source.read(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+				if (read > 0)
+					chunk.position(chunk.position() + read);
+			}
+			int added = chunk.position() - before;
+			// ready the chunk for reading again, the data starts where it started before
+			chunk.limit(chunk.position());
+			chunk.position(start);
+			if (added == 0) {
+				if (!append)
+					release(chunk);
+				break;
 			}
+			totalWritten += added;
+			queued += added;
+			if (!append)
+				outbound.addLast(chunk);
 		}
-		return totalRead == 0 && !socket.isOpen() ? -1 : totalRead;
+		startWrite();
+		return totalWritten;
 	}
 
+	@Override
+	public synchronized void flush() throws IOException {
+		checkFailure();
+		checkConnected();
+		// the data is already being written in the background, this makes sure it is started
+		startWrite();
+	}
+	
+	/**
+	 * The socket is closed once the queued data has been written
+	 */
 	@Override
 	public void close() throws IOException {
-		flush();
-		socket.close();
+		boolean drained;
+		synchronized(this) {
+			closing = true;
+			drained = outbound.isEmpty() || failure != null;
+		}
+		if (drained) {
+			closeSocket();
+		}
 	}
 
 	@Override
-	public long write(be.nabu.utils.io.api.ByteBuffer target) throws IOException {
-		long length = target.remainingData();
-		// the connect has to be done
-		if (connect != null && !connect.isDone())
-			return 0;
-		// if we have a write pending, stop
-		if (write != null && !write.isDone())
-			return 0;
-		// or if a write was done, remove from the buffer what was written
-		else if (write != null && write.isDone()) {
-			try {
-				int amountWritten = write.get();
-				// if nothing was written, stop
-				if (amountWritten == 0)
-					return 0;
-				// otherwise clear the writeBuffer from what has been written already
-				else
-					writeBuffer.skip(amountWritten);
-			}
-			catch (InterruptedException e) {
-				throw new RuntimeException(e);
-			}
-			catch (ExecutionException e) {
-				throw new RuntimeException(e);
-			}
-		}
-		// if we get here, write data to the buffer and initiate a write
-		writeBuffer.write(target);
-		this.write = socket.write(ByteBuffer.wrap(IOUtils.peekBytes(writeBuffer)));
-//		writeBuffer.write(bytes, offset, length);
-		return length;
+	public EventfulSubscription availableData(EventfulSubscriber subscriber) {
+		return dataSubscribers.subscribe(subscriber);
 	}
 
 	@Override
-	public void flush() throws IOException {
-		// if there is data in the buffer apparently the write is already done, flush the remaining data
-		if (write != null && write.isDone() && writeBuffer.remainingData() > 0) {
-			try {
-				int amountWritten = write.get();
-				if (amountWritten > 0)
-					writeBuffer.skip(amountWritten);
-			}
-			catch (InterruptedException e) {
-				throw new RuntimeException(e);
-			}
-			catch (ExecutionException e) {
-				throw new RuntimeException(e);
-			}
-		}
-		if (writeBuffer.remainingData() > 0) {
-			byte [] dataToWrite = new byte[(int) writeBuffer.remainingData()];
-			write = socket.write(ByteBuffer.wrap(dataToWrite));
+	public EventfulSubscription availableSpace(EventfulSubscriber subscriber) {
+		return spaceSubscribers.subscribe(subscriber);
+	}
+
+	@Override
+	public EventfulSubscription closed(EventfulSubscriber subscriber) {
+		return closedSubscribers.subscribe(subscriber);
+	}
+	
+	/**
+	 * The maximum amount of data that can be queued for writing, once it is reached write() returns 0 until the socket has caught up
+	 */
+	public Integer getWriteQueueSize() {
+		if (writeQueueSize == null) {
+			writeQueueSize = Integer.parseInt(System.getProperty("io.async.write.queue", "1048576"));
 		}
+		return writeQueueSize;
 	}
 
+	public void setWriteQueueSize(Integer writeQueueSize) {
+		this.writeQueueSize = writeQueueSize;
+	}
+	
 	public AsynchronousChannelGroup getGroup() {
 		return group;
 	}
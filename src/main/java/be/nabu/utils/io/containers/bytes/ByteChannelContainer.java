@@ -20,24 +20,45 @@ package be.nabu.utils.io.containers.bytes;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
 
 import be.nabu.utils.io.IOUtils;
 import be.nabu.utils.io.api.Container;
+import be.nabu.utils.io.api.NioBackedBuffer;
+import be.nabu.utils.io.buffers.bytes.ByteBufferFactory;
+import be.nabu.utils.io.buffers.bytes.DirectByteBuffer;
 
 public class ByteChannelContainer<T extends ByteChannel> implements Container<be.nabu.utils.io.api.ByteBuffer> {
 	
 	private T channel;
 	private byte [] bytes = new byte[4096];
+	/**
+	 * In off-heap mode the channel reads from and writes to direct memory
+	 * Otherwise the jdk copies the heap data into a temporary direct buffer for each call
+	 */
+	private ByteBuffer direct;
+	/**
+	 * Reused to collect the views of nio backed buffers so we can scatter/gather straight into and out of them
+	 */
+	private ByteBuffer [] views = new ByteBuffer[16];
 	private boolean isClosed;
 
 	public ByteChannelContainer(T channel) {
+		this(channel, ByteBufferFactory.getInstance());
+	}
+	
+	public ByteChannelContainer(T channel, ByteBufferFactory factory) {
 		this.channel = channel;
+		if (factory.isDirect())
+			this.direct = factory.newNioBuffer(bytes.length);
 	}
 
 	public T getChannel() {
 		return channel;
 	}
 
+	@SuppressWarnings("unchecked")
 	@Override
 	public long read(be.nabu.utils.io.api.ByteBuffer target) throws IOException {
 		if (isClosed()) {
@@ -46,12 +67,15 @@ public class ByteChannelContainer<T extends ByteChannel> implements Container<be
 		else if (!isReady()) {
 			return 0;
 		}
+		else if (target instanceof NioBackedBuffer) {
+			return readViews((NioBackedBuffer<ByteBuffer>) target);
+		}
 		long totalRead = 0;
 		while (!isClosed && target.remainingSpace() > 0) {
 			// there is an edge case in large volumes that sometimes a socket keeps getting activated by a READ signal but never stops
 			// this is usually a case of an EOF not being interpreted correctly but there does not appear to be an EOF problem up the stack (except perhaps a problem in the SSLEngine with a package larger than package size)
 			// before the check was specifically for -1, now it's been broadened to anything negative (see comments below)
-			int read = channel.read(ByteBuffer.wrap(bytes, 0, (int) Math.min(bytes.length, target.remainingSpace())));
+			int read = readChannel((int) Math.min(bytes.length, target.remainingSpace()));
 			/*
 			 * EOF = -1;              // End of file
 				UNAVAILABLE = -2;      // Nothing available (non-blocking)
@@ -71,7 +95,7 @@ public class ByteChannelContainer<T extends ByteChannel> implements Container<be
 				break;
 			else
 				totalRead += read;
-			if (target.write(bytes, 0, read) != read)
+			if (transfer(target, read) != read)
 				throw new IOException("Can not write all data to the buffer");
 		}
 		isClosed |= !channel.isOpen();
@@ -84,6 +108,7 @@ public class ByteChannelContainer<T extends ByteChannel> implements Container<be
 		channel.close();
 	}
 
+	@SuppressWarnings("unchecked")
 	@Override
 	public long write(be.nabu.utils.io.api.ByteBuffer source) throws IOException {
 		if (isClosed()) {
@@ -92,10 +117,13 @@ public class ByteChannelContainer<T extends ByteChannel> implements Container<be
 		else if (!isReady()) {
 			return 0;
 		}
+		else if (source instanceof NioBackedBuffer) {
+			return writeViews((NioBackedBuffer<ByteBuffer>) source);
+		}
 		long totalWritten = 0;
 		while (!isClosed && source.remainingData() > 0) {
-			int read = (int) source.peek(IOUtils.wrap(bytes, false));
-			int written = channel.write(ByteBuffer.wrap(bytes, 0, read));
+			int read = peekChannel(source);
+			int written = direct == null ? channel.write(ByteBuffer.wrap(bytes, 0, read)) : channel.write(direct);
 			// skip the data that was successfully written
 			source.skip(written);
 			totalWritten += written;
@@ -106,6 +134,163 @@ public class ByteChannelContainer<T extends ByteChannel> implements Container<be
 		return totalWritten == 0 && isClosed() ? -1 : totalWritten;
 	}
 
+	/**
+	 * Reads straight into the free space of the target, scattering across its views if the channel supports it
+	 */
+	private long readViews(NioBackedBuffer<ByteBuffer> target) throws IOException {
+		long totalRead = 0;
+		while (!isClosed) {
+			int amount = target.getSpaceViews(views, 0);
+			if (amount == 0) {
+				break;
+			}
+			long available = 0;
+			long read = 0;
+			try {
+				if (amount > 1 && channel instanceof ScatteringByteChannel) {
+					for (int i = 0; i < amount; i++) {
+						available += views[i].remaining();
+					}
+					read = ((ScatteringByteChannel) channel).read(views, 0, amount);
+				}
+				else {
+					available = views[0].remaining();
+					read = channel.read(views[0]);
+				}
+			}
+			finally {
+				target.produced(Math.max(0, read));
+				clearViews(amount);
+			}
+			// see the comments in read() for the negative values
+			if (read < 0) {
+				isClosed = true;
+				break;
+			}
+			totalRead += read;
+			// the channel has nothing more for now
+			if (read < available) {
+				break;
+			}
+		}
+		isClosed |= !channel.isOpen();
+		return totalRead == 0 && isClosed() ? -1 : totalRead;
+	}
+	
+	/**
+	 * Writes straight from the data of the source, gathering across its views if the channel supports it
+	 */
+	private long writeViews(NioBackedBuffer<ByteBuffer> source) throws IOException {
+		long totalWritten = 0;
+		while (!isClosed) {
+			int amount = source.getDataViews(views, 0);
+			if (amount == 0) {
+				break;
+			}
+			long available = 0;
+			long written = 0;
+			try {
+				if (amount > 1 && channel instanceof GatheringByteChannel) {
+					for (int i = 0; i < amount; i++) {
+						available += views[i].remaining();
+					}
+					written = ((GatheringByteChannel) channel).write(views, 0, amount);
+				}
+				else {
+					available = views[0].remaining();
+					written = channel.write(views[0]);
+				}
+			}
+			finally {
+				source.consumed(Math.max(0, written));
+				clearViews(amount);
+			}
+			totalWritten += written;
+			if (written < available) {
+				break;
+			}
+		}
+		return totalWritten == 0 && isClosed() ? -1 : totalWritten;
+	}
+	
+	/**
+	 * Don't hold on to the views, they are owned by the buffers
+	 */
+	private void clearViews(int amount) {
+		for (int i = 0; i < amount; i++) {
+			views[i] = null;
+		}
+	}
+	
+	/**
+	 * Sends the remaining data of the file to the channel, for a socket this can be done by the kernel (sendfile)
+	 */
+	public long transferFrom(ReadOnlyFileWrapper file) throws IOException {
+		if (isClosed()) {
+			return -1;
+		}
+		else if (!isReady()) {
+			return 0;
+		}
+		return file.transferTo(channel);
+	}
+	
+	/**
+	 * Writes whatever the channel has available to the file
+	 */
+	public long transferTo(FileWrapper file) throws IOException {
+		if (isClosed()) {
+			return -1;
+		}
+		else if (!isReady()) {
+			return 0;
+		}
+		long transferred = file.transferFrom(channel, Long.MAX_VALUE);
+		isClosed |= !channel.isOpen();
+		return transferred == 0 && isClosed() ? -1 : transferred;
+	}
+	
+	private int readChannel(int amount) throws IOException {
+		if (direct == null)
+			return channel.read(ByteBuffer.wrap(bytes, 0, amount));
+		direct.clear();
+		direct.limit(amount);
+		int read = channel.read(direct);
+		direct.flip();
+		return read;
+	}
+	
+	/**
+	 * Pushes the data that was just read from the channel to the target
+	 */
+	private int transfer(be.nabu.utils.io.api.ByteBuffer target, int amount) throws IOException {
+		if (direct == null)
+			return target.write(bytes, 0, amount);
+		else if (target instanceof DirectByteBuffer)
+			return ((DirectByteBuffer) target).write(direct);
+		direct.get(bytes, 0, amount);
+		return target.write(bytes, 0, amount);
+	}
+	
+	/**
+	 * Writes the first part of the source to the channel without consuming it from the source
+	 * Returns the amount that was offered to the channel
+	 */
+	private int peekChannel(be.nabu.utils.io.api.ByteBuffer source) throws IOException {
+		if (direct == null)
+			return (int) source.peek(IOUtils.wrap(bytes, false));
+		direct.clear();
+		direct.limit((int) Math.min(direct.capacity(), source.remainingData()));
+		if (source instanceof DirectByteBuffer)
+			((DirectByteBuffer) source).peek(direct);
+		else {
+			int read = (int) source.peek(IOUtils.wrap(bytes, false));
+			direct.put(bytes, 0, read);
+		}
+		direct.flip();
+		return direct.remaining();
+	}
+	
 	@Override
 	public void flush() {
 		// do nothing
@@ -27,6 +27,7 @@ import be.nabu.utils.io.api.MarkableContainer;
 import be.nabu.utils.io.api.ReadableContainer;
 import be.nabu.utils.io.api.ResettableContainer;
 import be.nabu.utils.io.api.SkippableContainer;
+import be.nabu.utils.io.containers.BlockingStrategy;
 
 public class ByteContainerInputStream extends InputStream {
 	
@@ -34,6 +35,7 @@ public class ByteContainerInputStream extends InputStream {
 	private boolean closed = false;
 	private byte [] single = new byte[1];
 	private boolean closeIfEmpty;
+	private BlockingStrategy.Waiter waiter;
 	
 	public ByteContainerInputStream(ReadableContainer<ByteBuffer> container, boolean closeIfEmpty) {
 		this.container = container;
@@ -65,14 +67,24 @@ public class ByteContainerInputStream extends InputStream {
 		if (closed)
 			return -1;
 		
-		int read = 0;
+		int read = (int) container.read(IOUtils.wrap(bytes, offset, length, false));
+		if (read == 0 && closeIfEmpty) {
+			close();
+			return -1;
+		}
 		// block until data is present
-		while (read == 0) {
-			read = (int) container.read(IOUtils.wrap(bytes, offset, length, false));
-			if (read == 0 && closeIfEmpty) {
-				close();
-				read = -1;
-				break;
+		if (read == 0 && length > 0) {
+			if (waiter == null) {
+				waiter = BlockingStrategy.getInstance().forData(container);
+			}
+			try {
+				while (read == 0) {
+					waiter.await(0);
+					read = (int) container.read(IOUtils.wrap(bytes, offset, length, false));
+				}
+			}
+			finally {
+				waiter.done();
 			}
 		}
 		return read;
@@ -0,0 +1,62 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.containers.bytes;
+
+import java.util.zip.Checksum;
+
+/**
+ * A table driven crc32c (castagnoli), only used when the jvm does not have java.util.zip.CRC32C (added in java 9) which uses the dedicated cpu instruction
+ */
+class CRC32C implements Checksum {
+
+	private static final int [] TABLE = new int[256];
+	
+	static {
+		for (int i = 0; i < 256; i++) {
+			int crc = i;
+			for (int j = 0; j < 8; j++)
+				crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0x82F63B78 : crc >>> 1;
+			TABLE[i] = crc;
+		}
+	}
+	
+	private int crc = 0xffffffff;
+	
+	@Override
+	public void update(int b) {
+		crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xff];
+	}
+
+	@Override
+	public void update(byte [] bytes, int offset, int length) {
+		int crc = this.crc;
+		for (int i = offset; i < offset + length; i++)
+			crc = (crc >>> 8) ^ TABLE[(crc ^ bytes[i]) & 0xff];
+		this.crc = crc;
+	}
+
+	@Override
+	public long getValue() {
+		return ~crc & 0xffffffffL;
+	}
+
+	@Override
+	public void reset() {
+		crc = 0xffffffff;
+	}
+}
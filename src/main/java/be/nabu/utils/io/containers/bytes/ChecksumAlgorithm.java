@@ -0,0 +1,72 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.containers.bytes;
+
+import java.lang.reflect.Constructor;
+import java.util.zip.Adler32;
+import java.util.zip.Checksum;
+
+/**
+ * The non-cryptographic checksums that can be calculated by the checksum containers, any other java.util.zip.Checksum can be passed in directly
+ */
+public enum ChecksumAlgorithm {
+	CRC32,
+	/**
+	 * Uses the jdk implementation (with hardware support) if available
+	 */
+	CRC32C,
+	ADLER32,
+	XXHASH64;
+	
+	private static Constructor<?> crc32c;
+	private static boolean crc32cResolved;
+	
+	public Checksum newChecksum() {
+		switch (this) {
+			case CRC32:
+				return new java.util.zip.CRC32();
+			case CRC32C:
+				return newCRC32C();
+			case ADLER32:
+				return new Adler32();
+			default:
+				return new XxHash64();
+		}
+	}
+	
+	private static Checksum newCRC32C() {
+		if (!crc32cResolved) {
+			try {
+				crc32c = Class.forName("java.util.zip.CRC32C").getConstructor();
+			}
+			catch (Exception e) {
+				// older jvm, use the table driven one
+			}
+			crc32cResolved = true;
+		}
+		if (crc32c != null) {
+			try {
+				return (Checksum) crc32c.newInstance();
+			}
+			catch (Exception e) {
+				// fall through
+			}
+		}
+		return new be.nabu.utils.io.containers.bytes.CRC32C();
+	}
+}
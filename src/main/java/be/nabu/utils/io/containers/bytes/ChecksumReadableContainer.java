@@ -0,0 +1,89 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.containers.bytes;
+
+import java.io.IOException;
+import java.util.zip.Checksum;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.NioBackedBuffer;
+import be.nabu.utils.io.api.ReadableContainer;
+import be.nabu.utils.io.buffers.bytes.StaticByteBuffer;
+
+/**
+ * Updates a checksum with the data that is read from the parent
+ * If the target exposes all of its space as a single heap view, the parent reads straight into it and the checksum is updated from the backing array afterwards
+ * Otherwise the parent reads into a block of our own, which is then copied to the target
+ */
+public class ChecksumReadableContainer implements ReadableContainer<ByteBuffer> {
+
+	private ReadableContainer<ByteBuffer> parent;
+	private Checksum checksum;
+	private byte [] bytes = new byte[8192];
+	private StaticByteBuffer input = new StaticByteBuffer(bytes, false);
+	private java.nio.ByteBuffer [] views = new java.nio.ByteBuffer[1];
+	
+	public ChecksumReadableContainer(ReadableContainer<ByteBuffer> parent, Checksum checksum) {
+		this.parent = parent;
+		this.checksum = checksum;
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Override
+	public long read(ByteBuffer target) throws IOException {
+		long space = target.remainingSpace();
+		if (space <= 0)
+			return 0;
+		// the parent can not write more than the view holds so everything it read is in there
+		if (target instanceof NioBackedBuffer && ((NioBackedBuffer<java.nio.ByteBuffer>) target).getSpaceViews(views, 0) > 0 && views[0].hasArray() && views[0].remaining() == space) {
+			java.nio.ByteBuffer view = views[0];
+			views[0] = null;
+			long read = parent.read(target);
+			if (read > 0)
+				checksum.update(view.array(), view.arrayOffset() + view.position(), (int) read);
+			return read;
+		}
+		views[0] = null;
+		long totalRead = 0;
+		while (target.remainingSpace() > 0) {
+			int amount = (int) Math.min(bytes.length, target.remainingSpace());
+			// never read more than the target can take
+			StaticByteBuffer input = amount == bytes.length ? this.input : new StaticByteBuffer(bytes, 0, amount, false);
+			input.truncate();
+			long read = parent.read(input);
+			if (read == -1)
+				return totalRead == 0 ? -1 : totalRead;
+			else if (read == 0)
+				break;
+			checksum.update(bytes, 0, (int) read);
+			if (target.write(bytes, 0, (int) read) != read)
+				throw new IOException("Could not write the data to the target");
+			totalRead += read;
+		}
+		return totalRead;
+	}
+	
+	public Checksum getChecksum() {
+		return checksum;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		parent.close();
+	}
+}
@@ -0,0 +1,96 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.containers.bytes;
+
+import java.io.IOException;
+import java.util.zip.Checksum;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.NioBackedBuffer;
+import be.nabu.utils.io.api.WritableContainer;
+import be.nabu.utils.io.buffers.bytes.StaticByteBuffer;
+
+/**
+ * Passes the data through to the parent and updates a checksum with exactly the bytes the parent accepted
+ * If all the data of the source is in a single heap view, the source is handed to the parent as is and the checksum is updated from the backing array afterwards
+ * Otherwise a block is peeked into a reused buffer, and only what the parent accepted is skipped in the source
+ */
+public class ChecksumWritableContainer implements WritableContainer<ByteBuffer> {
+
+	private WritableContainer<ByteBuffer> parent;
+	private Checksum checksum;
+	private byte [] bytes = new byte[8192];
+	private StaticByteBuffer peeked = new StaticByteBuffer(bytes, false);
+	private java.nio.ByteBuffer [] views = new java.nio.ByteBuffer[1];
+	
+	public ChecksumWritableContainer(WritableContainer<ByteBuffer> parent, Checksum checksum) {
+		this.parent = parent;
+		this.checksum = checksum;
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Override
+	public long write(ByteBuffer source) throws IOException {
+		long totalWritten = 0;
+		while (source.remainingData() > 0) {
+			long written;
+			if (source instanceof NioBackedBuffer && ((NioBackedBuffer<java.nio.ByteBuffer>) source).getDataViews(views, 0) > 0 && views[0].hasArray() && views[0].remaining() == source.remainingData()) {
+				// the view can be repositioned by the source during the write so we keep the location of the data
+				byte [] array = views[0].array();
+				int offset = views[0].arrayOffset() + views[0].position();
+				views[0] = null;
+				// the view covers all the data so whatever the parent takes from the source comes from the start of it
+				written = parent.write(source);
+				if (written > 0) {
+					checksum.update(array, offset, (int) written);
+				}
+			}
+			else {
+				views[0] = null;
+				peeked.truncate();
+				if (source.peek(peeked) <= 0)
+					break;
+				written = parent.write(peeked);
+				if (written > 0) {
+					checksum.update(bytes, 0, (int) written);
+					source.skip(written);
+				}
+			}
+			if (written == -1)
+				return totalWritten == 0 ? -1 : totalWritten;
+			else if (written == 0)
+				break;
+			totalWritten += written;
+		}
+		return totalWritten;
+	}
+	
+	public Checksum getChecksum() {
+		return checksum;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		parent.flush();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		parent.close();
+	}
+}
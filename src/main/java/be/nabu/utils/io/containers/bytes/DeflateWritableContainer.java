@@ -0,0 +1,243 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.containers.bytes;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.NioBackedBuffer;
+import be.nabu.utils.io.api.WritableContainer;
+import be.nabu.utils.io.buffers.bytes.StaticByteBuffer;
+
+/**
+ * Compresses the data that is written to it with a pooled deflater, either in zlib framing (http "deflate") or in gzip framing
+ * If the source exposes its data as heap views, the deflater reads straight from its backing array, otherwise a block is copied out first
+ * 
+ * The compressed output is pushed to the parent as it is produced, if the parent does not take it all the write stops and returns what was consumed so far
+ * flush() does a sync flush so everything written so far can be decompressed by the other side, close() finishes the stream and returns the deflater to the pool
+ */
+public class DeflateWritableContainer implements WritableContainer<ByteBuffer> {
+
+	private static final byte [] EMPTY = new byte[0];
+	
+	/**
+	 * Magic, deflate, no flags, no modification time, no extra flags, unknown os
+	 */
+	static final byte [] GZIP_HEADER = new byte[] { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+	
+	private WritableContainer<ByteBuffer> parent;
+	private Deflater deflater;
+	private int level;
+	private CRC32 crc;
+	
+	private byte [] input = new byte[8192];
+	private byte [] outputBuffer = new byte[8192];
+	private StaticByteBuffer output = new StaticByteBuffer(outputBuffer, false);
+	private java.nio.ByteBuffer [] views = new java.nio.ByteBuffer[1];
+	
+	/**
+	 * When the deflater works on a view of the source, this is the size of the view and how much of it has already been marked as consumed
+	 */
+	private int viewLength, viewConsumed;
+	private byte [] viewArray;
+	private int viewOffset;
+	private long viewStart;
+	
+	/**
+	 * Whether data was written since the last sync flush
+	 */
+	private boolean dirty;
+	
+	/**
+	 * Whether the deflater was told to finish and whether the gzip trailer was added, the stream only counts as closed once all the output reached the parent
+	 */
+	private boolean finished, trailed, closed;
+	
+	public DeflateWritableContainer(WritableContainer<ByteBuffer> parent, boolean gzip) {
+		this(parent, gzip, Deflater.DEFAULT_COMPRESSION);
+	}
+	
+	public DeflateWritableContainer(WritableContainer<ByteBuffer> parent, boolean gzip, int level) {
+		this.parent = parent;
+		this.level = level;
+		// gzip uses raw deflate with its own header and trailer
+		this.deflater = DeflaterPool.getInstance().acquire(level, gzip);
+		if (gzip) {
+			crc = new CRC32();
+			output.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+		}
+	}
+	
+	@Override
+	public long write(ByteBuffer source) throws IOException {
+		if (finished)
+			return -1;
+		long totalWritten = 0;
+		try {
+			while (push()) {
+				if (deflater.needsInput()) {
+					long fed = feed(source);
+					if (fed < 0)
+						break;
+					totalWritten += fed;
+				}
+				output.produced(deflater.deflate(outputBuffer, 0, outputBuffer.length, Deflater.NO_FLUSH));
+				totalWritten += settle(source);
+			}
+		}
+		finally {
+			totalWritten += release(source);
+		}
+		if (totalWritten > 0)
+			dirty = true;
+		return totalWritten;
+	}
+	
+	/**
+	 * Gives the deflater new input, returns the amount of bytes that were copied from the source or -1 if it has none
+	 * The bytes in a view are only accounted for once the deflater consumed them
+	 */
+	@SuppressWarnings("unchecked")
+	private long feed(ByteBuffer source) throws IOException {
+		if (source instanceof NioBackedBuffer && ((NioBackedBuffer<java.nio.ByteBuffer>) source).getDataViews(views, 0) > 0 && views[0].hasArray()) {
+			java.nio.ByteBuffer view = views[0];
+			views[0] = null;
+			viewArray = view.array();
+			viewOffset = view.arrayOffset() + view.position();
+			viewLength = view.remaining();
+			viewConsumed = 0;
+			viewStart = deflater.getBytesRead();
+			deflater.setInput(viewArray, viewOffset, viewLength);
+			return 0;
+		}
+		views[0] = null;
+		int read = source.read(input, 0, input.length);
+		if (read <= 0)
+			return -1;
+		deflater.setInput(input, 0, read);
+		if (crc != null)
+			crc.update(input, 0, read);
+		return read;
+	}
+	
+	/**
+	 * Marks the part of the view that the deflater consumed as consumed in the source, returns the amount of bytes
+	 */
+	@SuppressWarnings("unchecked")
+	private long settle(ByteBuffer source) {
+		if (viewArray == null)
+			return 0;
+		int consumed = (int) (deflater.getBytesRead() - viewStart) - viewConsumed;
+		if (consumed > 0) {
+			if (crc != null)
+				crc.update(viewArray, viewOffset + viewConsumed, consumed);
+			((NioBackedBuffer<java.nio.ByteBuffer>) source).consumed(consumed);
+			viewConsumed += consumed;
+		}
+		if (viewConsumed == viewLength)
+			viewArray = null;
+		return consumed;
+	}
+	
+	/**
+	 * The view is only valid during the write so the deflater can not hold on to it, what it did not consume stays in the source
+	 */
+	private long release(ByteBuffer source) {
+		long settled = settle(source);
+		if (viewArray != null) {
+			viewArray = null;
+			deflater.setInput(EMPTY);
+		}
+		return settled;
+	}
+	
+	/**
+	 * Pushes the pending output to the parent, returns true if there is none left
+	 */
+	private boolean push() throws IOException {
+		while (output.remainingData() > 0) {
+			long written = parent.write(output);
+			if (written == -1)
+				throw new IOException("The target writable is closed");
+			else if (written == 0)
+				return false;
+		}
+		output.truncate();
+		return true;
+	}
+	
+	/**
+	 * Pushes everything that is pending, the parent must accept it all
+	 */
+	private void pushAll() throws IOException {
+		if (!push())
+			throw new IOException("Could only flush part of the compressed data to " + parent.getClass().getName());
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (!closed) {
+			pushAll();
+			// as long as the output fills the buffer entirely, there might be more
+			if (dirty && !finished) {
+				int deflated;
+				do {
+					deflated = deflater.deflate(outputBuffer, 0, outputBuffer.length, Deflater.SYNC_FLUSH);
+					output.produced(deflated);
+					pushAll();
+				}
+				while (deflated == outputBuffer.length);
+				dirty = false;
+			}
+		}
+		parent.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			// push what is pending first, if a previous close failed this is the output the parent did not take
+			pushAll();
+			if (!finished) {
+				deflater.finish();
+				finished = true;
+			}
+			while (!deflater.finished()) {
+				output.produced(deflater.deflate(outputBuffer, 0, outputBuffer.length, Deflater.NO_FLUSH));
+				pushAll();
+			}
+			if (crc != null && !trailed) {
+				writeInt((int) crc.getValue());
+				writeInt((int) deflater.getBytesRead());
+				trailed = true;
+				pushAll();
+			}
+			parent.flush();
+			DeflaterPool.getInstance().release(deflater, level, crc != null);
+			deflater = null;
+			parent.close();
+			closed = true;
+		}
+	}
+	
+	private void writeInt(int value) {
+		output.write(new byte[] { (byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24) }, 0, 4);
+	}
+}
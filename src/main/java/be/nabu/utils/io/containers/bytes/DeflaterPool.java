@@ -0,0 +1,86 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.containers.bytes;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Pools deflaters per compression level and framing so the native state (a few hundred kb at the default settings) is not allocated for every stream
+ * The amount of idle deflaters kept per level and framing can be set with the system property "io.deflater.pool", it defaults to 16
+ */
+public class DeflaterPool {
+
+	private static DeflaterPool instance;
+	
+	public static DeflaterPool getInstance() {
+		if (instance == null)
+			instance = new DeflaterPool(Integer.parseInt(System.getProperty("io.deflater.pool", "16")));
+		return instance;
+	}
+	
+	private int capacity;
+	
+	/**
+	 * One queue for every level from -1 (the default) up to 9, with and without zlib framing
+	 */
+	private Queue<Deflater> [] idle;
+	private AtomicInteger [] sizes;
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public DeflaterPool(int capacity) {
+		this.capacity = capacity;
+		this.idle = new Queue[22];
+		this.sizes = new AtomicInteger[idle.length];
+		for (int i = 0; i < idle.length; i++) {
+			idle[i] = new ConcurrentLinkedQueue<Deflater>();
+			sizes[i] = new AtomicInteger();
+		}
+	}
+	
+	private static int index(int level, boolean nowrap) {
+		if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+			throw new IllegalArgumentException("Invalid compression level: " + level);
+		return (level + 1) * 2 + (nowrap ? 1 : 0);
+	}
+	
+	public Deflater acquire(int level, boolean nowrap) {
+		int index = index(level, nowrap);
+		Deflater deflater = idle[index].poll();
+		if (deflater == null)
+			return new Deflater(level, nowrap);
+		sizes[index].decrementAndGet();
+		return deflater;
+	}
+	
+	/**
+	 * The deflater must have been acquired with the same level and framing and can not be used anymore afterwards
+	 */
+	public void release(Deflater deflater, int level, boolean nowrap) {
+		int index = index(level, nowrap);
+		deflater.reset();
+		if (sizes[index].incrementAndGet() <= capacity)
+			idle[index].offer(deflater);
+		else {
+			sizes[index].decrementAndGet();
+			deflater.end();
+		}
+	}
+}
@@ -19,6 +19,7 @@ package be.nabu.utils.io.containers.bytes;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
 
 import be.nabu.utils.io.api.ByteBuffer;
 import be.nabu.utils.io.api.Container;
@@ -49,6 +50,27 @@ public class FileWrapper extends ReadOnlyFileWrapper implements Container<ByteBu
 		return totalWritten;
 	}
 
+	/**
+	 * Writes at most count bytes from the channel to the file at the write pointer, this stops when the channel has no more data available
+	 * As with write(), anything in the file beyond the new write pointer is truncated
+	 */
+	public long transferFrom(ReadableByteChannel channel, long count) throws IOException {
+		if (closed)
+			throw new IllegalStateException("Can not write to a closed file");
+		long totalTransferred = 0;
+		while (count > 0) {
+			long transferred = getRandomAccessFile().getChannel().transferFrom(channel, writePointer, count);
+			if (transferred <= 0)
+				break;
+			writePointer += transferred;
+			count -= transferred;
+			totalTransferred += transferred;
+		}
+		if (getRandomAccessFile().length() > writePointer)
+			getRandomAccessFile().getChannel().truncate(writePointer);
+		return totalTransferred;
+	}
+
 	@Override
 	public void flush() {
 		// do nothing
@@ -0,0 +1,87 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.containers.bytes;
+
+import java.util.Date;
+
+/**
+ * Describes a finished SSL handshake
+ */
+public class HandshakeStatistics {
+	
+	private Date started, stopped;
+	private boolean resumed;
+	private String protocol, cipherSuite, peerHost;
+	private int peerPort;
+	
+	public HandshakeStatistics(Date started, Date stopped, boolean resumed, String protocol, String cipherSuite, String peerHost, int peerPort) {
+		this.started = started;
+		this.stopped = stopped;
+		this.resumed = resumed;
+		this.protocol = protocol;
+		this.cipherSuite = cipherSuite;
+		this.peerHost = peerHost;
+		this.peerPort = peerPort;
+	}
+
+	public Date getStarted() {
+		return started;
+	}
+
+	public Date getStopped() {
+		return stopped;
+	}
+	
+	public long getDuration() {
+		return stopped.getTime() - started.getTime();
+	}
+
+	/**
+	 * Whether an existing session was resumed (abbreviated handshake) rather than a new one negotiated
+	 */
+	public boolean isResumed() {
+		return resumed;
+	}
+
+	public String getProtocol() {
+		return protocol;
+	}
+
+	public String getCipherSuite() {
+		return cipherSuite;
+	}
+
+	/**
+	 * The host the engine was created for, this is null if it was not known
+	 */
+	public String getPeerHost() {
+		return peerHost;
+	}
+
+	/**
+	 * The port the engine was created for, this is -1 if it was not known
+	 */
+	public int getPeerPort() {
+		return peerPort;
+	}
+
+	@Override
+	public String toString() {
+		return (resumed ? "resumed " : "full ") + protocol + " handshake with " + cipherSuite + " in " + getDuration() + "ms";
+	}
+}
@@ -0,0 +1,245 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.containers.bytes;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.NioBackedBuffer;
+import be.nabu.utils.io.api.ReadableContainer;
+import be.nabu.utils.io.buffers.bytes.StaticByteBuffer;
+
+/**
+ * Decompresses the data of the parent, either in zlib framing (http "deflate") or in gzip framing where concatenated members are supported
+ * If the target exposes its space as heap views, the inflater writes straight into its backing array
+ * 
+ * If the parent has no data available, the read returns what was decompressed so far (possibly 0) and picks up where it left off the next time
+ */
+public class InflateReadableContainer implements ReadableContainer<ByteBuffer> {
+
+	private static final int FHCRC = 2, FEXTRA = 4, FNAME = 8, FCOMMENT = 16;
+	
+	private enum State {
+		HEADER, DATA, TRAILER, END
+	}
+	
+	private ReadableContainer<ByteBuffer> parent;
+	private Inflater inflater;
+	private CRC32 crc;
+	private State state;
+	private int members;
+	
+	/**
+	 * The compressed bytes in [position, limit) have not been handed to the inflater or parsed yet
+	 */
+	private byte [] inputBuffer = new byte[8192];
+	private StaticByteBuffer input = new StaticByteBuffer(inputBuffer, false);
+	private int position, limit;
+	
+	private byte [] outputBuffer = new byte[8192];
+	private java.nio.ByteBuffer [] views = new java.nio.ByteBuffer[1];
+	
+	public InflateReadableContainer(ReadableContainer<ByteBuffer> parent, boolean gzip) {
+		this.parent = parent;
+		this.inflater = new Inflater(gzip);
+		if (gzip) {
+			crc = new CRC32();
+			state = State.HEADER;
+		}
+		else {
+			state = State.DATA;
+		}
+	}
+	
+	@Override
+	public long read(ByteBuffer target) throws IOException {
+		long totalRead = 0;
+		reading: while (target.remainingSpace() > 0 && state != State.END) {
+			switch (state) {
+				case HEADER:
+					int length = getHeaderLength();
+					if (length < 0) {
+						if (position == 0 && limit == inputBuffer.length)
+							throw new ZipException("The gzip header is too large");
+						long read = fill();
+						if (read == -1) {
+							// the end of the stream is only allowed in between members
+							if (members > 0 && position == limit)
+								state = State.END;
+							else
+								throw new EOFException("Unexpected end of the gzip header");
+						}
+						else if (read == 0)
+							break reading;
+					}
+					else {
+						position += length;
+						state = State.DATA;
+					}
+				break;
+				case DATA:
+					if (inflater.needsInput() && position < limit) {
+						inflater.setInput(inputBuffer, position, limit - position);
+						position = limit;
+					}
+					int inflated = inflate(target);
+					if (inflated > 0)
+						totalRead += inflated;
+					else if (inflater.finished()) {
+						// the inflater might not have needed everything we gave it
+						position = limit - inflater.getRemaining();
+						state = crc == null ? State.END : State.TRAILER;
+					}
+					else if (inflater.needsDictionary())
+						throw new ZipException("A preset dictionary is not supported");
+					else if (inflater.needsInput()) {
+						long read = fill();
+						if (read == -1)
+							throw new EOFException("Unexpected end of the compressed data");
+						else if (read == 0)
+							break reading;
+					}
+					else
+						break reading;
+				break;
+				case TRAILER:
+					if (limit - position < 8) {
+						long read = fill();
+						if (read == -1)
+							throw new EOFException("Unexpected end of the gzip trailer");
+						else if (read == 0)
+							break reading;
+					}
+					else {
+						if (readInt(position) != (int) crc.getValue())
+							throw new ZipException("Corrupt gzip data: the crc does not match");
+						if (readInt(position + 4) != (int) inflater.getBytesWritten())
+							throw new ZipException("Corrupt gzip data: the size does not match");
+						position += 8;
+						members++;
+						inflater.reset();
+						crc.reset();
+						state = State.HEADER;
+					}
+				break;
+				default:
+			}
+		}
+		return totalRead == 0 && state == State.END ? -1 : totalRead;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private int inflate(ByteBuffer target) throws IOException {
+		try {
+			int inflated;
+			if (target instanceof NioBackedBuffer && ((NioBackedBuffer<java.nio.ByteBuffer>) target).getSpaceViews(views, 0) > 0 && views[0].hasArray()) {
+				java.nio.ByteBuffer view = views[0];
+				views[0] = null;
+				int offset = view.arrayOffset() + view.position();
+				inflated = inflater.inflate(view.array(), offset, (int) Math.min(view.remaining(), target.remainingSpace()));
+				if (inflated > 0) {
+					if (crc != null)
+						crc.update(view.array(), offset, inflated);
+					((NioBackedBuffer<java.nio.ByteBuffer>) target).produced(inflated);
+				}
+			}
+			else {
+				views[0] = null;
+				inflated = inflater.inflate(outputBuffer, 0, (int) Math.min(outputBuffer.length, target.remainingSpace()));
+				if (inflated > 0) {
+					if (crc != null)
+						crc.update(outputBuffer, 0, inflated);
+					if (target.write(outputBuffer, 0, inflated) != inflated)
+						throw new IOException("Could not write the decompressed data to the target");
+				}
+			}
+			return inflated;
+		}
+		catch (DataFormatException e) {
+			throw new ZipException(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Moves the unprocessed bytes to the front and lets the parent fill up the rest
+	 */
+	private long fill() throws IOException {
+		int remaining = limit - position;
+		if (remaining > 0 && position > 0)
+			System.arraycopy(inputBuffer, position, inputBuffer, 0, remaining);
+		position = 0;
+		limit = remaining;
+		input.truncate();
+		input.write(inputBuffer, 0, remaining);
+		long read = parent.read(input);
+		if (read > 0)
+			limit += read;
+		return read;
+	}
+	
+	/**
+	 * The length of the gzip header at the current position or -1 if it is not complete yet
+	 */
+	private int getHeaderLength() throws IOException {
+		int available = limit - position;
+		if (available < 10)
+			return -1;
+		if ((inputBuffer[position] & 0xff) != 0x1f || (inputBuffer[position + 1] & 0xff) != 0x8b)
+			throw new ZipException("Not in gzip format");
+		if (inputBuffer[position + 2] != Deflater.DEFLATED)
+			throw new ZipException("Unsupported compression method: " + inputBuffer[position + 2]);
+		int flags = inputBuffer[position + 3] & 0xff;
+		int length = 10;
+		if ((flags & FEXTRA) != 0) {
+			if (available < length + 2)
+				return -1;
+			length += 2 + ((inputBuffer[position + length] & 0xff) | (inputBuffer[position + length + 1] & 0xff) << 8);
+		}
+		if ((flags & FNAME) != 0)
+			length = skipString(length, available);
+		if (length >= 0 && (flags & FCOMMENT) != 0)
+			length = skipString(length, available);
+		if (length >= 0 && (flags & FHCRC) != 0)
+			length += 2;
+		return length >= 0 && length <= available ? length : -1;
+	}
+	
+	private int skipString(int offset, int available) {
+		for (int i = offset; i < available; i++) {
+			if (inputBuffer[position + i] == 0)
+				return i + 1;
+		}
+		return -1;
+	}
+	
+	private int readInt(int offset) {
+		return (inputBuffer[offset] & 0xff) | (inputBuffer[offset + 1] & 0xff) << 8 | (inputBuffer[offset + 2] & 0xff) << 16 | (inputBuffer[offset + 3] & 0xff) << 24;
+	}
+
+	@Override
+	public void close() throws IOException {
+		inflater.end();
+		parent.close();
+	}
+}
@@ -0,0 +1,251 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.containers.bytes;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.DuplicatableContainer;
+import be.nabu.utils.io.api.LimitedReadableContainer;
+import be.nabu.utils.io.api.MarkableContainer;
+import be.nabu.utils.io.api.NioBackedBuffer;
+import be.nabu.utils.io.api.PeekableContainer;
+import be.nabu.utils.io.api.PositionableContainer;
+import be.nabu.utils.io.api.SkippableContainer;
+import be.nabu.utils.io.buffers.bytes.DirectByteBuffer;
+
+/**
+ * Reads a file through memory mapping, once a window is mapped, reads do not require any system calls
+ * The file is mapped in windows so files larger than 2GB are supported, the windows are mapped when they are first accessed
+ * The length of the file is determined when it is opened, data appended afterwards is not visible
+ */
+public class MappedFileContainer implements LimitedReadableContainer<ByteBuffer>, SkippableContainer<ByteBuffer>, MarkableContainer<ByteBuffer>, PeekableContainer<ByteBuffer>, PositionableContainer<ByteBuffer>, DuplicatableContainer<ByteBuffer, MappedFileContainer> {
+
+	private static int defaultWindowSize = Integer.parseInt(System.getProperty("io.mapped.window", "67108864"));
+	
+	private Mapping mapping;
+	private long readPointer = 0;
+	private long markPointer = 0;
+	private boolean closed = false;
+	
+	/**
+	 * A duplicate of the current window, it is repositioned for each read
+	 */
+	private java.nio.ByteBuffer view;
+	private int viewIndex = -1;
+	
+	private java.nio.ByteBuffer [] views;
+	private byte [] buffer;
+	
+	public MappedFileContainer(File file) throws IOException {
+		this(file, defaultWindowSize);
+	}
+	
+	public MappedFileContainer(File file, int windowSize) throws IOException {
+		if (windowSize <= 0)
+			throw new IllegalArgumentException("The window size must be positive");
+		this.mapping = new Mapping(FileChannel.open(file.toPath(), StandardOpenOption.READ), windowSize);
+	}
+	
+	private MappedFileContainer(Mapping mapping) {
+		this.mapping = mapping;
+	}
+	
+	/**
+	 * The mapped windows are shared by an instance and its duplicates, the file is closed when all of them are closed
+	 */
+	private static class Mapping {
+		private FileChannel channel;
+		private long length;
+		private int windowSize;
+		private MappedByteBuffer [] windows;
+		private int references = 1;
+		
+		private Mapping(FileChannel channel, int windowSize) throws IOException {
+			this.channel = channel;
+			this.windowSize = windowSize;
+			this.length = channel.size();
+			this.windows = new MappedByteBuffer[(int) ((length + windowSize - 1) / windowSize)];
+		}
+		
+		private synchronized MappedByteBuffer getWindow(int index) throws IOException {
+			if (windows[index] == null) {
+				if (channel == null)
+					throw new IOException("The file is closed");
+				long offset = (long) index * windowSize;
+				windows[index] = channel.map(MapMode.READ_ONLY, offset, Math.min(windowSize, length - offset));
+			}
+			return windows[index];
+		}
+		
+		private synchronized void retain() {
+			references++;
+		}
+		
+		private synchronized void release() throws IOException {
+			if (--references == 0) {
+				// the mappings remain valid after the channel is closed but we no longer reference them
+				windows = null;
+				channel.close();
+				channel = null;
+			}
+		}
+	}
+	
+	private java.nio.ByteBuffer getView(long position) throws IOException {
+		int index = (int) (position / mapping.windowSize);
+		if (index != viewIndex) {
+			view = mapping.getWindow(index).duplicate();
+			viewIndex = index;
+		}
+		view.clear();
+		view.position((int) (position % mapping.windowSize));
+		return view;
+	}
+	
+	@Override
+	public long read(ByteBuffer target) throws IOException {
+		return read(target, false);
+	}
+	
+	@Override
+	public long peek(ByteBuffer target) throws IOException {
+		return read(target, true);
+	}
+	
+	private long read(ByteBuffer target, boolean peek) throws IOException {
+		if (closed || readPointer >= mapping.length)
+			return -1;
+		long position = readPointer;
+		long totalRead = 0;
+		while (position < mapping.length && target.remainingSpace() > 0) {
+			java.nio.ByteBuffer view = getView(position);
+			if (view.remaining() > target.remainingSpace())
+				view.limit(view.position() + (int) target.remainingSpace());
+			int read = transfer(view, target);
+			if (read <= 0)
+				break;
+			position += read;
+			totalRead += read;
+		}
+		if (!peek)
+			readPointer = position;
+		return totalRead;
+	}
+	
+	/**
+	 * Copies the mapped data to the target in a single pass if it exposes its memory, otherwise it goes through a heap array
+	 */
+	@SuppressWarnings("unchecked")
+	private int transfer(java.nio.ByteBuffer view, ByteBuffer target) throws IOException {
+		if (target instanceof NioBackedBuffer) {
+			NioBackedBuffer<java.nio.ByteBuffer> backed = (NioBackedBuffer<java.nio.ByteBuffer>) target;
+			if (views == null)
+				views = new java.nio.ByteBuffer[4];
+			int amount = backed.getSpaceViews(views, 0);
+			int total = 0;
+			int limit = view.limit();
+			for (int i = 0; i < amount; i++) {
+				int chunk = Math.min(views[i].remaining(), view.remaining());
+				if (chunk > 0) {
+					view.limit(view.position() + chunk);
+					views[i].put(view);
+					view.limit(limit);
+					total += chunk;
+				}
+				views[i] = null;
+			}
+			backed.produced(total);
+			return total;
+		}
+		else if (target instanceof DirectByteBuffer)
+			return ((DirectByteBuffer) target).write(view);
+		if (buffer == null)
+			buffer = new byte[16384];
+		int total = 0;
+		while (view.hasRemaining()) {
+			int amount = Math.min(buffer.length, view.remaining());
+			view.get(buffer, 0, amount);
+			int written = target.write(buffer, 0, amount);
+			if (written > 0)
+				total += written;
+			if (written < amount)
+				break;
+		}
+		return total;
+	}
+	
+	@Override
+	public long remainingData() {
+		return closed ? 0 : mapping.length - readPointer;
+	}
+	
+	@Override
+	public long skip(long amount) {
+		amount = Math.min(amount, remainingData());
+		readPointer += amount;
+		return amount;
+	}
+	
+	@Override
+	public long position() {
+		return readPointer;
+	}
+
+	@Override
+	public void reset() {
+		readPointer = markPointer;
+	}
+
+	@Override
+	public void mark() {
+		markPointer = readPointer;
+	}
+
+	@Override
+	public void unmark() {
+		markPointer = 0;
+	}
+	
+	@Override
+	public void remark() {
+		mark();
+	}
+
+	@Override
+	public MappedFileContainer duplicate(boolean reset) {
+		mapping.retain();
+		MappedFileContainer container = new MappedFileContainer(mapping);
+		container.readPointer = reset ? markPointer : readPointer;
+		return container;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			view = null;
+			mapping.release();
+		}
+	}
+}
@@ -0,0 +1,250 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.containers.bytes;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.WritableContainer;
+import be.nabu.utils.io.buffers.bytes.StaticByteBuffer;
+
+/**
+ * Compresses the data that is written to it into a gzip stream, the way pigz does it: the input is cut into blocks that are deflated in parallel
+ * Each block is deflated with the 32kb of input before it as dictionary so the compression ratio is close to that of a single deflater
+ * Every block but the last ends with a sync flush so it ends on a byte boundary, the results are pushed to the parent in order which forms one valid deflate stream
+ * 
+ * The crc is calculated on the writing thread, the amount of blocks in flight is limited to twice the parallelism of the pool
+ * When that limit is reached, the write waits for the oldest block to be compressed (which only takes cpu time), it never waits for the parent
+ * The block size defaults to 128kb, it can be set with the system property "io.deflate.parallel.block"
+ */
+public class ParallelDeflateWritableContainer implements WritableContainer<ByteBuffer> {
+
+	private static final int WINDOW = 32768;
+	
+	private static Integer defaultBlockSize;
+	
+	public static int getDefaultBlockSize() {
+		if (defaultBlockSize == null)
+			defaultBlockSize = Integer.parseInt(System.getProperty("io.deflate.parallel.block", "131072"));
+		return defaultBlockSize;
+	}
+	
+	private static class Block implements Callable<Block> {
+		private byte [] data, dictionary, compressed;
+		private int length, dictionaryLength, compressedLength;
+		private int level;
+		private boolean last;
+		
+		@Override
+		public Block call() {
+			Deflater deflater = DeflaterPool.getInstance().acquire(level, true);
+			try {
+				if (dictionaryLength > 0)
+					deflater.setDictionary(dictionary, 0, dictionaryLength);
+				deflater.setInput(data, 0, length);
+				if (last)
+					deflater.finish();
+				compressed = new byte[length + (length >> 3) + 64];
+				while (true) {
+					int deflated = deflater.deflate(compressed, compressedLength, compressed.length - compressedLength, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+					compressedLength += deflated;
+					if (last ? deflater.finished() : compressedLength < compressed.length)
+						break;
+					compressed = Arrays.copyOf(compressed, compressed.length * 2);
+				}
+				return this;
+			}
+			finally {
+				DeflaterPool.getInstance().release(deflater, level, true);
+			}
+		}
+	}
+	
+	private WritableContainer<ByteBuffer> parent;
+	private ForkJoinPool pool;
+	private int level, blockSize, maxInFlight;
+	
+	private CRC32 crc = new CRC32();
+	private long size;
+	
+	/**
+	 * The last 32kb of the input that was handed to a block
+	 */
+	private byte [] history = new byte[WINDOW];
+	private int historyLength;
+	
+	private Block current;
+	private Deque<ForkJoinTask<Block>> inFlight = new ArrayDeque<ForkJoinTask<Block>>();
+	private Deque<byte[]> free = new ArrayDeque<byte[]>();
+	
+	/**
+	 * The compressed data that the parent has not accepted yet
+	 */
+	private StaticByteBuffer output;
+	
+	/**
+	 * Whether the last block was submitted and whether the trailer was added, the stream only counts as closed once all the output reached the parent
+	 */
+	private boolean finished, trailed, closed;
+	
+	public ParallelDeflateWritableContainer(WritableContainer<ByteBuffer> parent) {
+		this(parent, Deflater.DEFAULT_COMPRESSION, getDefaultBlockSize(), ForkJoinPool.commonPool());
+	}
+	
+	public ParallelDeflateWritableContainer(WritableContainer<ByteBuffer> parent, int level, int blockSize, ForkJoinPool pool) {
+		this.parent = parent;
+		this.level = level;
+		this.blockSize = blockSize;
+		this.pool = pool;
+		this.maxInFlight = pool.getParallelism() * 2;
+		this.output = new StaticByteBuffer(DeflateWritableContainer.GZIP_HEADER.clone(), true);
+	}
+	
+	@Override
+	public long write(ByteBuffer source) throws IOException {
+		if (finished)
+			return -1;
+		long totalWritten = 0;
+		while (push(false)) {
+			if (inFlight.size() >= maxInFlight) {
+				await(inFlight.peek());
+				continue;
+			}
+			if (current == null) {
+				current = new Block();
+				current.data = free.isEmpty() ? new byte[blockSize] : free.pop();
+			}
+			int read = source.read(current.data, current.length, blockSize - current.length);
+			if (read <= 0)
+				break;
+			crc.update(current.data, current.length, read);
+			current.length += read;
+			totalWritten += read;
+			if (current.length == blockSize)
+				submit(false);
+		}
+		size += totalWritten;
+		return totalWritten;
+	}
+	
+	/**
+	 * Hands the current block to the pool with the history as dictionary and makes the block part of the history for the next one
+	 */
+	private void submit(boolean last) {
+		Block block = current == null ? new Block() : current;
+		if (block.data == null)
+			block.data = new byte[0];
+		current = null;
+		block.level = level;
+		block.last = last;
+		block.dictionary = Arrays.copyOf(history, historyLength);
+		block.dictionaryLength = historyLength;
+		if (block.length >= WINDOW) {
+			System.arraycopy(block.data, block.length - WINDOW, history, 0, WINDOW);
+			historyLength = WINDOW;
+		}
+		else if (block.length > 0) {
+			int keep = Math.min(historyLength, WINDOW - block.length);
+			System.arraycopy(history, historyLength - keep, history, 0, keep);
+			System.arraycopy(block.data, 0, history, keep, block.length);
+			historyLength = keep + block.length;
+		}
+		inFlight.add(pool.submit((Callable<Block>) block));
+	}
+	
+	private Block await(ForkJoinTask<Block> task) throws IOException {
+		try {
+			return task.join();
+		}
+		catch (RuntimeException e) {
+			throw new IOException("Could not compress a block", e);
+		}
+	}
+	
+	/**
+	 * Pushes the compressed blocks in order for as long as the parent accepts them, returns true if nothing is pending for the parent
+	 * If wait is true, it waits for all the blocks in flight to be compressed
+	 */
+	private boolean push(boolean wait) throws IOException {
+		while (true) {
+			while (output.remainingData() > 0) {
+				long written = parent.write(output);
+				if (written == -1)
+					throw new IOException("The target writable is closed");
+				else if (written == 0)
+					return false;
+			}
+			ForkJoinTask<Block> head = inFlight.peek();
+			if (head == null || (!wait && !head.isDone()))
+				return true;
+			Block block = await(inFlight.poll());
+			output = new StaticByteBuffer(block.compressed, 0, block.compressedLength, true);
+			if (block.data.length == blockSize)
+				free.push(block.data);
+		}
+	}
+	
+	private void pushAll() throws IOException {
+		if (!push(true))
+			throw new IOException("Could only flush part of the compressed data to " + parent.getClass().getName());
+	}
+
+	/**
+	 * The partial block is compressed on its own so everything written so far can be decompressed by the other side
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (!closed) {
+			if (current != null && current.length > 0)
+				submit(false);
+			pushAll();
+		}
+		parent.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			if (!finished) {
+				submit(true);
+				finished = true;
+			}
+			pushAll();
+			if (!trailed) {
+				int checksum = (int) crc.getValue();
+				output = new StaticByteBuffer(new byte[] {
+					(byte) checksum, (byte) (checksum >> 8), (byte) (checksum >> 16), (byte) (checksum >> 24),
+					(byte) size, (byte) (size >> 8), (byte) (size >> 16), (byte) (size >> 24)
+				}, true);
+				trailed = true;
+				pushAll();
+			}
+			parent.flush();
+			parent.close();
+			closed = true;
+		}
+	}
+}
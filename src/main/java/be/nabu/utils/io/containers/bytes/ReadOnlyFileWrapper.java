@@ -20,6 +20,7 @@ package be.nabu.utils.io.containers.bytes;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.channels.WritableByteChannel;
 
 import be.nabu.utils.io.api.ByteBuffer;
 import be.nabu.utils.io.api.DuplicatableContainer;
@@ -120,6 +121,26 @@ public class ReadOnlyFileWrapper implements ReadableContainer<ByteBuffer>, Limit
 		}
 	}
 
+	/**
+	 * Sends the remaining data to the channel without copying it through the heap, the file channel can hand this off to the kernel
+	 * This stops when the channel does not accept any more data, the read pointer reflects what was actually sent
+	 */
+	public long transferTo(WritableByteChannel channel) throws IOException {
+		long totalTransferred = 0;
+		long remaining = remainingData();
+		while (remaining > 0) {
+			long transferred = getRandomAccessFile().getChannel().transferTo(readPointer, remaining, channel);
+			if (transferred <= 0)
+				break;
+			readPointer += transferred;
+			remaining -= transferred;
+			totalTransferred += transferred;
+		}
+		if (closeOnFullyRead && remainingData() == 0)
+			close();
+		return totalTransferred;
+	}
+
 	@Override
 	public void close() throws IOException {
 		if (randomAccessFile != null)
@@ -19,21 +19,26 @@ package be.nabu.utils.io.containers.bytes;
 
 import java.io.IOException;
 
-import be.nabu.utils.io.IOUtils;
 import be.nabu.utils.io.api.ByteBuffer;
 import be.nabu.utils.io.api.CharBuffer;
+import be.nabu.utils.io.api.NioBackedBuffer;
 import be.nabu.utils.io.api.ReadableContainer;
+import be.nabu.utils.io.buffers.chars.StaticCharBuffer;
 
 /**
  * Performs a 1-1 mapping from chars to bytes where the exact byte value is translated from a char
  * This is not the same as code page 437 but instead conforms to http://www.unicode.org/charts/PDF/U0080.pdf
+ * 
+ * The chars are read in bulk but never more than the target can take, if the target exposes its space as heap views they are narrowed straight into its backing array
  */
 public class ReadableStraightCharToByteContainer implements ReadableContainer<ByteBuffer> {
 
 	private ReadableContainer<CharBuffer> chars;
 
-	private char [] singleChar = new char[1];
-	private byte [] singleByte = new byte[1];
+	private char [] charBuffer = new char[8096];
+	private byte [] byteBuffer = new byte[8096];
+	private StaticCharBuffer input = new StaticCharBuffer(charBuffer, false);
+	private java.nio.ByteBuffer [] views = new java.nio.ByteBuffer[1];
 	
 	public ReadableStraightCharToByteContainer(ReadableContainer<CharBuffer> chars) {
 		this.chars = chars;
@@ -44,18 +49,37 @@ public class ReadableStraightCharToByteContainer implements ReadableContainer<By
 		chars.close();
 	}
 
+	@SuppressWarnings("unchecked")
 	@Override
 	public long read(ByteBuffer target) throws IOException {
 		long totalRead = 0;
 		while (target.remainingSpace() > 0) {
-			long read = chars.read(IOUtils.wrap(singleChar, false));
+			int amount = (int) Math.min(charBuffer.length, target.remainingSpace());
+			StaticCharBuffer input = amount == charBuffer.length ? this.input : new StaticCharBuffer(charBuffer, 0, amount, false);
+			input.truncate();
+			long read = chars.read(input);
 			if (read == -1)
 				return totalRead == 0 ? -1 : totalRead;
 			else if (read == 0)
 				break;
-			singleByte[0] = (byte) (singleChar[0] & 0xff);
-			totalRead += target.write(singleByte);
+			if (target instanceof NioBackedBuffer && ((NioBackedBuffer<java.nio.ByteBuffer>) target).getSpaceViews(views, 0) > 0 && views[0].hasArray() && views[0].remaining() >= read) {
+				java.nio.ByteBuffer view = views[0];
+				narrow(charBuffer, view.array(), view.arrayOffset() + view.position(), (int) read);
+				((NioBackedBuffer<java.nio.ByteBuffer>) target).produced(read);
+				totalRead += read;
+			}
+			else {
+				narrow(charBuffer, byteBuffer, 0, (int) read);
+				totalRead += target.write(byteBuffer, 0, (int) read);
+			}
+			views[0] = null;
 		}
 		return totalRead;
 	}
+	
+	private static void narrow(char [] chars, byte [] bytes, int offset, int length) {
+		for (int i = 0; i < length; i++) {
+			bytes[offset + i] = (byte) chars[i];
+		}
+	}
 }
@@ -27,6 +27,10 @@ import java.security.cert.Certificate;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.net.ssl.SNIHostName;
 import javax.net.ssl.SNIServerName;
@@ -37,20 +41,32 @@ import javax.net.ssl.SSLEngineResult.HandshakeStatus;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLParameters;
 import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
 
 import be.nabu.utils.io.IOUtils;
 import be.nabu.utils.io.SSLServerMode;
 import be.nabu.utils.io.api.Container;
+import be.nabu.utils.io.api.EventfulCloseableContainer;
+import be.nabu.utils.io.api.EventfulReadableContainer;
+import be.nabu.utils.io.api.EventfulSubscriber;
+import be.nabu.utils.io.api.EventfulSubscription;
+import be.nabu.utils.io.api.EventfulWritableContainer;
+import be.nabu.utils.io.api.NioBackedBuffer;
 import be.nabu.utils.io.api.ReadableContainer;
 import be.nabu.utils.io.api.WritableContainer;
+import be.nabu.utils.io.buffers.bytes.ByteBufferFactory;
+import be.nabu.utils.io.buffers.bytes.DirectByteBuffer;
 import be.nabu.utils.io.buffers.bytes.NioByteBufferWrapper;
+import be.nabu.utils.io.containers.EventfulSubscriberList;
 
 /**
  * http://docs.oracle.com/javase/7/docs/technotes/guides/security/jsse/JSSERefGuide.html#SSLENG
  * 
- * Note that currently the handshake _is_ blocking but has a configurable timeout (defaults to 30 seconds)
+ * By default the handshake is blocking with a configurable timeout (defaults to 30 seconds)
+ * In non-blocking mode the handshake is driven by the read() and write() calls: they return 0 until the handshake is done and the eventful subscribers are notified when it makes sense to try again
  */
-public class SSLSocketByteContainer implements Container<be.nabu.utils.io.api.ByteBuffer> {
+public class SSLSocketByteContainer implements Container<be.nabu.utils.io.api.ByteBuffer>, EventfulReadableContainer<be.nabu.utils.io.api.ByteBuffer>, EventfulWritableContainer<be.nabu.utils.io.api.ByteBuffer>, EventfulCloseableContainer {
 
 	private Container<be.nabu.utils.io.api.ByteBuffer> parent;
 	private SSLEngine engine;
@@ -58,15 +74,61 @@ public class SSLSocketByteContainer implements Container<be.nabu.utils.io.api.By
 	private ByteBuffer applicationIn, applicationOut, networkIn, networkOut;
 	private Date handshakeStarted, handshakeStopped;
 	private Long handshakeTimeout, readTimeout;
+	private long handshakeDeadline;
+	private Boolean blockingHandshake;
+	
+	/**
+	 * In non-blocking mode the delegated tasks of the engine (e.g. certificate validation) are run on this executor, if there is none they are run inline
+	 */
+	private Executor executor;
+	private volatile boolean tasksRunning;
+	
+	private EventfulSubscriberList dataSubscribers = new EventfulSubscriberList(),
+		spaceSubscribers = new EventfulSubscriberList(),
+		closedSubscribers = new EventfulSubscriberList();
+	private EventfulSubscription parentData, parentSpace;
+	
+	/**
+	 * Whether the last unwrap needs more network data before it can continue
+	 */
+	private boolean underflow;
 	private boolean isStartTls;
 	
-	private be.nabu.utils.io.api.ByteBuffer writeBuffer = IOUtils.newByteBuffer(),
-			readBuffer = IOUtils.newByteBuffer();
+	private be.nabu.utils.io.api.ByteBuffer writeBuffer, readBuffer;
+	
+	/**
+	 * Reusable wrappers around the engine buffers, they are only ever read from or only ever written to so their state stays in sync with the buffer they wrap
+	 */
+	private NioByteBufferWrapper networkInWrapper, networkOutWrapper, applicationInWrapper, applicationOutWrapper;
+	
+	/**
+	 * Reused to collect the views of nio backed sources and targets
+	 */
+	private ByteBuffer [] views = new ByteBuffer[16];
+	
+	/**
+	 * When coalescing, records are wrapped back to back into this buffer and sent in one write when it is full or when the container is flushed
+	 */
+	private ByteBuffer coalesced;
+	private NioByteBufferWrapper coalescedWrapper;
+	private Integer coalesceSize;
+	private ByteBufferFactory factory;
 	
 	private boolean isClosed;
 	private boolean isClient;
 	private String hostName;
 	
+	/**
+	 * The peer the engine was created for, the client session cache can only resume sessions if this is known
+	 */
+	private String peerHost;
+	private int peerPort = -1;
+	private HandshakeStatistics handshakeStatistics;
+	
+	private static AtomicLong fullHandshakes = new AtomicLong(), 
+		resumedHandshakes = new AtomicLong(),
+		failedHandshakes = new AtomicLong();
+	
 	public SSLSocketByteContainer(Container<be.nabu.utils.io.api.ByteBuffer> parent, SSLContext context, SSLServerMode serverMode) throws SSLException {
 		this(parent, context, false);
 		switch(serverMode) {
@@ -81,18 +143,63 @@ public class SSLSocketByteContainer implements Container<be.nabu.utils.io.api.By
 	}
 	
 	public SSLSocketByteContainer(Container<be.nabu.utils.io.api.ByteBuffer> parent, SSLContext context, boolean isClient, String hostName) throws SSLException {
+		this(parent, context, isClient, hostName, ByteBufferFactory.getInstance());
+	}
+	
+	/**
+	 * If the factory is off-heap, the engine works on direct memory that can be handed to the kernel as is
+	 */
+	public SSLSocketByteContainer(Container<be.nabu.utils.io.api.ByteBuffer> parent, SSLContext context, boolean isClient, String hostName, ByteBufferFactory factory) throws SSLException {
+		this(parent, context, isClient, hostName, -1, factory);
+	}
+	
+	/**
+	 * If the host name or port are not given, they are taken from the parent if it is connected to a socket
+	 */
+	public SSLSocketByteContainer(Container<be.nabu.utils.io.api.ByteBuffer> parent, SSLContext context, boolean isClient, String hostName, int port, ByteBufferFactory factory) throws SSLException {
 		this.parent = parent;
 		this.context = context;
 		this.isClient = isClient;
 		this.hostName = hostName;
-		this.engine = context.createSSLEngine();
+		this.factory = factory;
+		InetSocketAddress remoteAddress = getRemoteAddress();
+		// use the host string, we don't want a reverse lookup here
+		this.peerHost = hostName == null && remoteAddress != null ? remoteAddress.getHostString() : hostName;
+		this.peerPort = port < 0 && remoteAddress != null ? remoteAddress.getPort() : port;
+		this.engine = createSSLEngine(peerHost, peerPort);
 		
 		engine.setUseClientMode(isClient);
 		
-		applicationIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
-		applicationOut = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize() / 2);
-		networkIn = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
-		networkOut = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+		applicationIn = factory.newNioBuffer(engine.getSession().getApplicationBufferSize());
+		applicationOut = factory.newNioBuffer(engine.getSession().getApplicationBufferSize() / 2);
+		networkIn = factory.newNioBuffer(engine.getSession().getPacketBufferSize());
+		networkOut = factory.newNioBuffer(engine.getSession().getPacketBufferSize());
+		writeBuffer = factory.newInstance();
+		readBuffer = factory.newInstance();
+		networkInWrapper = new NioByteBufferWrapper(networkIn, false);
+		networkOutWrapper = new NioByteBufferWrapper(networkOut, true);
+		applicationInWrapper = new NioByteBufferWrapper(applicationIn, true);
+		applicationOutWrapper = new NioByteBufferWrapper(applicationOut, false);
+	}
+	
+	/**
+	 * Creating the engine for a specific peer allows the session cache to resume a previous session with that peer
+	 */
+	protected SSLEngine createSSLEngine(String host, int port) {
+		return host == null ? context.createSSLEngine() : context.createSSLEngine(host, port);
+	}
+	
+	private InetSocketAddress getRemoteAddress() {
+		if (parent instanceof ByteChannelContainer) {
+			ByteChannel channel = ((ByteChannelContainer<?>) parent).getChannel();
+			if (channel instanceof SocketChannel) {
+				SocketAddress remoteAddress = ((SocketChannel) channel).socket().getRemoteSocketAddress();
+				if (remoteAddress instanceof InetSocketAddress) {
+					return (InetSocketAddress) remoteAddress;
+				}
+			}
+		}
+		return null;
 	}
 	
 	public String [] getEnabledCipherSuites() {
@@ -121,15 +228,9 @@ public class SSLSocketByteContainer implements Container<be.nabu.utils.io.api.By
 		if (handshakeStarted == null) {
 			if (isClient) {
 				if (hostName == null) {
-					SocketAddress remoteAddress = null;
-					if (this.parent instanceof ByteChannelContainer) {
-						ByteChannel channel = ((ByteChannelContainer<?>) parent).getChannel();
-						if (channel instanceof SocketChannel) {
-							remoteAddress = ((SocketChannel) channel).socket().getRemoteSocketAddress();
-						}
-					}
-					if (remoteAddress instanceof InetSocketAddress) {
-						hostName = ((InetSocketAddress) remoteAddress).getHostName();
+					InetSocketAddress remoteAddress = getRemoteAddress();
+					if (remoteAddress != null) {
+						hostName = remoteAddress.getHostName();
 					}
 				}
 				// add support for SNI
@@ -143,32 +244,54 @@ public class SSLSocketByteContainer implements Container<be.nabu.utils.io.api.By
 			}
 			engine.beginHandshake();
 			handshakeStarted = new Date();
+			handshakeDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(getHandshakeTimeout());
 		}
+		boolean blocking = isBlockingHandshake();
 		// the handshake status will revert to NOT_HANDSHAKING after it is finished
-		handshake: while (!isClosed && engine.getHandshakeStatus() != HandshakeStatus.FINISHED && engine.getHandshakeStatus() != HandshakeStatus.NOT_HANDSHAKING) {
-			if (new Date().getTime() > handshakeStarted.getTime() + getHandshakeTimeout()) {
+		handshake: while (!isClosed && isHandshaking()) {
+			if (System.nanoTime() - handshakeDeadline > 0) {
 				handshakeStopped = new Date();
-				throw new SSLException("Handshaked timed out");
+				failedHandshakes.incrementAndGet();
+				throw new SSLException("Handshake timed out");
+			}
+			// handshake data that the parent did not accept yet has to reach the other side before we can expect an answer
+			if (writeBuffer.remainingData() > 0) {
+				long written = blocking ? IOUtils.blockUntilWritten(parent, writeBuffer.remainingData()).write(writeBuffer) : parent.write(writeBuffer);
+				if (written == -1) {
+					isClosed = true;
+					break handshake;
+				}
+				else if (writeBuffer.remainingData() > 0) {
+					if (!blocking) {
+						return false;
+					}
+					continue;
+				}
 			}
 			switch(engine.getHandshakeStatus()) {
 				case NEED_WRAP:
-					if (wrap(true) == -1) {
+					if (wrap(blocking, null) == -1) {
 						isClosed = true;
 						break handshake;
 					}
+					// the parent can not accept the handshake data yet
+					if (!blocking && writeBuffer.remainingData() > 0 && engine.getHandshakeStatus() == HandshakeStatus.NEED_WRAP) {
+						return false;
+					}
 				break;
 				case NEED_UNWRAP:
-					if (unwrap(true) == -1) {
+					if (unwrap(blocking, null) == -1) {
 						isClosed = true;
 						break handshake;
 					}
+					// we need more data from the other side
+					if (!blocking && underflow && engine.getHandshakeStatus() == HandshakeStatus.NEED_UNWRAP) {
+						return false;
+					}
 				break;
 				case NEED_TASK:
-					// don't offload to different thread
-					Runnable task = engine.getDelegatedTask();
-					if (task != null) {
-						//ForkJoinPool.commonPool().submit(task);
-						task.run();
+					if (!runDelegatedTasks(blocking)) {
+						return false;
 					}
 				break;
 				// is finished
@@ -176,54 +299,145 @@ public class SSLSocketByteContainer implements Container<be.nabu.utils.io.api.By
 				case NOT_HANDSHAKING:
 			}
 		}
-		if (handshakeStopped == null && !isClosed) {
+		// make sure the last handshake message reaches the other side, it might be waiting for it before it sends anything
+		if (!isClosed && !blocking && writeBuffer.remainingData() > 0) {
+			isClosed |= parent.write(writeBuffer) == -1;
+			if (!isClosed && writeBuffer.remainingData() > 0) {
+				return false;
+			}
+		}
+		if (handshakeStopped == null) {
 			handshakeStopped = new Date();
+			if (isClosed) {
+				failedHandshakes.incrementAndGet();
+			}
+			else {
+				SSLSession session = engine.getSession();
+				// a resumed session was created before this handshake started
+				boolean resumed = session.getCreationTime() < handshakeStarted.getTime();
+				(resumed ? resumedHandshakes : fullHandshakes).incrementAndGet();
+				handshakeStatistics = new HandshakeStatistics(handshakeStarted, handshakeStopped, resumed, session.getProtocol(), session.getCipherSuite(), peerHost, peerPort);
+				// anyone waiting for the handshake can write now
+				spaceSubscribers.fire();
+			}
 		}
 		return !isClosed;
 	}
 	
+	private boolean isHandshaking() {
+		return engine.getHandshakeStatus() != HandshakeStatus.FINISHED && engine.getHandshakeStatus() != HandshakeStatus.NOT_HANDSHAKING;
+	}
+	
+	/**
+	 * Returns true if the tasks are done, in non-blocking mode with an executor they are run asynchronously and the subscribers are notified when they are done
+	 */
+	private boolean runDelegatedTasks(boolean blocking) {
+		if (executor == null || blocking) {
+			Runnable task;
+			while ((task = engine.getDelegatedTask()) != null) {
+				task.run();
+			}
+			return true;
+		}
+		else if (!tasksRunning) {
+			final List<Runnable> tasks = new ArrayList<Runnable>();
+			Runnable task;
+			while ((task = engine.getDelegatedTask()) != null) {
+				tasks.add(task);
+			}
+			tasksRunning = true;
+			try {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							for (Runnable task : tasks) {
+								task.run();
+							}
+						}
+						finally {
+							tasksRunning = false;
+							// the handshake can continue
+							dataSubscribers.fire();
+							spaceSubscribers.fire();
+						}
+					}
+				});
+			}
+			catch (RejectedExecutionException e) {
+				for (Runnable rejected : tasks) {
+					rejected.run();
+				}
+				tasksRunning = false;
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Wraps application data into network data and sends it to the parent
+	 * If the source is nio backed, its data is wrapped directly, otherwise the data in applicationOut is wrapped
+	 * Returns the amount of application data that was wrapped
+	 */
 	@SuppressWarnings("resource")
-	private int wrap(boolean block) throws IOException {
-		int totalWritten = 0;
+	private int wrap(boolean block, NioBackedBuffer<ByteBuffer> source) throws IOException {
+		int totalWrapped = 0;
 		SSLEngineResult result = null;
-		long write = parent.write(writeBuffer);
+		// records that are still waiting to be coalesced have to go out before any new record
+		if (flushCoalesced(block) == -1) {
+			return -1;
+		}
+		long write = writeBuffer.remainingData() == 0 ? 0 : parent.write(writeBuffer);
 		isClosed |= write == -1;
 		// first make sure we copy all data from the writeBuffer to the output
 		if (write >= 0 && writeBuffer.remainingData() == 0) {
 			do {
 				networkOut.clear();
-				result = engine.wrap(applicationOut, networkOut);
+				result = wrapRecord(source, networkOut);
+				totalWrapped += result.bytesConsumed();
 				networkOut.flip();
-				WritableContainer<be.nabu.utils.io.api.ByteBuffer> writable = block ? IOUtils.blockUntilWritten(parent, networkOut.remaining()) : parent;
-				write = writable.write(new NioByteBufferWrapper(networkOut, true));
-				if (write == -1) {
-					isClosed = true;
-				}
-				else {
-					totalWritten += write;
+				if (networkOut.hasRemaining()) {
+					write = parent.write(networkOutWrapper);
+					// only wait for the parent if it could not take everything right away
+					if (write >= 0 && block && networkOut.hasRemaining()) {
+						write = IOUtils.blockUntilWritten(parent, networkOut.remaining()).write(networkOutWrapper);
+					}
+					if (write == -1) {
+						isClosed = true;
+					}
 				}
 				// if we can't write it to the socket, write it to the buffer
 				if (networkOut.hasRemaining()) {
-					writeBuffer.write(networkOut.array(), networkOut.position(), networkOut.remaining());
+					if (writeBuffer instanceof DirectByteBuffer)
+						((DirectByteBuffer) writeBuffer).write(networkOut);
+					else
+						writeBuffer.write(networkOut.array(), networkOut.arrayOffset() + networkOut.position(), networkOut.remaining());
 					break;
 				}
 			}
 			while (!isClosed && result.getStatus() != SSLEngineResult.Status.OK && result.getStatus() != SSLEngineResult.Status.CLOSED);
 		}
 		isClosed |= result != null && result.getStatus() == SSLEngineResult.Status.CLOSED; 
-		return totalWritten == 0 && isClosed ? -1 : totalWritten;
+		return totalWrapped == 0 && isClosed ? -1 : totalWrapped;
 	}
 	
-	@SuppressWarnings("resource")
-	private int unwrap(boolean block) throws IOException {
+	/**
+	 * Reads network data from the parent and unwraps it
+	 * If a target is given, the application data is unwrapped straight into it where possible, whatever does not fit ends up in the readBuffer
+	 * Returns the amount of application data that was added to the target (or the readBuffer if there is no target)
+	 */
+	@SuppressWarnings({ "resource", "unchecked" })
+	private int unwrap(boolean block, be.nabu.utils.io.api.ByteBuffer target) throws IOException {
 		int totalRead = 0;
 		SSLEngineResult result = null;
+		underflow = true;
 		do {
 			// there is still some room left, read more
 			if (networkIn.hasRemaining()) {
 				// only block if there is no data at all in the network buffer
-				ReadableContainer<be.nabu.utils.io.api.ByteBuffer> readable = block && networkIn.remaining() == networkIn.capacity() ? IOUtils.blockUntilRead(parent, 1, getReadTimeout()) : parent;
-				long read = readable.read(new NioByteBufferWrapper(networkIn, false));
+				ReadableContainer<be.nabu.utils.io.api.ByteBuffer> readable = block && networkIn.position() == 0 ? IOUtils.blockUntilRead(parent, 1, getReadTimeout()) : parent;
+				long read = readable.read(networkInWrapper);
 				if (read < 0) {
 					isClosed = true;
 				}
@@ -233,28 +447,111 @@ public class SSLSocketByteContainer implements Container<be.nabu.utils.io.api.By
 				}
 			}
 			// if no data has been read, stop
-			if (networkIn.remaining() == networkIn.capacity())
+			if (networkIn.position() == 0)
 				break;
 			networkIn.flip();
-			// if there is still no data, stop
-			if (!networkIn.hasRemaining())
-				break;
-			applicationIn.clear();
-			result = engine.unwrap(networkIn, applicationIn);
-			applicationIn.flip();
-			networkIn.compact();
-			// write it all to the buffer
-			totalRead += IOUtils.wrap(applicationIn, true).read(readBuffer);
-			if (applicationIn.remaining() != 0) {
-				throw new IOException("Could not copy the application buffer to the target read buffer");
+			result = null;
+			// unwrap straight into the target, if it does not have enough room for the record, the engine will report an overflow without consuming anything
+			if (target instanceof NioBackedBuffer && readBuffer.remainingData() == 0) {
+				NioBackedBuffer<ByteBuffer> backed = (NioBackedBuffer<ByteBuffer>) target;
+				int amount = backed.getSpaceViews(views, 0);
+				try {
+					if (amount > 0) {
+						result = engine.unwrap(networkIn, views, 0, amount);
+					}
+				}
+				finally {
+					backed.produced(result == null ? 0 : result.bytesProduced());
+					clearViews(amount);
+				}
+				if (result != null && result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+					result = null;
+				}
+				else if (result != null) {
+					totalRead += result.bytesProduced();
+				}
+			}
+			if (result == null) {
+				applicationIn.clear();
+				result = engine.unwrap(networkIn, applicationIn);
+				applicationIn.flip();
+				// first give the target what it can take, the rest is buffered
+				if (target != null && readBuffer.remainingData() == 0 && applicationIn.hasRemaining()) {
+					long written = target.write(applicationInWrapper);
+					if (written > 0) {
+						totalRead += written;
+					}
+				}
+				if (applicationIn.hasRemaining()) {
+					int remaining = applicationIn.remaining();
+					if (readBuffer.write(applicationInWrapper) != remaining) {
+						throw new IOException("Could not copy the application buffer to the target read buffer");
+					}
+					if (target == null) {
+						totalRead += remaining;
+					}
+				}
 			}
-			//IOUtils.copyBytes(IOUtils.wrap(application, true), readBuffer);
+			networkIn.compact();
+			underflow = result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW;
 		}
 		while (!isClosed && result.getStatus() != SSLEngineResult.Status.OK && result.getStatus() != SSLEngineResult.Status.CLOSED);
 		isClosed |= result != null && result.getStatus() == SSLEngineResult.Status.CLOSED;
 		return totalRead == 0 && isClosed ? -1 : totalRead;
 	}
 	
+	/**
+	 * Wraps a single record from the source (or the applicationOut if there is no source) into the target
+	 */
+	private SSLEngineResult wrapRecord(NioBackedBuffer<ByteBuffer> source, ByteBuffer target) throws SSLException {
+		if (source == null) {
+			return engine.wrap(applicationOut, target);
+		}
+		int amount = source.getDataViews(views, 0);
+		try {
+			SSLEngineResult result = engine.wrap(views, 0, amount, target);
+			source.consumed(result.bytesConsumed());
+			return result;
+		}
+		finally {
+			clearViews(amount);
+		}
+	}
+	
+	/**
+	 * Sends the coalesced records to the parent, whatever the parent does not accept is moved to the write buffer so it goes out before anything else
+	 */
+	@SuppressWarnings("resource")
+	private long flushCoalesced(boolean block) throws IOException {
+		if (coalesced == null || coalesced.position() == 0) {
+			return 0;
+		}
+		coalesced.flip();
+		try {
+			long write = parent.write(coalescedWrapper);
+			if (write >= 0 && block && coalesced.hasRemaining()) {
+				write = IOUtils.blockUntilWritten(parent, coalesced.remaining()).write(coalescedWrapper);
+			}
+			if (write == -1) {
+				isClosed = true;
+			}
+			// the coalesced buffer is only filled while the write buffer is empty so this maintains the order
+			else if (coalesced.hasRemaining()) {
+				writeBuffer.write(coalescedWrapper);
+			}
+			return write;
+		}
+		finally {
+			coalesced.clear();
+		}
+	}
+	
+	private void clearViews(int amount) {
+		for (int i = 0; i < amount; i++) {
+			views[i] = null;
+		}
+	}
+	
 	@Override
 	public long read(be.nabu.utils.io.api.ByteBuffer target) throws IOException {
 		int readTotal = 0;
@@ -266,19 +563,16 @@ public class SSLSocketByteContainer implements Container<be.nabu.utils.io.api.By
 				if (readBuffer.remainingData() > 0)
 					return readTotal;
 			}
-			long read = 0;
 			while (target.remainingSpace() > 0 && readBuffer.remainingData() == 0) {
 				if (engine.isInboundDone()) {
 					isClosed = true;
 					break;
 				}
-				read = unwrap(false);
-				if (read == -1) {
-					isClosed = true;
-				}
-				read = target.write(readBuffer);
-				if (read <= 0)
+				int read = unwrap(false, target);
+				if (read <= 0) {
+					isClosed |= read == -1;
 					break;
+				}
 				readTotal += read;
 			}
 		}
@@ -289,9 +583,16 @@ public class SSLSocketByteContainer implements Container<be.nabu.utils.io.api.By
 	public void close() throws IOException {
 		try {
 			engine.closeOutbound();
-			while (!isClosed && !engine.isOutboundDone()) {
+			if (isBlockingHandshake()) {
+				while (!isClosed && !engine.isOutboundDone()) {
+					applicationOut.clear();
+					wrap(true, null);
+				}
+			}
+			// best effort, we can not wait for the parent to accept the close notification
+			else if (!isClosed) {
 				applicationOut.clear();
-				wrap(true);
+				wrap(false, null);
 			}
 			
 			// NOT ACTIVE: check the TLS 1.3 notes in the changes folder
@@ -303,10 +604,19 @@ public class SSLSocketByteContainer implements Container<be.nabu.utils.io.api.By
 		}
 		finally {
 			isClosed = true;
-			parent.close();
+			try {
+				parent.close();
+			}
+			finally {
+				unsubscribeParent();
+				closedSubscribers.fire();
+				// readers should find out that the container is closed
+				dataSubscribers.fire();
+			}
 		}
 	}
 
+	@SuppressWarnings("unchecked")
 	@Override
 	public long write(be.nabu.utils.io.api.ByteBuffer source) throws IOException {
 		// if we are in start tls mode, the handshake (which is initiated by the client) is NOT started yet
@@ -316,17 +626,58 @@ public class SSLSocketByteContainer implements Container<be.nabu.utils.io.api.By
 		}
 		long writeTotal = 0;
 		if (!isClosed && shakeHands()) {
-			while (source.remainingData() > 0 && writeBuffer.remainingData() == 0) {
-				long amount = Math.min(source.remainingData(), applicationOut.remaining());
-				IOUtils.copyBytes(IOUtils.limitReadable(source, amount), IOUtils.wrap(applicationOut, false));
-//				application.put(bytes, offset, amount);
-				applicationOut.flip();
-				if (wrap(true) == -1) {
-					isClosed = true;
-					break;
+			if (getCoalesceSize() > 0) {
+				int packetSize = engine.getSession().getPacketBufferSize();
+				int size = Math.max(getCoalesceSize(), packetSize);
+				if (coalesced == null || (coalesced.position() == 0 && coalesced.capacity() != size)) {
+					coalesced = factory.newNioBuffer(size);
+					coalescedWrapper = new NioByteBufferWrapper(coalesced, true);
+				}
+				while (source.remainingData() > 0 && writeBuffer.remainingData() == 0) {
+					// the engine needs room for a full record
+					if (coalesced.remaining() < packetSize) {
+						if (flushCoalesced(true) == -1) {
+							break;
+						}
+						continue;
+					}
+					SSLEngineResult result;
+					if (source instanceof NioBackedBuffer) {
+						result = wrapRecord((NioBackedBuffer<ByteBuffer>) source, coalesced);
+					}
+					else {
+						source.read(applicationOutWrapper);
+						applicationOut.flip();
+						result = wrapRecord(null, coalesced);
+						applicationOut.compact();
+					}
+					if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+						isClosed = true;
+						break;
+					}
+					writeTotal += result.bytesConsumed();
+				}
+			}
+			else {
+				while (source.remainingData() > 0 && writeBuffer.remainingData() == 0) {
+					int wrapped;
+					// wrap straight from the data of the source
+					if (source instanceof NioBackedBuffer) {
+						wrapped = wrap(true, (NioBackedBuffer<ByteBuffer>) source);
+					}
+					else {
+						// the wrapper reads as much as there is room in the application buffer
+						source.read(applicationOutWrapper);
+						applicationOut.flip();
+						wrapped = wrap(true, null);
+						applicationOut.compact();
+					}
+					if (wrapped == -1) {
+						isClosed = true;
+						break;
+					}
+					writeTotal += wrapped;
 				}
-				applicationOut.compact();
-				writeTotal += amount;
 			}
 		}
 		return writeTotal == 0 && isClosed ? -1 : writeTotal;
@@ -334,9 +685,88 @@ public class SSLSocketByteContainer implements Container<be.nabu.utils.io.api.By
 
 	@Override
 	public void flush() throws IOException {
+		if (!isClosed) {
+			flushCoalesced(true);
+		}
 		parent.flush();
 	}
 
+	@Override
+	public EventfulSubscription availableData(EventfulSubscriber subscriber) {
+		subscribeParent();
+		return dataSubscribers.subscribe(subscriber);
+	}
+
+	@Override
+	public EventfulSubscription availableSpace(EventfulSubscriber subscriber) {
+		subscribeParent();
+		return spaceSubscribers.subscribe(subscriber);
+	}
+	
+	@Override
+	public EventfulSubscription closed(EventfulSubscriber subscriber) {
+		return closedSubscribers.subscribe(subscriber);
+	}
+	
+	/**
+	 * Forwards the events of the parent, during the handshake both readers and writers are interested in both events because either can drive the handshake
+	 */
+	@SuppressWarnings("unchecked")
+	private synchronized void subscribeParent() {
+		if (parentData == null && parent instanceof EventfulReadableContainer) {
+			parentData = ((EventfulReadableContainer<be.nabu.utils.io.api.ByteBuffer>) parent).availableData(new EventfulSubscriber() {
+				@Override
+				public void on(EventfulSubscription subscription) {
+					dataSubscribers.fire();
+					if (handshakeStopped == null) {
+						spaceSubscribers.fire();
+					}
+				}
+			});
+		}
+		if (parentSpace == null && parent instanceof EventfulWritableContainer) {
+			parentSpace = ((EventfulWritableContainer<be.nabu.utils.io.api.ByteBuffer>) parent).availableSpace(new EventfulSubscriber() {
+				@Override
+				public void on(EventfulSubscription subscription) {
+					spaceSubscribers.fire();
+					if (handshakeStopped == null) {
+						dataSubscribers.fire();
+					}
+				}
+			});
+		}
+	}
+	
+	private synchronized void unsubscribeParent() {
+		if (parentData != null) {
+			parentData.unsubscribe();
+			parentData = null;
+		}
+		if (parentSpace != null) {
+			parentSpace.unsubscribe();
+			parentSpace = null;
+		}
+	}
+	
+	public boolean isBlockingHandshake() {
+		if (blockingHandshake == null) {
+			blockingHandshake = Boolean.parseBoolean(System.getProperty("ssl.handshake.blocking", "true"));
+		}
+		return blockingHandshake;
+	}
+
+	public void setBlockingHandshake(boolean blockingHandshake) {
+		this.blockingHandshake = blockingHandshake;
+	}
+	
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
 	public Long getHandshakeTimeout() {
 		if (handshakeTimeout == null) {
 			// 30 seconds to time out should be enough for a handshake?
@@ -362,6 +792,21 @@ public class SSLSocketByteContainer implements Container<be.nabu.utils.io.api.By
 		this.readTimeout = readTimeout;
 	}
 
+	/**
+	 * The maximum amount of network data that is gathered before it is written to the parent, 0 (the default) means every record is written as soon as it is wrapped
+	 * When coalescing, the data is only guaranteed to be sent when the container is flushed
+	 */
+	public Integer getCoalesceSize() {
+		if (coalesceSize == null) {
+			coalesceSize = Integer.parseInt(System.getProperty("ssl.write.coalesce", "0"));
+		}
+		return coalesceSize;
+	}
+
+	public void setCoalesceSize(Integer coalesceSize) {
+		this.coalesceSize = coalesceSize;
+	}
+
 	public boolean isStartTls() {
 		return isStartTls;
 	}
@@ -373,4 +818,44 @@ public class SSLSocketByteContainer implements Container<be.nabu.utils.io.api.By
 	public Long getHandshakeDuration() {
 		return handshakeStarted != null && handshakeStopped != null ? handshakeStopped.getTime() - handshakeStarted.getTime() : null;
 	}
+	
+	/**
+	 * The statistics of the handshake, this is null until the handshake has succeeded
+	 */
+	public HandshakeStatistics getHandshakeStatistics() {
+		return handshakeStatistics;
+	}
+	
+	/**
+	 * The amount of handshakes in this jvm that negotiated a new session
+	 */
+	public static long getFullHandshakes() {
+		return fullHandshakes.get();
+	}
+	
+	/**
+	 * The amount of handshakes in this jvm that resumed an existing session
+	 */
+	public static long getResumedHandshakes() {
+		return resumedHandshakes.get();
+	}
+	
+	/**
+	 * The amount of handshakes in this jvm that timed out or where the connection was closed
+	 */
+	public static long getFailedHandshakes() {
+		return failedHandshakes.get();
+	}
+	
+	/**
+	 * Tunes the session caches of the context, a size of 0 means unlimited and the timeout is in seconds
+	 */
+	public static void configureSessionCache(SSLContext context, int cacheSize, int timeout) {
+		for (SSLSessionContext sessionContext : new SSLSessionContext[] { context.getClientSessionContext(), context.getServerSessionContext() }) {
+			if (sessionContext != null) {
+				sessionContext.setSessionCacheSize(cacheSize);
+				sessionContext.setSessionTimeout(timeout);
+			}
+		}
+	}
 }
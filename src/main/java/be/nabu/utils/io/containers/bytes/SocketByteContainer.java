@@ -21,6 +21,8 @@ import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.channels.SocketChannel;
 
+import be.nabu.utils.io.buffers.bytes.ByteBufferFactory;
+
 public class SocketByteContainer extends ByteChannelContainer<SocketChannel> {
 	
 	private boolean finishedConnect = false;
@@ -41,6 +43,10 @@ public class SocketByteContainer extends ByteChannelContainer<SocketChannel> {
 		super(channel);
 	}
 	
+	public SocketByteContainer(SocketChannel channel, ByteBufferFactory factory) {
+		super(channel, factory);
+	}
+	
 	@Override
 	public boolean isReady() throws IOException {
 		if (!finishedConnect) {
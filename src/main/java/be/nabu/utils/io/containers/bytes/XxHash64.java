@@ -0,0 +1,154 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.containers.bytes;
+
+import java.util.zip.Checksum;
+
+/**
+ * A streaming implementation of the 64 bit xxHash (https://github.com/Cyan4973/xxHash), a fast non-cryptographic hash
+ * Input is consumed in stripes of 32 bytes, a partial stripe is kept until the next update or until the value is requested
+ */
+public class XxHash64 implements Checksum {
+
+	private static final long PRIME1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME3 = 0x165667B19E3779F9L;
+	private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME5 = 0x27D4EB2F165667C5L;
+	
+	private long seed;
+	private long v1, v2, v3, v4;
+	private long length;
+	private byte [] stripe = new byte[32];
+	private int buffered;
+	
+	public XxHash64() {
+		this(0);
+	}
+	
+	public XxHash64(long seed) {
+		this.seed = seed;
+		reset();
+	}
+	
+	@Override
+	public void update(int b) {
+		stripe[buffered++] = (byte) b;
+		length++;
+		if (buffered == 32) {
+			stripe(stripe, 0);
+			buffered = 0;
+		}
+	}
+
+	@Override
+	public void update(byte [] bytes, int offset, int length) {
+		this.length += length;
+		int end = offset + length;
+		// complete the buffered stripe first
+		if (buffered > 0) {
+			int amount = Math.min(32 - buffered, length);
+			System.arraycopy(bytes, offset, stripe, buffered, amount);
+			buffered += amount;
+			offset += amount;
+			if (buffered < 32)
+				return;
+			stripe(stripe, 0);
+			buffered = 0;
+		}
+		while (end - offset >= 32) {
+			stripe(bytes, offset);
+			offset += 32;
+		}
+		if (offset < end) {
+			System.arraycopy(bytes, offset, stripe, 0, end - offset);
+			buffered = end - offset;
+		}
+	}
+	
+	private void stripe(byte [] bytes, int offset) {
+		v1 = round(v1, readLong(bytes, offset));
+		v2 = round(v2, readLong(bytes, offset + 8));
+		v3 = round(v3, readLong(bytes, offset + 16));
+		v4 = round(v4, readLong(bytes, offset + 24));
+	}
+	
+	private static long round(long accumulator, long input) {
+		return Long.rotateLeft(accumulator + input * PRIME2, 31) * PRIME1;
+	}
+	
+	private static long merge(long hash, long accumulator) {
+		return (hash ^ round(0, accumulator)) * PRIME1 + PRIME4;
+	}
+	
+	private static long readLong(byte [] bytes, int offset) {
+		return (bytes[offset] & 0xffL)
+			| (bytes[offset + 1] & 0xffL) << 8
+			| (bytes[offset + 2] & 0xffL) << 16
+			| (bytes[offset + 3] & 0xffL) << 24
+			| (bytes[offset + 4] & 0xffL) << 32
+			| (bytes[offset + 5] & 0xffL) << 40
+			| (bytes[offset + 6] & 0xffL) << 48
+			| (bytes[offset + 7] & 0xffL) << 56;
+	}
+
+	/**
+	 * Does not change the state so more data can be added afterwards
+	 */
+	@Override
+	public long getValue() {
+		long hash;
+		if (length >= 32) {
+			hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+			hash = merge(hash, v1);
+			hash = merge(hash, v2);
+			hash = merge(hash, v3);
+			hash = merge(hash, v4);
+		}
+		else {
+			hash = seed + PRIME5;
+		}
+		hash += length;
+		int offset = 0;
+		for (; offset + 8 <= buffered; offset += 8)
+			hash = Long.rotateLeft(hash ^ round(0, readLong(stripe, offset)), 27) * PRIME1 + PRIME4;
+		if (offset + 4 <= buffered) {
+			long value = (stripe[offset] & 0xffL) | (stripe[offset + 1] & 0xffL) << 8 | (stripe[offset + 2] & 0xffL) << 16 | (stripe[offset + 3] & 0xffL) << 24;
+			hash = Long.rotateLeft(hash ^ value * PRIME1, 23) * PRIME2 + PRIME3;
+			offset += 4;
+		}
+		for (; offset < buffered; offset++)
+			hash = Long.rotateLeft(hash ^ (stripe[offset] & 0xffL) * PRIME5, 11) * PRIME1;
+		hash ^= hash >>> 33;
+		hash *= PRIME2;
+		hash ^= hash >>> 29;
+		hash *= PRIME3;
+		hash ^= hash >>> 32;
+		return hash;
+	}
+
+	@Override
+	public void reset() {
+		v1 = seed + PRIME1 + PRIME2;
+		v2 = seed + PRIME2;
+		v3 = seed;
+		v4 = seed - PRIME1;
+		length = 0;
+		buffered = 0;
+	}
+}
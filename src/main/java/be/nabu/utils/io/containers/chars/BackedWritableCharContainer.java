@@ -20,33 +20,69 @@ package be.nabu.utils.io.containers.chars;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CoderResult;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.UnmappableCharacterException;
 
-import be.nabu.utils.io.IOUtils;
 import be.nabu.utils.io.api.WritableContainer;
 import be.nabu.utils.io.buffers.bytes.StaticByteBuffer;
+import be.nabu.utils.io.buffers.chars.StaticCharBuffer;
 
+/**
+ * Encodes chars in chunks: a chunk is peeked from the source into a reusable window, encoded into a reusable byte array and only then skipped in the source
+ * UTF-8, US-ASCII and ISO-8859-1 are encoded directly, other charsets go through a CharsetEncoder that works on nio views of the same arrays
+ * The encoded bytes are handed to the byte container in place, if it does not take them all they are kept until the next write or flush
+ * Meanwhile new chunks are encoded behind them for as long as there is room
+ */
 public class BackedWritableCharContainer implements WritableContainer<be.nabu.utils.io.api.CharBuffer> {
 
+	private enum Encoding {
+		ASCII, LATIN1, UTF8
+	}
+	
 	private WritableContainer<be.nabu.utils.io.api.ByteBuffer> byteContainer;
 	private CharsetEncoder encoder;
+	private Encoding encoding;
 	
-	private CharBuffer charBuffer;
-	private ByteBuffer byteBuffer;
-	private boolean closed = false;
+	private char [] chars = new char[1024];
+	private StaticCharBuffer window = new StaticCharBuffer(chars, false);
+	private CharBuffer charView;
 	
 	/**
-	 * When you flush you read from the bytebuffer
+	 * Big enough for any utf-8 encoded window, the pending bytes are the data of the output buffer that wraps it
 	 */
-	private boolean wasReading = false;
+	private byte [] bytes = new byte[chars.length * 4];
+	private StaticByteBuffer output = new StaticByteBuffer(bytes, false);
+	private ByteBuffer byteView;
+	private int maxBytesPerChar;
+	
+	private boolean closed = false;
 	
 	public BackedWritableCharContainer(WritableContainer<be.nabu.utils.io.api.ByteBuffer> container, Charset charset) {
 		this.byteContainer = container;
-		this.encoder = charset.newEncoder();
-		byteBuffer = ByteBuffer.allocate(2048);
-		charBuffer = CharBuffer.allocate(1024);
+		String name = charset.name();
+		if (name.equals("UTF-8")) {
+			encoding = Encoding.UTF8;
+			// a surrogate pair takes 4 bytes for 2 chars
+			maxBytesPerChar = 3;
+		}
+		else if (name.equals("US-ASCII")) {
+			encoding = Encoding.ASCII;
+			maxBytesPerChar = 1;
+		}
+		else if (name.equals("ISO-8859-1")) {
+			encoding = Encoding.LATIN1;
+			maxBytesPerChar = 1;
+		}
+		else {
+			encoder = charset.newEncoder();
+			charView = CharBuffer.wrap(chars);
+			byteView = ByteBuffer.wrap(bytes);
+			maxBytesPerChar = (int) Math.ceil(encoder.maxBytesPerChar());
+		}
 	}
 	
 	@Override
@@ -60,47 +96,165 @@ public class BackedWritableCharContainer implements WritableContainer<be.nabu.ut
 
 	@Override
 	public long write(be.nabu.utils.io.api.CharBuffer source) throws IOException {
-		long length = source.remainingData();
-		// peek so we don't lose data if we get all chars but can't push all to backend
-		charBuffer = CharBuffer.wrap(IOUtils.peekChars(source));
-		if (wasReading) {
-			wasReading = false;
-			byteBuffer.compact();
+		long total = 0;
+		push();
+		while (source.remainingData() > 0) {
+			int room = (int) Math.min(chars.length, output.remainingSpace() / maxBytesPerChar);
+			if (room <= 0) {
+				break;
+			}
+			window.truncate();
+			int peeked = (int) source.peek(window);
+			if (peeked <= 0) {
+				break;
+			}
+			int encoded;
+			try {
+				encoded = encode(Math.min(peeked, room));
+			}
+			catch (CharacterCodingException e) {
+				// the chars before the faulty one are encoded first, the next write will report it
+				if (total > 0) {
+					break;
+				}
+				throw e;
+			}
+			// a high surrogate at the end has to wait for its low surrogate
+			if (encoded == 0) {
+				break;
+			}
+			source.skip(encoded);
+			total += encoded;
+			push();
 		}
-		while (charBuffer.hasRemaining()) {
-			CoderResult result = encoder.encode(charBuffer, byteBuffer, closed);
-			if (result.isError())
-				result.throwException();
-			byteBuffer.flip();
-			int actualWrite = (int) byteContainer.write(new StaticByteBuffer(byteBuffer.array(), byteBuffer.position(), byteBuffer.limit() - byteBuffer.position(), true));
-			if (actualWrite == -1)
+		return total;
+	}
+	
+	/**
+	 * Pushes the pending bytes to the byte container, returns true if there are none left
+	 */
+	private boolean push() throws IOException {
+		while (output.remainingData() > 0) {
+			long written = byteContainer.write(output);
+			if (written == -1) {
 				throw new IOException("The target writable is closed");
-			byteBuffer.position(byteBuffer.position() + actualWrite);
-			byteBuffer.compact();
-			if (actualWrite == 0)
-				break;
+			}
+			else if (written == 0) {
+				return false;
+			}
+		}
+		output.truncate();
+		return true;
+	}
+	
+	/**
+	 * Encodes the first amount of chars behind the pending bytes and returns how many chars were encoded
+	 * A trailing high surrogate is left for the next window, its low surrogate may not have been written yet
+	 */
+	private int encode(int amount) throws IOException {
+		if (encoding == null) {
+			return encodeGeneric(amount);
+		}
+		int position = 0, written = (int) (output.position() + output.remainingData());
+		if (encoding == Encoding.UTF8) {
+			while (position < amount) {
+				// the ascii run
+				char c;
+				while (position < amount && (c = chars[position]) < 0x80) {
+					bytes[written++] = (byte) c;
+					position++;
+				}
+				if (position >= amount) {
+					break;
+				}
+				c = chars[position];
+				if (c < 0x800) {
+					bytes[written++] = (byte) (0xc0 | (c >> 6));
+					bytes[written++] = (byte) (0x80 | (c & 0x3f));
+					position++;
+				}
+				else if (Character.isSurrogate(c)) {
+					if (Character.isHighSurrogate(c) && position + 1 >= amount) {
+						break;
+					}
+					char low = chars[position + 1 < amount ? position + 1 : position];
+					if (!Character.isHighSurrogate(c) || !Character.isLowSurrogate(low)) {
+						return malformed(position, written, 1);
+					}
+					int codePoint = Character.toCodePoint(c, low);
+					bytes[written++] = (byte) (0xf0 | (codePoint >> 18));
+					bytes[written++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+					bytes[written++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+					bytes[written++] = (byte) (0x80 | (codePoint & 0x3f));
+					position += 2;
+				}
+				else {
+					bytes[written++] = (byte) (0xe0 | (c >> 12));
+					bytes[written++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+					bytes[written++] = (byte) (0x80 | (c & 0x3f));
+					position++;
+				}
+			}
+		}
+		else {
+			int max = encoding == Encoding.ASCII ? 0x7f : 0xff;
+			while (position < amount) {
+				char c = chars[position];
+				if (c > max) {
+					if (Character.isHighSurrogate(c) && position + 1 >= amount) {
+						break;
+					}
+					// like the default encoders, a valid surrogate pair is unmappable while a lone surrogate is malformed
+					if (Character.isHighSurrogate(c) && Character.isLowSurrogate(chars[position + 1])) {
+						if (position > 0) {
+							break;
+						}
+						throw new UnmappableCharacterException(2);
+					}
+					else if (Character.isSurrogate(c)) {
+						return malformed(position, written, 1);
+					}
+					if (position > 0) {
+						break;
+					}
+					throw new UnmappableCharacterException(1);
+				}
+				bytes[written++] = (byte) c;
+				position++;
+			}
 		}
-		long amountWritten = length - charBuffer.remaining();
-		source.skip(amountWritten);
-		return amountWritten;
+		output.produced(written - output.position() - output.remainingData());
+		return position;
+	}
+	
+	private int malformed(int position, int written, int length) throws MalformedInputException {
+		if (position == 0) {
+			throw new MalformedInputException(length);
+		}
+		output.produced(written - output.position() - output.remainingData());
+		return position;
+	}
+	
+	private int encodeGeneric(int amount) throws IOException {
+		charView.clear();
+		charView.limit(amount);
+		byteView.clear();
+		int start = (int) (output.position() + output.remainingData());
+		byteView.position(start);
+		CoderResult result = encoder.encode(charView, byteView, false);
+		if (result.isError() && charView.position() == 0) {
+			result.throwException();
+		}
+		output.produced(byteView.position() - start);
+		return charView.position();
 	}
 
 	@Override
 	public void flush() throws IOException {
-		if (!wasReading) {
-			wasReading = true;
-			byteBuffer.flip();
-		}
-		// the write cycle always ends on a compact
-		if (byteBuffer.remaining() > 0) {
-			int remaining = byteBuffer.remaining();
-			int flushed = (int) byteContainer.write(new StaticByteBuffer(byteBuffer.array(), byteBuffer.position(), byteBuffer.limit() - byteBuffer.position(), true));
-			byteBuffer.position(byteBuffer.position() + flushed);
-			byteContainer.flush();
-			if (flushed != remaining)
-				throw new IOException("Could only flush " + flushed + "/" + remaining + " bytes to the byte container " + byteContainer.getClass().getName());
+		long remaining = output.remainingData();
+		if (!push()) {
+			throw new IOException("Could only flush " + (remaining - output.remainingData()) + "/" + remaining + " bytes to the byte container " + byteContainer.getClass().getName());
 		}
-		else
-			byteContainer.flush();
+		byteContainer.flush();
 	}
-}
\ No newline at end of file
+}
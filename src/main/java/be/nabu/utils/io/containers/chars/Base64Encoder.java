@@ -0,0 +1,106 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.containers.chars;
+
+/**
+ * The incremental encoding shared by the base64 containers, bytes that do not form a full quantum of 3 are carried over to the next call
+ * Lines are only wrapped between quanta so the line length is rounded down to a multiple of 4, the separator is never added at the very end
+ */
+class Base64Encoder {
+
+	static final char [] STANDARD = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+	static final char [] URL_SAFE = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+	
+	private char [] alphabet;
+	private int lineLength;
+	private byte [] carry = new byte[2];
+	private int carried, column;
+	
+	Base64Encoder(boolean urlSafe, int lineLength) {
+		this.alphabet = urlSafe ? URL_SAFE : STANDARD;
+		this.lineLength = Math.max(0, lineLength) / 4 * 4;
+	}
+	
+	/**
+	 * The maximum amount of chars that encoding the given amount of bytes (and finishing) can produce
+	 */
+	int getMaxEncodedLength(int length) {
+		int chars = (carried + length + 2) / 3 * 4;
+		return lineLength == 0 ? chars : chars + (chars / lineLength + 1) * 2;
+	}
+	
+	/**
+	 * Encodes all the full quanta, returns the amount of chars written
+	 */
+	int encode(byte [] bytes, int offset, int length, char [] chars, int charOffset) {
+		int end = offset + length;
+		int position = charOffset;
+		// complete the carried quantum first
+		if (carried > 0) {
+			if (carried + length < 3) {
+				System.arraycopy(bytes, offset, carry, carried, length);
+				carried += length;
+				return 0;
+			}
+			int first = carry[0] & 0xff;
+			int second = carried == 2 ? carry[1] & 0xff : bytes[offset++] & 0xff;
+			position = quantum(first << 16 | second << 8 | (bytes[offset++] & 0xff), chars, position);
+			carried = 0;
+		}
+		while (end - offset >= 3) {
+			position = quantum((bytes[offset] & 0xff) << 16 | (bytes[offset + 1] & 0xff) << 8 | (bytes[offset + 2] & 0xff), chars, position);
+			offset += 3;
+		}
+		carried = end - offset;
+		if (carried > 0) {
+			System.arraycopy(bytes, offset, carry, 0, carried);
+		}
+		return position - charOffset;
+	}
+	
+	private int quantum(int bits, char [] chars, int position) {
+		if (lineLength > 0 && column >= lineLength) {
+			chars[position++] = '\r';
+			chars[position++] = '\n';
+			column = 0;
+		}
+		chars[position++] = alphabet[bits >>> 18];
+		chars[position++] = alphabet[(bits >>> 12) & 0x3f];
+		chars[position++] = alphabet[(bits >>> 6) & 0x3f];
+		chars[position++] = alphabet[bits & 0x3f];
+		column += 4;
+		return position;
+	}
+	
+	/**
+	 * Encodes the carried bytes with padding, returns the amount of chars written
+	 */
+	int finish(char [] chars, int charOffset) {
+		if (carried == 0) {
+			return 0;
+		}
+		int bits = (carry[0] & 0xff) << 16 | (carried == 2 ? (carry[1] & 0xff) << 8 : 0);
+		int written = quantum(bits, chars, charOffset) - charOffset;
+		chars[charOffset + written - 1] = '=';
+		if (carried == 1) {
+			chars[charOffset + written - 2] = '=';
+		}
+		carried = 0;
+		return written;
+	}
+}
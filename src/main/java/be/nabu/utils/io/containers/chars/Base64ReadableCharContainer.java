@@ -0,0 +1,85 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.containers.chars;
+
+import java.io.IOException;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.CharBuffer;
+import be.nabu.utils.io.api.ReadableContainer;
+import be.nabu.utils.io.buffers.bytes.StaticByteBuffer;
+
+/**
+ * Encodes the bytes of the parent as base64 while they are read, a block of bytes is read at once and only a partial quantum is kept in between
+ * The padding is added once the parent is done, use a line length of 76 for mime
+ */
+public class Base64ReadableCharContainer implements ReadableContainer<CharBuffer> {
+
+	private ReadableContainer<ByteBuffer> bytes;
+	private Base64Encoder encoder;
+	private byte [] byteBuffer = new byte[3072];
+	private StaticByteBuffer input = new StaticByteBuffer(byteBuffer, false);
+	private char [] charBuffer;
+	private int charPosition, charLimit;
+	private boolean closed = false;
+	
+	public Base64ReadableCharContainer(ReadableContainer<ByteBuffer> bytes) {
+		this(bytes, false, 0);
+	}
+	
+	public Base64ReadableCharContainer(ReadableContainer<ByteBuffer> bytes, boolean urlSafe, int lineLength) {
+		this.bytes = bytes;
+		this.encoder = new Base64Encoder(urlSafe, lineLength);
+		this.charBuffer = new char[encoder.getMaxEncodedLength(byteBuffer.length + 2)];
+	}
+	
+	@Override
+	public void close() throws IOException {
+		bytes.close();
+	}
+
+	@Override
+	public long read(CharBuffer target) throws IOException {
+		long totalRead = 0;
+		while (target.remainingSpace() > 0) {
+			if (charPosition == charLimit) {
+				if (closed)
+					break;
+				input.truncate();
+				long read = bytes.read(input);
+				if (read == 0)
+					break;
+				charPosition = 0;
+				if (read == -1) {
+					closed = true;
+					charLimit = encoder.finish(charBuffer, 0);
+				}
+				else {
+					charLimit = encoder.encode(byteBuffer, 0, (int) read, charBuffer, 0);
+				}
+				continue;
+			}
+			int written = target.write(charBuffer, charPosition, charLimit - charPosition);
+			if (written <= 0)
+				break;
+			charPosition += written;
+			totalRead += written;
+		}
+		return totalRead == 0 && closed && charPosition == charLimit ? -1 : totalRead;
+	}
+}
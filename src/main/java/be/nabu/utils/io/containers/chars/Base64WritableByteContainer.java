@@ -0,0 +1,110 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.containers.chars;
+
+import java.io.IOException;
+
+import be.nabu.utils.io.IOUtils;
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.CharBuffer;
+import be.nabu.utils.io.api.WritableContainer;
+
+/**
+ * Encodes the bytes that are written to it as base64 for the parent, the counterpart of the Base64ReadableCharContainer for push based pipelines
+ * A block of bytes is only taken from the source once the chars of the previous block are accepted by the parent
+ * The padding is added when the container is closed
+ */
+public class Base64WritableByteContainer implements WritableContainer<ByteBuffer> {
+
+	private WritableContainer<CharBuffer> chars;
+	private Base64Encoder encoder;
+	private byte [] byteBuffer = new byte[3072];
+	private char [] charBuffer;
+	private int charPosition, charLimit;
+	/**
+	 * Finished means the final quantum has been encoded, the container is only closed once it has also reached the parent
+	 */
+	private boolean finished, closed;
+	
+	public Base64WritableByteContainer(WritableContainer<CharBuffer> chars) {
+		this(chars, false, 0);
+	}
+	
+	public Base64WritableByteContainer(WritableContainer<CharBuffer> chars, boolean urlSafe, int lineLength) {
+		this.chars = chars;
+		this.encoder = new Base64Encoder(urlSafe, lineLength);
+		this.charBuffer = new char[encoder.getMaxEncodedLength(byteBuffer.length + 2)];
+	}
+	
+	@Override
+	public long write(ByteBuffer source) throws IOException {
+		if (finished)
+			return -1;
+		long totalWritten = 0;
+		while (push() && source.remainingData() > 0) {
+			int read = source.read(byteBuffer, 0, (int) Math.min(byteBuffer.length, source.remainingData()));
+			if (read <= 0)
+				break;
+			charLimit = encoder.encode(byteBuffer, 0, read, charBuffer, 0);
+			totalWritten += read;
+		}
+		return totalWritten;
+	}
+	
+	/**
+	 * Pushes the pending chars to the parent, returns true if there are none left
+	 */
+	private boolean push() throws IOException {
+		while (charPosition < charLimit) {
+			long written = chars instanceof CharBuffer
+				? ((CharBuffer) chars).write(charBuffer, charPosition, charLimit - charPosition)
+				: chars.write(IOUtils.wrap(charBuffer, charPosition, charLimit - charPosition, true));
+			if (written == -1)
+				throw new IOException("The target writable is closed");
+			else if (written == 0)
+				return false;
+			charPosition += written;
+		}
+		charPosition = 0;
+		charLimit = 0;
+		return true;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		int remaining = charLimit - charPosition;
+		if (!push())
+			throw new IOException("Could only flush " + (remaining - (charLimit - charPosition)) + "/" + remaining + " chars to the char container " + chars.getClass().getName());
+		chars.flush();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			if (!finished) {
+				// the buffer always has room for the final quantum behind the pending chars
+				charLimit += encoder.finish(charBuffer, charLimit);
+				finished = true;
+			}
+			// if the parent does not accept everything, the close can be retried
+			flush();
+			chars.close();
+			closed = true;
+		}
+	}
+}
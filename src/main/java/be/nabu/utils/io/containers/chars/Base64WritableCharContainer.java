@@ -0,0 +1,169 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.containers.chars;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.CharBuffer;
+import be.nabu.utils.io.api.WritableContainer;
+import be.nabu.utils.io.buffers.bytes.StaticByteBuffer;
+import be.nabu.utils.io.buffers.chars.StaticCharBuffer;
+
+/**
+ * Decodes the base64 chars that are written to it into bytes for the parent
+ * Both the standard and the url safe alphabet are accepted, as is whitespace (for wrapped lines) and missing padding
+ * A block of chars is only taken from the source once the bytes of the previous block are accepted by the parent, a partial quantum is kept in between
+ */
+public class Base64WritableCharContainer implements WritableContainer<CharBuffer> {
+
+	/**
+	 * The value of every base64 char, -1 for the other chars
+	 */
+	private static final byte [] DECODE = new byte[128];
+	
+	static {
+		Arrays.fill(DECODE, (byte) -1);
+		for (int i = 0; i < Base64Encoder.STANDARD.length; i++) {
+			DECODE[Base64Encoder.STANDARD[i]] = (byte) i;
+			DECODE[Base64Encoder.URL_SAFE[i]] = (byte) i;
+		}
+	}
+	
+	private WritableContainer<ByteBuffer> bytes;
+	private char [] charBuffer = new char[4096];
+	private StaticCharBuffer input = new StaticCharBuffer(charBuffer, false);
+	private byte [] byteBuffer = new byte[charBuffer.length / 4 * 3 + 3];
+	private StaticByteBuffer output = new StaticByteBuffer(byteBuffer, false);
+	
+	/**
+	 * The sextets of the current quantum
+	 */
+	private int bits, count;
+	private boolean padded;
+	/**
+	 * Finished means the final quantum has been decoded, the container is only closed once it has also reached the parent
+	 */
+	private boolean finished, closed;
+	
+	public Base64WritableCharContainer(WritableContainer<ByteBuffer> bytes) {
+		this.bytes = bytes;
+	}
+	
+	@Override
+	public long write(CharBuffer source) throws IOException {
+		if (finished)
+			return -1;
+		long totalWritten = 0;
+		while (push() && source.remainingData() > 0) {
+			input.truncate();
+			int read = (int) source.read(input);
+			if (read <= 0)
+				break;
+			decode(read);
+			totalWritten += read;
+		}
+		return totalWritten;
+	}
+	
+	private void decode(int amount) throws IOException {
+		int written = 0;
+		for (int i = 0; i < amount; i++) {
+			char c = charBuffer[i];
+			int value = c < 128 ? DECODE[c] : -1;
+			if (value >= 0) {
+				if (padded)
+					throw new IOException("Unexpected base64 data after the padding");
+				bits = bits << 6 | value;
+				if (++count == 4) {
+					byteBuffer[written++] = (byte) (bits >> 16);
+					byteBuffer[written++] = (byte) (bits >> 8);
+					byteBuffer[written++] = (byte) bits;
+					bits = 0;
+					count = 0;
+				}
+			}
+			else if (c == '=') {
+				if (!padded) {
+					written += end(written);
+					padded = true;
+				}
+			}
+			else if (c != '\r' && c != '\n' && c != ' ' && c != '\t')
+				throw new IOException("Invalid base64 character: " + c);
+		}
+		output.produced(written);
+	}
+	
+	/**
+	 * Writes the bytes of a final partial quantum
+	 */
+	private int end(int offset) throws IOException {
+		int written = 0;
+		if (count == 1)
+			throw new IOException("Incomplete base64 quantum");
+		else if (count == 2)
+			byteBuffer[offset + written++] = (byte) (bits >> 4);
+		else if (count == 3) {
+			byteBuffer[offset + written++] = (byte) (bits >> 10);
+			byteBuffer[offset + written++] = (byte) (bits >> 2);
+		}
+		bits = 0;
+		count = 0;
+		return written;
+	}
+	
+	/**
+	 * Pushes the pending bytes to the parent, returns true if there are none left
+	 */
+	private boolean push() throws IOException {
+		while (output.remainingData() > 0) {
+			long written = bytes.write(output);
+			if (written == -1)
+				throw new IOException("The target writable is closed");
+			else if (written == 0)
+				return false;
+		}
+		output.truncate();
+		return true;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		long remaining = output.remainingData();
+		if (!push())
+			throw new IOException("Could only flush " + (remaining - output.remainingData()) + "/" + remaining + " bytes to the byte container " + bytes.getClass().getName());
+		bytes.flush();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			if (!finished) {
+				// unpadded input, the buffer always has room for it behind the pending bytes
+				output.produced(end((int) (output.position() + output.remainingData())));
+				finished = true;
+			}
+			// if the parent does not accept everything, the close can be retried
+			flush();
+			bytes.close();
+			closed = true;
+		}
+	}
+}
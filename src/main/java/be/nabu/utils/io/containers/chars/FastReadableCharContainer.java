@@ -0,0 +1,284 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.containers.chars;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.MalformedInputException;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.CharBuffer;
+import be.nabu.utils.io.api.ReadableContainer;
+import be.nabu.utils.io.buffers.bytes.StaticByteBuffer;
+
+/**
+ * Decodes UTF-8, US-ASCII and ISO-8859-1 without a CharsetDecoder and without allocating anything once it is created
+ * Runs of ascii are copied in a tight loop, only the other bytes go through the full UTF-8 state machine
+ * A multibyte sequence that is split over two reads is moved to the front of the byte array before the next read so it can be completed
+ * 
+ * Invalid input is reported the same way as the default decoder of the charset does: with a MalformedInputException
+ */
+public class FastReadableCharContainer implements ReadableContainer<CharBuffer> {
+
+	private enum Encoding {
+		ASCII, LATIN1, UTF8
+	}
+	
+	private ReadableContainer<ByteBuffer> byteContainer;
+	private Encoding encoding;
+	
+	/**
+	 * The undecoded bytes are in [position, limit) of the byte array, the input wraps the array so the parent can read straight into it
+	 */
+	private byte [] bytes = new byte[2048];
+	private StaticByteBuffer input = new StaticByteBuffer(bytes, false);
+	private int position, limit;
+	
+	/**
+	 * The decoded chars that have not been written to a target yet are in [charPosition, charLimit)
+	 */
+	private char [] chars = new char[2048];
+	private int charPosition, charLimit;
+	
+	private boolean closed;
+	
+	public FastReadableCharContainer(ReadableContainer<ByteBuffer> byteContainer, Charset charset) {
+		this.byteContainer = byteContainer;
+		this.encoding = getEncoding(charset);
+		if (encoding == null) {
+			throw new IllegalArgumentException("Unsupported charset: " + charset);
+		}
+	}
+	
+	public static boolean isSupported(Charset charset) {
+		return getEncoding(charset) != null;
+	}
+	
+	private static Encoding getEncoding(Charset charset) {
+		String name = charset.name();
+		if (name.equals("UTF-8")) {
+			return Encoding.UTF8;
+		}
+		else if (name.equals("US-ASCII")) {
+			return Encoding.ASCII;
+		}
+		else if (name.equals("ISO-8859-1")) {
+			return Encoding.LATIN1;
+		}
+		return null;
+	}
+	
+	@Override
+	public long read(CharBuffer target) throws IOException {
+		long total = 0;
+		while (target.remainingSpace() > 0) {
+			if (charPosition == charLimit) {
+				if (closed) {
+					return total == 0 ? -1 : total;
+				}
+				charPosition = 0;
+				charLimit = 0;
+				try {
+					charLimit = decode();
+				}
+				catch (MalformedInputException e) {
+					// the position is not moved so the next read reports it, first return the valid chars
+					if (total > 0) {
+						return total;
+					}
+					throw e;
+				}
+				if (charLimit == 0) {
+					long read = fill();
+					if (read == -1) {
+						if (limit > position) {
+							throw new IOException("The data stream is not complete, there are " + (limit - position) + " remaining bytes");
+						}
+						closed = true;
+						return total == 0 ? -1 : total;
+					}
+					else if (read == 0) {
+						return total;
+					}
+					continue;
+				}
+			}
+			int written = target.write(chars, charPosition, charLimit - charPosition);
+			if (written <= 0) {
+				break;
+			}
+			charPosition += written;
+			total += written;
+		}
+		return total;
+	}
+	
+	/**
+	 * Moves the undecoded bytes (at most an incomplete sequence) to the front and lets the parent fill up the rest
+	 */
+	private long fill() throws IOException {
+		int carried = limit - position;
+		if (carried > 0 && position > 0) {
+			System.arraycopy(bytes, position, bytes, 0, carried);
+		}
+		position = 0;
+		limit = carried;
+		input.truncate();
+		input.write(bytes, 0, carried);
+		long read = byteContainer.read(input);
+		if (read > 0) {
+			limit += read;
+		}
+		return read;
+	}
+	
+	private int decode() throws IOException {
+		switch (encoding) {
+			case LATIN1:
+				return decodeLatin1();
+			case ASCII:
+				return decodeAscii();
+			default:
+				return decodeUtf8();
+		}
+	}
+	
+	private int decodeLatin1() {
+		int amount = Math.min(limit - position, chars.length);
+		for (int i = 0; i < amount; i++) {
+			chars[i] = (char) (bytes[position + i] & 0xff);
+		}
+		position += amount;
+		return amount;
+	}
+	
+	private int decodeAscii() throws MalformedInputException {
+		int amount = Math.min(limit - position, chars.length);
+		for (int i = 0; i < amount; i++) {
+			byte b = bytes[position];
+			if (b < 0) {
+				if (i > 0) {
+					return i;
+				}
+				throw new MalformedInputException(1);
+			}
+			chars[i] = (char) b;
+			position++;
+		}
+		return amount;
+	}
+	
+	/**
+	 * Decodes as much as possible, it stops at an incomplete sequence at the end of the input and when the chars are full
+	 * If a malformed sequence is found after some chars were already decoded, those are returned first so the error is reported at the right position
+	 */
+	private int decodeUtf8() throws MalformedInputException {
+		int decoded = 0;
+		while (position < limit && decoded < chars.length) {
+			// the ascii run
+			int end = Math.min(limit, position + chars.length - decoded);
+			while (position < end && bytes[position] >= 0) {
+				chars[decoded++] = (char) bytes[position++];
+			}
+			if (position >= end) {
+				break;
+			}
+			int b1 = bytes[position] & 0xff;
+			int available = limit - position;
+			if (b1 >= 0xc2 && b1 <= 0xdf) {
+				if (available < 2) {
+					break;
+				}
+				int b2 = bytes[position + 1];
+				if ((b2 & 0xc0) != 0x80) {
+					return malformed(decoded, 1);
+				}
+				chars[decoded++] = (char) (((b1 & 0x1f) << 6) | (b2 & 0x3f));
+				position += 2;
+			}
+			else if (b1 >= 0xe0 && b1 <= 0xef) {
+				if (available < 2) {
+					break;
+				}
+				int b2 = bytes[position + 1] & 0xff;
+				// overlong encodings and surrogates are not allowed
+				if ((b2 & 0xc0) != 0x80 || (b1 == 0xe0 && b2 < 0xa0) || (b1 == 0xed && b2 > 0x9f)) {
+					return malformed(decoded, 1);
+				}
+				if (available < 3) {
+					break;
+				}
+				int b3 = bytes[position + 2];
+				if ((b3 & 0xc0) != 0x80) {
+					return malformed(decoded, 2);
+				}
+				chars[decoded++] = (char) (((b1 & 0x0f) << 12) | ((b2 & 0x3f) << 6) | (b3 & 0x3f));
+				position += 3;
+			}
+			else if (b1 >= 0xf0 && b1 <= 0xf4) {
+				// a supplementary character needs two chars
+				if (decoded + 1 >= chars.length) {
+					break;
+				}
+				if (available < 2) {
+					break;
+				}
+				int b2 = bytes[position + 1] & 0xff;
+				// overlong encodings and code points beyond U+10FFFF are not allowed
+				if ((b2 & 0xc0) != 0x80 || (b1 == 0xf0 && b2 < 0x90) || (b1 == 0xf4 && b2 > 0x8f)) {
+					return malformed(decoded, 1);
+				}
+				if (available < 3) {
+					break;
+				}
+				int b3 = bytes[position + 2];
+				if ((b3 & 0xc0) != 0x80) {
+					return malformed(decoded, 2);
+				}
+				if (available < 4) {
+					break;
+				}
+				int b4 = bytes[position + 3];
+				if ((b4 & 0xc0) != 0x80) {
+					return malformed(decoded, 3);
+				}
+				int codePoint = ((b1 & 0x07) << 18) | ((b2 & 0x3f) << 12) | ((b3 & 0x3f) << 6) | (b4 & 0x3f);
+				chars[decoded++] = Character.highSurrogate(codePoint);
+				chars[decoded++] = Character.lowSurrogate(codePoint);
+				position += 4;
+			}
+			else {
+				return malformed(decoded, 1);
+			}
+		}
+		return decoded;
+	}
+	
+	private int malformed(int decoded, int length) throws MalformedInputException {
+		if (decoded > 0) {
+			return decoded;
+		}
+		throw new MalformedInputException(length);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		byteContainer.close();
+	}
+
+}
@@ -19,16 +19,35 @@ package be.nabu.utils.io.containers.chars;
 
 import java.io.IOException;
 
-import be.nabu.utils.io.IOUtils;
 import be.nabu.utils.io.api.ByteBuffer;
 import be.nabu.utils.io.api.CharBuffer;
 import be.nabu.utils.io.api.ReadableContainer;
+import be.nabu.utils.io.buffers.bytes.StaticByteBuffer;
 
+/**
+ * Encodes the bytes of the parent as lowercase hex, a block of bytes is read at once and converted through a lookup table
+ * If the target can not take all the chars of a block, the rest is kept for the next read
+ */
 public class HexReadableCharContainer implements ReadableContainer<CharBuffer> {
 
+	/**
+	 * The two hex chars for every byte value
+	 */
+	private static final char [] ENCODE = new char[512];
+	
+	static {
+		char [] digits = "0123456789abcdef".toCharArray();
+		for (int i = 0; i < 256; i++) {
+			ENCODE[i * 2] = digits[i >>> 4];
+			ENCODE[i * 2 + 1] = digits[i & 0xf];
+		}
+	}
+	
 	private ReadableContainer<ByteBuffer> bytes;
-	private ByteBuffer buffer = IOUtils.newByteBuffer();
-	private byte[] singleByte = new byte[1];
+	private byte [] byteBuffer = new byte[4096];
+	private StaticByteBuffer input = new StaticByteBuffer(byteBuffer, false);
+	private char [] charBuffer = new char[byteBuffer.length * 2];
+	private int charPosition, charLimit;
 	private boolean closed = false;
 	
 	public HexReadableCharContainer(ReadableContainer<ByteBuffer> bytes) {
@@ -45,25 +64,34 @@ public class HexReadableCharContainer implements ReadableContainer<CharBuffer> {
 	public long read(CharBuffer target) throws IOException {
 		long totalRead = 0;
 		while (target.remainingSpace() > 0) {
-			if (buffer.remainingData() == 0) {
-				long read = bytes.read(buffer);
+			if (charPosition == charLimit) {
+				input.truncate();
+				long read = bytes.read(input);
 				if (read == 0)
 					break;
 				else if (read == -1) {
 					closed = true;
 					break;
 				}
+				encode((int) read);
 			}
-			if (buffer.remainingData() > 0) {
-				if (buffer.read(singleByte) != 1)
-					throw new IOException("Could not read from temporary buffer");
-				String formatted = String.format("%02x", singleByte[0] & 0xff);
-				if (target.write(formatted.toCharArray()) != formatted.length())
-					throw new IOException("Could not write to target buffer");
-				totalRead += formatted.length();
-			}
+			int written = target.write(charBuffer, charPosition, charLimit - charPosition);
+			if (written <= 0)
+				break;
+			charPosition += written;
+			totalRead += written;
+		}
+		return totalRead == 0 && closed && charPosition == charLimit ? -1 : totalRead;
+	}
+	
+	private void encode(int amount) {
+		for (int i = 0; i < amount; i++) {
+			int index = (byteBuffer[i] & 0xff) << 1;
+			charBuffer[i << 1] = ENCODE[index];
+			charBuffer[(i << 1) + 1] = ENCODE[index + 1];
 		}
-		return totalRead == 0 && closed ? -1 : totalRead;
+		charPosition = 0;
+		charLimit = amount * 2;
 	}
 	
 }
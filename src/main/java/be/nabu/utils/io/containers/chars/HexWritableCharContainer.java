@@ -0,0 +1,100 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.containers.chars;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import be.nabu.utils.io.IOUtils;
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.CharBuffer;
+import be.nabu.utils.io.api.WritableContainer;
+import be.nabu.utils.io.buffers.chars.StaticCharBuffer;
+
+/**
+ * Decodes hex chars (upper or lowercase) that are written to it into bytes for the parent, the counterpart of the HexReadableCharContainer
+ * Like the straight containers this does not buffer: a block of chars is peeked, decoded through a lookup table and only the chars of the bytes the parent accepted are skipped
+ * An odd trailing char stays in the source until the next char arrives
+ */
+public class HexWritableCharContainer implements WritableContainer<CharBuffer> {
+
+	/**
+	 * The value of every hex char, -1 for the other chars
+	 */
+	private static final byte [] DECODE = new byte[128];
+	
+	static {
+		Arrays.fill(DECODE, (byte) -1);
+		for (int i = 0; i < 10; i++) {
+			DECODE['0' + i] = (byte) i;
+		}
+		for (int i = 0; i < 6; i++) {
+			DECODE['a' + i] = (byte) (10 + i);
+			DECODE['A' + i] = (byte) (10 + i);
+		}
+	}
+	
+	private WritableContainer<ByteBuffer> bytes;
+	private char [] charBuffer = new char[8192];
+	private StaticCharBuffer peeked = new StaticCharBuffer(charBuffer, false);
+	private byte [] byteBuffer = new byte[charBuffer.length / 2];
+	
+	public HexWritableCharContainer(WritableContainer<ByteBuffer> bytes) {
+		this.bytes = bytes;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		bytes.close();
+	}
+
+	@Override
+	public long write(CharBuffer source) throws IOException {
+		long totalWritten = 0;
+		while (source.remainingData() > 1) {
+			peeked.truncate();
+			int amount = (int) source.peek(peeked) / 2;
+			if (amount <= 0)
+				break;
+			decode(amount);
+			long written = bytes instanceof ByteBuffer ? ((ByteBuffer) bytes).write(byteBuffer, 0, amount) : bytes.write(IOUtils.wrap(byteBuffer, 0, amount, true));
+			if (written == -1)
+				return totalWritten == 0 ? -1 : totalWritten;
+			else if (written == 0)
+				break;
+			source.skip(written * 2);
+			totalWritten += written * 2;
+		}
+		return totalWritten;
+	}
+	
+	private void decode(int amount) throws IOException {
+		for (int i = 0; i < amount; i++) {
+			char high = charBuffer[i << 1], low = charBuffer[(i << 1) + 1];
+			int value = high < 128 && low < 128 ? (DECODE[high] << 4) | DECODE[low] : -1;
+			if (value < 0)
+				throw new IOException("Invalid hex characters: " + high + low);
+			byteBuffer[i] = (byte) value;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		bytes.flush();
+	}
+}
@@ -19,15 +19,16 @@ package be.nabu.utils.io.containers.chars;
 
 import java.io.IOException;
 
-import be.nabu.utils.io.IOUtils;
 import be.nabu.utils.io.api.ByteBuffer;
 import be.nabu.utils.io.api.CharBuffer;
 import be.nabu.utils.io.api.ReadableContainer;
-import be.nabu.utils.io.buffers.bytes.ByteBufferFactory;
+import be.nabu.utils.io.buffers.bytes.StaticByteBuffer;
 
 /**
  * Performs a 1-1 mapping from bytes to chars where the exact byte value is translated to a char
  * This is not the same as code page 437 but instead conforms to http://www.unicode.org/charts/PDF/U0080.pdf
+ * 
+ * The widening is done in bulk in a plain counted loop which the jit turns into vector instructions
  */
 public class ReadableStraightByteToCharContainer implements ReadableContainer<CharBuffer> {
 
@@ -37,6 +38,11 @@ public class ReadableStraightByteToCharContainer implements ReadableContainer<Ch
 	private byte [] byteBuffer = new byte[8096];
 	private char [] charBuffer = new char[8096];
 	
+	/**
+	 * Reused for every read that can take a full array, the parent can read straight into it if it supports nio views
+	 */
+	private StaticByteBuffer input = new StaticByteBuffer(byteBuffer, false);
+	
 	public ReadableStraightByteToCharContainer(ReadableContainer<ByteBuffer> bytes) {
 		this.bytes = bytes;
 	}
@@ -48,16 +54,24 @@ public class ReadableStraightByteToCharContainer implements ReadableContainer<Ch
 
 	@Override
 	public long read(CharBuffer target) throws IOException {
-		long read = bytes.read(ByteBufferFactory.getInstance().limit(IOUtils.wrap(byteBuffer, false), null, Math.min(byteBuffer.length, target.remainingSpace())));
+		int amount = (int) Math.min(byteBuffer.length, target.remainingSpace());
+		// never read more bytes than we can hand out as chars, the remainder of the parent might be read by someone else
+		StaticByteBuffer input = amount == byteBuffer.length ? this.input : new StaticByteBuffer(byteBuffer, 0, amount, false);
+		input.truncate();
+		long read = amount == 0 ? 0 : bytes.read(input);
 		if (read < 0) {
 			closed = true;
 		}
-		else {
-			for (int i = 0; i < read; i++) {
-				charBuffer[i] = (char) (byteBuffer[i] & 0xff);
-			}
+		else if (read > 0) {
+			widen(byteBuffer, 0, charBuffer, (int) read);
 			target.write(charBuffer, 0, (int) read);
 		}
 		return read <= 0 && closed ? -1 : read;
 	}
+	
+	static void widen(byte [] bytes, int offset, char [] chars, int length) {
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) (bytes[offset + i] & 0xff);
+		}
+	}
 }
@@ -22,19 +22,23 @@ import java.io.IOException;
 import be.nabu.utils.io.IOUtils;
 import be.nabu.utils.io.api.ByteBuffer;
 import be.nabu.utils.io.api.CharBuffer;
+import be.nabu.utils.io.api.NioBackedBuffer;
 import be.nabu.utils.io.api.WritableContainer;
+import be.nabu.utils.io.buffers.bytes.StaticByteBuffer;
 
 /**
  * Performs a 1-1 mapping from bytes to chars where the exact byte value is translated to a char
  * This is not the same as code page 437 but instead conforms to http://www.unicode.org/charts/PDF/U0080.pdf
  * 
  * Note that this does not buffer the content, it instead uses peek() + skip() to ensure the target buffer always has the correct state
+ * If the source exposes its data as heap views, the bytes are widened straight from its backing array and only what was written is consumed
  */
 public class WritableStraightByteToCharContainer implements WritableContainer<ByteBuffer> {
 
-
-	private byte [] singleByte = new byte[1];
-	private char [] singleChar = new char[1];
+	private byte [] byteBuffer = new byte[8096];
+	private char [] charBuffer = new char[8096];
+	private StaticByteBuffer peeked = new StaticByteBuffer(byteBuffer, false);
+	private java.nio.ByteBuffer [] views = new java.nio.ByteBuffer[1];
 	private WritableContainer<CharBuffer> chars;
 	
 	public WritableStraightByteToCharContainer(WritableContainer<CharBuffer> chars) {
@@ -46,27 +50,50 @@ public class WritableStraightByteToCharContainer implements WritableContainer<By
 		chars.close();
 	}
 
+	@SuppressWarnings("unchecked")
 	@Override
-	public long write(ByteBuffer target) throws IOException {
+	public long write(ByteBuffer source) throws IOException {
 		long totalwritten = 0;
-		while (target.remainingData() > 0) {
-			target.peek(IOUtils.wrap(singleByte, false));
-			singleChar[0] = (char) (singleByte[0] & 0xff);
-			long written = chars.write(IOUtils.wrap(singleChar, true));
+		while (source.remainingData() > 0) {
+			long written;
+			if (source instanceof NioBackedBuffer && ((NioBackedBuffer<java.nio.ByteBuffer>) source).getDataViews(views, 0) > 0 && views[0].hasArray()) {
+				java.nio.ByteBuffer view = views[0];
+				views[0] = null;
+				int amount = Math.min(view.remaining(), charBuffer.length);
+				ReadableStraightByteToCharContainer.widen(view.array(), view.arrayOffset() + view.position(), charBuffer, amount);
+				written = write(amount);
+				if (written > 0) {
+					((NioBackedBuffer<java.nio.ByteBuffer>) source).consumed(written);
+				}
+			}
+			else {
+				views[0] = null;
+				peeked.truncate();
+				int amount = (int) source.peek(peeked);
+				if (amount <= 0) {
+					break;
+				}
+				ReadableStraightByteToCharContainer.widen(byteBuffer, 0, charBuffer, amount);
+				written = write(amount);
+				if (written > 0) {
+					source.skip(written);
+				}
+			}
 			if (written == -1) {
 				return totalwritten == 0 ? -1 : totalwritten;
 			}
 			else if (written == 0) {
 				break;
 			}
-			else {
-				target.skip(1);
-				totalwritten++;
-			}
+			totalwritten += written;
 		}
 		return totalwritten;
 	}
 
+	private long write(int amount) throws IOException {
+		return chars instanceof CharBuffer ? ((CharBuffer) chars).write(charBuffer, 0, amount) : chars.write(IOUtils.wrap(charBuffer, 0, amount, true));
+	}
+	
 	@Override
 	public void flush() throws IOException {
 		// do nothing
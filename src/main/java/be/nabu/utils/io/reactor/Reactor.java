@@ -0,0 +1,90 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.reactor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import be.nabu.utils.io.containers.bytes.ByteChannelContainer;
+
+/**
+ * Drives the eventful container api from the readiness of the registered channels
+ * Every thread runs its own selector, containers are spread over them round robin and stay on the same thread for their entire lifetime
+ */
+public class Reactor implements Closeable {
+
+	private static volatile Reactor instance;
+	
+	public static Reactor getInstance() {
+		if (instance == null) {
+			synchronized(Reactor.class) {
+				if (instance == null) {
+					try {
+						instance = new Reactor(Integer.parseInt(System.getProperty("io.reactor.threads", "" + Runtime.getRuntime().availableProcessors())));
+					}
+					catch (IOException e) {
+						throw new RuntimeException("Could not start the reactor", e);
+					}
+				}
+			}
+		}
+		return instance;
+	}
+	
+	private SelectorLoop [] loops;
+	private AtomicInteger next = new AtomicInteger();
+	
+	public Reactor(int threads) throws IOException {
+		loops = new SelectorLoop[Math.max(1, threads)];
+		try {
+			for (int i = 0; i < loops.length; i++) {
+				loops[i] = new SelectorLoop("reactor-" + i);
+			}
+		}
+		catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * The channel is switched to non-blocking mode, from then on the container should only be accessed through the returned container
+	 */
+	public <T extends SelectableChannel & ByteChannel> SelectableContainer<T> register(ByteChannelContainer<T> container) throws IOException {
+		container.getChannel().configureBlocking(false);
+		SelectableContainer<T> selectable = new SelectableContainer<T>(container, loops[(next.getAndIncrement() & Integer.MAX_VALUE) % loops.length]);
+		selectable.register();
+		return selectable;
+	}
+	
+	public int getThreads() {
+		return loops.length;
+	}
+
+	@Override
+	public void close() {
+		for (SelectorLoop loop : loops) {
+			if (loop != null) {
+				loop.close();
+			}
+		}
+	}
+}
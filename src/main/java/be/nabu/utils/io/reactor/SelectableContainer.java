@@ -0,0 +1,263 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.reactor;
+
+import java.io.IOException;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.Container;
+import be.nabu.utils.io.api.EventfulCloseableContainer;
+import be.nabu.utils.io.api.EventfulReadableContainer;
+import be.nabu.utils.io.api.EventfulSubscriber;
+import be.nabu.utils.io.api.EventfulSubscription;
+import be.nabu.utils.io.api.EventfulWritableContainer;
+import be.nabu.utils.io.containers.EventfulSubscriberList;
+import be.nabu.utils.io.containers.bytes.ByteChannelContainer;
+
+/**
+ * A channel container that is registered with a reactor
+ * The events are fired by the reactor thread and are one-shot: once data (or space) has been signalled, the next signal only comes after a read (or write) could not be completed
+ * In other words subscribers should read until they get 0 back (or write until not everything could be written), the same contract as edge triggered notifications
+ */
+public class SelectableContainer<T extends SelectableChannel & ByteChannel> implements Container<ByteBuffer>, EventfulReadableContainer<ByteBuffer>, EventfulWritableContainer<ByteBuffer>, EventfulCloseableContainer {
+
+	private ByteChannelContainer<T> parent;
+	private SelectorLoop loop;
+	private volatile SelectionKey key;
+	
+	/**
+	 * The interest ops we want, they are applied to the key by the reactor thread
+	 */
+	private AtomicInteger interest = new AtomicInteger();
+	private AtomicBoolean updating = new AtomicBoolean(), closed = new AtomicBoolean();
+	
+	private EventfulSubscriberList dataSubscribers = new EventfulSubscriberList(),
+		spaceSubscribers = new EventfulSubscriberList(),
+		closedSubscribers = new EventfulSubscriberList();
+	
+	private Runnable update = new Runnable() {
+		@Override
+		public void run() {
+			updating.set(false);
+			SelectionKey key = SelectableContainer.this.key;
+			if (key != null && key.isValid()) {
+				key.interestOps(interest.get());
+			}
+		}
+	};
+	
+	SelectableContainer(ByteChannelContainer<T> parent, SelectorLoop loop) {
+		this.parent = parent;
+		this.loop = loop;
+	}
+	
+	void register() {
+		T channel = parent.getChannel();
+		if (channel instanceof SocketChannel && ((SocketChannel) channel).isConnectionPending()) {
+			arm(SelectionKey.OP_CONNECT);
+		}
+		loop.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					key = parent.getChannel().register(loop.getSelector(), interest.get(), SelectableContainer.this);
+					// the interest might have changed while we were registering
+					key.interestOps(interest.get());
+				}
+				catch (IOException e) {
+					closed();
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Called by the reactor thread when the channel is ready
+	 */
+	void ready(SelectionKey key) {
+		if (!key.isValid()) {
+			closed();
+			return;
+		}
+		int ready = key.readyOps();
+		if ((ready & SelectionKey.OP_CONNECT) != 0) {
+			try {
+				if (!((SocketChannel) parent.getChannel()).finishConnect()) {
+					return;
+				}
+			}
+			catch (IOException e) {
+				closed();
+				return;
+			}
+			disarm(SelectionKey.OP_CONNECT);
+			// anyone waiting to read can now be signalled as well
+			if (!dataSubscribers.isEmpty()) {
+				arm(SelectionKey.OP_READ);
+			}
+			spaceSubscribers.fire();
+		}
+		if ((ready & SelectionKey.OP_READ) != 0) {
+			disarm(SelectionKey.OP_READ);
+			dataSubscribers.fire();
+		}
+		if ((ready & SelectionKey.OP_WRITE) != 0) {
+			disarm(SelectionKey.OP_WRITE);
+			spaceSubscribers.fire();
+		}
+	}
+	
+	/**
+	 * Called when the reactor thread stops
+	 */
+	void stopped() {
+		closed();
+	}
+	
+	private void arm(int op) {
+		int current;
+		do {
+			current = interest.get();
+			if ((current & op) != 0) {
+				return;
+			}
+		}
+		while (!interest.compareAndSet(current, current | op));
+		apply();
+	}
+	
+	private void disarm(int op) {
+		int current;
+		do {
+			current = interest.get();
+			if ((current & op) == 0) {
+				return;
+			}
+		}
+		while (!interest.compareAndSet(current, current & ~op));
+		apply();
+	}
+	
+	private void apply() {
+		if (loop.inLoop()) {
+			update.run();
+		}
+		// only queue an update if there is none pending, the pending one will pick up the latest interest
+		else if (key != null && updating.compareAndSet(false, true)) {
+			loop.execute(update);
+		}
+	}
+	
+	private void closed() {
+		if (closed.compareAndSet(false, true)) {
+			SelectionKey key = this.key;
+			if (key != null) {
+				key.cancel();
+			}
+			closedSubscribers.fire();
+			// readers and writers should find out that the container is closed
+			dataSubscribers.fire();
+			spaceSubscribers.fire();
+		}
+	}
+
+	/**
+	 * If the connection was finished by a read or write, the selector would keep reporting the socket as connectable
+	 */
+	private void checkConnected() {
+		if ((interest.get() & SelectionKey.OP_CONNECT) != 0 && ((SocketChannel) parent.getChannel()).isConnected()) {
+			disarm(SelectionKey.OP_CONNECT);
+		}
+	}
+	
+	@Override
+	public long read(ByteBuffer target) throws IOException {
+		checkConnected();
+		long read = parent.read(target);
+		if (read < 0) {
+			closed();
+		}
+		// we have caught up, wait for the next signal
+		else if (read == 0 && target.remainingSpace() > 0 && !dataSubscribers.isEmpty()) {
+			arm(SelectionKey.OP_READ);
+		}
+		return read;
+	}
+
+	@Override
+	public long write(ByteBuffer source) throws IOException {
+		checkConnected();
+		long written = parent.write(source);
+		if (written < 0) {
+			closed();
+		}
+		// the socket buffer is full, wait for it to drain
+		else if (source.remainingData() > 0 && !spaceSubscribers.isEmpty()) {
+			arm(SelectionKey.OP_WRITE);
+		}
+		return written;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		parent.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			parent.close();
+		}
+		finally {
+			closed();
+		}
+	}
+
+	@Override
+	public EventfulSubscription availableData(EventfulSubscriber subscriber) {
+		EventfulSubscription subscription = dataSubscribers.subscribe(subscriber);
+		if ((interest.get() & SelectionKey.OP_CONNECT) == 0) {
+			arm(SelectionKey.OP_READ);
+		}
+		return subscription;
+	}
+
+	@Override
+	public EventfulSubscription availableSpace(EventfulSubscriber subscriber) {
+		return spaceSubscribers.subscribe(subscriber);
+	}
+
+	@Override
+	public EventfulSubscription closed(EventfulSubscriber subscriber) {
+		return closedSubscribers.subscribe(subscriber);
+	}
+	
+	public ByteChannelContainer<T> getParent() {
+		return parent;
+	}
+	
+	public boolean isClosed() {
+		return closed.get();
+	}
+}
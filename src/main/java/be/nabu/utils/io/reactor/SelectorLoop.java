@@ -0,0 +1,114 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io.reactor;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A single thread that selects on a single selector
+ * Anything that touches the selector from another thread (registration, interest changes) is queued and run by the loop itself
+ */
+class SelectorLoop implements Runnable {
+
+	private Selector selector;
+	private Thread thread;
+	private Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+	private volatile boolean running = true;
+	
+	SelectorLoop(String name) throws IOException {
+		selector = Selector.open();
+		thread = new Thread(this, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	Selector getSelector() {
+		return selector;
+	}
+	
+	boolean inLoop() {
+		return Thread.currentThread() == thread;
+	}
+	
+	void execute(Runnable task) {
+		tasks.add(task);
+		if (!inLoop()) {
+			selector.wakeup();
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (running) {
+				Runnable task;
+				while ((task = tasks.poll()) != null) {
+					try {
+						task.run();
+					}
+					catch (Exception e) {
+						e.printStackTrace();
+					}
+				}
+				selector.select();
+				Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+				while (iterator.hasNext()) {
+					SelectionKey key = iterator.next();
+					iterator.remove();
+					SelectableContainer<?> container = (SelectableContainer<?>) key.attachment();
+					try {
+						container.ready(key);
+					}
+					catch (Exception e) {
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+		catch (ClosedSelectorException e) {
+			// stopped
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+		finally {
+			running = false;
+			// the containers should not wait for events that will never come
+			for (SelectionKey key : selector.keys()) {
+				((SelectableContainer<?>) key.attachment()).stopped();
+			}
+			try {
+				selector.close();
+			}
+			catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+	
+	void close() {
+		running = false;
+		selector.wakeup();
+	}
+}
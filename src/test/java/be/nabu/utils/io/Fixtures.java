@@ -0,0 +1,60 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io;
+
+import java.io.IOException;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.ReadableContainer;
+
+/**
+ * Sources that are shared by the tests
+ */
+public class Fixtures {
+	
+	/**
+	 * Returns the bytes one at a time so every boundary in the data is hit
+	 */
+	public static ReadableContainer<ByteBuffer> trickle(final byte [] bytes) {
+		return new ReadableContainer<ByteBuffer>() {
+			private int position;
+			@Override
+			public long read(ByteBuffer target) throws IOException {
+				if (position >= bytes.length) {
+					return -1;
+				}
+				int written = target.write(bytes, position, 1);
+				position += written;
+				return written;
+			}
+			@Override
+			public void close() throws IOException {
+				// do nothing
+			}
+		};
+	}
+	
+	/**
+	 * A buffer that holds a copy of the bytes instead of exposing them as a view
+	 */
+	public static ByteBuffer copy(byte [] bytes) throws IOException {
+		ByteBuffer buffer = IOUtils.newByteBuffer();
+		buffer.write(bytes);
+		return buffer;
+	}
+}
@@ -0,0 +1,143 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.EventfulSubscriber;
+import be.nabu.utils.io.api.EventfulSubscription;
+import be.nabu.utils.io.containers.bytes.AsynchronousSocketByteContainer;
+import junit.framework.TestCase;
+
+public class TestAsynchronousSocket extends TestCase {
+	
+	public void testTransfer() throws Exception {
+		AsynchronousServerSocketChannel server = AsynchronousServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		try {
+			AsynchronousSocketByteContainer client = new AsynchronousSocketByteContainer(server.getLocalAddress());
+			AsynchronousSocketChannel accepted = server.accept().get(10, TimeUnit.SECONDS);
+			AsynchronousSocketByteContainer receiver = new AsynchronousSocketByteContainer(null, accepted, 4096);
+			
+			// more than fits in the write queue
+			client.setWriteQueueSize(65536);
+			byte [] data = new byte[1024 * 1024 + 13];
+			new Random(1).nextBytes(data);
+			
+			final Semaphore space = new Semaphore(0), available = new Semaphore(0), closed = new Semaphore(0);
+			client.availableSpace(release(space));
+			receiver.availableData(release(available));
+			receiver.closed(release(closed));
+			
+			ByteBuffer source = IOUtils.wrap(data, true);
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			byte [] bytes = new byte[8192];
+			while (source.remainingData() > 0 || output.size() < data.length) {
+				if (source.remainingData() > 0 && client.write(source) == 0) {
+					space.tryAcquire(10, TimeUnit.MILLISECONDS);
+				}
+				int read = (int) receiver.read(IOUtils.wrap(bytes, false));
+				if (read > 0) {
+					output.write(bytes, 0, read);
+				}
+				else if (source.remainingData() == 0) {
+					assertTrue(available.tryAcquire(10, TimeUnit.SECONDS));
+				}
+			}
+			assertTrue(Arrays.equals(data, output.toByteArray()));
+			
+			// the other side closing is seen as the end of the stream
+			client.close();
+			assertTrue(readUntilClosed(receiver, available));
+			receiver.close();
+			assertTrue(closed.tryAcquire(10, TimeUnit.SECONDS));
+			assertEquals(-1, receiver.read(IOUtils.newByteBuffer()));
+		}
+		finally {
+			server.close();
+		}
+	}
+	
+	public void testSmallWritesAndEnd() throws Exception {
+		AsynchronousServerSocketChannel server = AsynchronousServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		try {
+			AsynchronousSocketByteContainer client = new AsynchronousSocketByteContainer(server.getLocalAddress());
+			AsynchronousSocketChannel accepted = server.accept().get(10, TimeUnit.SECONDS);
+			AsynchronousSocketByteContainer receiver = new AsynchronousSocketByteContainer(null, accepted, 4096);
+			final Semaphore available = new Semaphore(0);
+			receiver.availableData(release(available));
+			
+			// many small writes share chunks
+			byte [] data = new byte[3000];
+			new Random(2).nextBytes(data);
+			for (int i = 0; i < data.length; i += 10) {
+				assertEquals(10, client.write(IOUtils.wrap(data, i, 10, true)));
+			}
+			client.close();
+			
+			// give the receiver time to buffer the data and see the end of the stream behind it
+			Thread.sleep(500);
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			ByteBuffer full = IOUtils.newByteBuffer(0, false);
+			byte [] bytes = new byte[8192];
+			while (true) {
+				// a target without room does not see the end while there is still data
+				long read = receiver.read(full);
+				if (read == -1)
+					break;
+				assertEquals(0, read);
+				read = receiver.read(IOUtils.wrap(bytes, false));
+				if (read > 0)
+					output.write(bytes, 0, (int) read);
+				else if (read == 0)
+					assertTrue(available.tryAcquire(10, TimeUnit.SECONDS));
+			}
+			assertTrue(Arrays.equals(data, output.toByteArray()));
+			receiver.close();
+		}
+		finally {
+			server.close();
+		}
+	}
+	
+	private static boolean readUntilClosed(AsynchronousSocketByteContainer container, Semaphore available) throws IOException, InterruptedException {
+		while (container.read(IOUtils.newByteBuffer()) != -1) {
+			if (!available.tryAcquire(10, TimeUnit.SECONDS))
+				return false;
+		}
+		return true;
+	}
+	
+	private static EventfulSubscriber release(final Semaphore semaphore) {
+		return new EventfulSubscriber() {
+			@Override
+			public void on(EventfulSubscription subscription) {
+				semaphore.release();
+			}
+		};
+	}
+}
@@ -0,0 +1,128 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.CharBuffer;
+import be.nabu.utils.io.containers.chars.Base64ReadableCharContainer;
+import be.nabu.utils.io.containers.chars.Base64WritableByteContainer;
+import be.nabu.utils.io.containers.chars.Base64WritableCharContainer;
+import junit.framework.TestCase;
+
+public class TestBase64 extends TestCase {
+	
+	public void testEncode() throws IOException {
+		Random random = new Random(1);
+		// every possible partial quantum at the end, and more than a block
+		for (int length : new int[] { 0, 1, 2, 3, 10000, 10001, 10002 }) {
+			byte [] bytes = new byte[length];
+			random.nextBytes(bytes);
+			assertEquals(Base64.getEncoder().encodeToString(bytes), IOUtils.toString(new Base64ReadableCharContainer(IOUtils.wrap(bytes, true))));
+			assertEquals(Base64.getUrlEncoder().encodeToString(bytes), IOUtils.toString(new Base64ReadableCharContainer(IOUtils.wrap(bytes, true), true, 0)));
+			assertEquals(Base64.getMimeEncoder().encodeToString(bytes), IOUtils.toString(new Base64ReadableCharContainer(IOUtils.wrap(bytes, true), false, 76)));
+			
+			// written in odd sized pieces
+			CharBuffer target = IOUtils.newCharBuffer();
+			Base64WritableByteContainer writable = new Base64WritableByteContainer(target, false, 76);
+			for (int offset = 0; offset < length; offset += 1001) {
+				assertEquals(Math.min(1001, length - offset), writable.write(IOUtils.wrap(bytes, offset, Math.min(1001, length - offset), true)));
+			}
+			writable.close();
+			assertEquals(Base64.getMimeEncoder().encodeToString(bytes), IOUtils.toString(target));
+		}
+	}
+	
+	public void testDecode() throws IOException {
+		Random random = new Random(2);
+		for (int length : new int[] { 0, 1, 2, 3, 10000, 10001, 10002 }) {
+			byte [] bytes = new byte[length];
+			random.nextBytes(bytes);
+			assertTrue(Arrays.equals(bytes, decode(Base64.getEncoder().encodeToString(bytes))));
+			assertTrue(Arrays.equals(bytes, decode(Base64.getMimeEncoder().encodeToString(bytes))));
+			assertTrue(Arrays.equals(bytes, decode(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes))));
+		}
+	}
+	
+	public void testInvalid() throws IOException {
+		try {
+			decode("YW*j");
+			fail("Expected an invalid character");
+		}
+		catch (IOException e) {
+			// expected
+		}
+		try {
+			decode("YQ==YQ==");
+			fail("Expected data after padding");
+		}
+		catch (IOException e) {
+			// expected
+		}
+	}
+	
+	public void testRetriedClose() throws IOException {
+		// the parent can not take all the encoded chars at once
+		CharBuffer chars = IOUtils.newCharBuffer(10, false);
+		Base64WritableByteContainer encoder = new Base64WritableByteContainer(chars);
+		assertEquals(10, encoder.write(IOUtils.wrap("abcdefghij".getBytes(), true)));
+		StringBuilder encoded = new StringBuilder();
+		try {
+			encoder.close();
+			fail("The parent is full");
+		}
+		catch (IOException e) {
+			// expected
+		}
+		encoded.append(IOUtils.toString(chars));
+		chars.truncate();
+		encoder.close();
+		encoded.append(IOUtils.toString(chars));
+		assertEquals("YWJjZGVmZ2hpag==", encoded.toString());
+		
+		// unpadded input, the last bytes are only decoded on close
+		ByteBuffer bytes = IOUtils.newByteBuffer(2, false);
+		Base64WritableCharContainer decoder = new Base64WritableCharContainer(bytes);
+		assertEquals(6, decoder.write(IOUtils.wrap("YWJjZA")));
+		ByteBuffer decoded = IOUtils.newByteBuffer();
+		for (int i = 0; i < 10; i++) {
+			try {
+				decoder.close();
+				break;
+			}
+			catch (IOException e) {
+				decoded.write(bytes);
+				bytes.truncate();
+			}
+		}
+		decoded.write(bytes);
+		assertEquals("abcd", new String(IOUtils.toBytes(decoded)));
+	}
+	
+	private static byte [] decode(String encoded) throws IOException {
+		ByteBuffer target = IOUtils.newByteBuffer();
+		Base64WritableCharContainer writable = new Base64WritableCharContainer(target);
+		assertEquals(encoded.length(), writable.write(IOUtils.wrap(encoded)));
+		writable.close();
+		return IOUtils.toBytes(target);
+	}
+}
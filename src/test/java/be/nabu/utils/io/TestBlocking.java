@@ -0,0 +1,112 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.ReadableContainer;
+import be.nabu.utils.io.containers.BlockingStrategy;
+import be.nabu.utils.io.containers.EventfulContainerImpl;
+import junit.framework.TestCase;
+
+public class TestBlocking extends TestCase {
+	
+	public void testTimeout() throws IOException {
+		ReadableContainer<ByteBuffer> blocking = IOUtils.blockUntilRead(IOUtils.newByteBuffer(), 1, TimeUnit.SECONDS);
+		long started = System.nanoTime();
+		assertEquals(0, blocking.read(IOUtils.newByteBuffer()));
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+		assertTrue("Waited " + elapsed + "ms", elapsed >= 1000 && elapsed < 5000);
+	}
+	
+	public void testEventfulWakeup() throws Exception {
+		final EventfulContainerImpl<ByteBuffer> container = new EventfulContainerImpl<ByteBuffer>(IOUtils.newByteBuffer());
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(200);
+					container.write(IOUtils.wrap("test".getBytes(), true));
+				}
+				catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		writer.start();
+		ByteBuffer target = IOUtils.newByteBuffer();
+		assertEquals(4, IOUtils.blockUntilRead(container, 10, TimeUnit.SECONDS).read(target));
+		assertEquals("test", new String(IOUtils.toBytes(target)));
+		writer.join();
+	}
+	
+	public void testInputStreamWakeup() throws Exception {
+		final EventfulContainerImpl<ByteBuffer> container = new EventfulContainerImpl<ByteBuffer>(IOUtils.newByteBuffer());
+		InputStream input = IOUtils.toInputStream(container);
+		// a zero length read does not wait for data
+		assertEquals(0, input.read(new byte[0]));
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(200);
+					container.write(IOUtils.wrap("test".getBytes(), true));
+				}
+				catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		writer.start();
+		long started = System.nanoTime();
+		byte [] bytes = new byte[10];
+		// the stream parks until the data event wakes it up
+		assertEquals(4, input.read(bytes));
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+		assertEquals("test", new String(bytes, 0, 4));
+		assertTrue("Waited " + elapsed + "ms", elapsed < 5000);
+		writer.join();
+	}
+	
+	public void testEventBeforePark() throws IOException {
+		BlockingStrategy strategy = new BlockingStrategy(0, 0, 10, 10, TimeUnit.SECONDS);
+		BlockingStrategy.Waiter waiter = strategy.forData(new EventfulContainerImpl<ByteBuffer>(IOUtils.newByteBuffer()));
+		// the first wait subscribes
+		assertTrue(waiter.await(0));
+		// the event fires after the caller retried but before it parks
+		waiter.on(null);
+		long started = System.nanoTime();
+		assertTrue(waiter.await(0));
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+		assertTrue("Waited " + elapsed + "ms", elapsed < 1000);
+		waiter.done();
+	}
+	
+	public void testMinimalTimeout() {
+		try {
+			IOUtils.blockUntilRead(IOUtils.newByteBuffer(), 1, 100).read(IOUtils.newByteBuffer());
+			fail("The read should time out");
+		}
+		catch (IOException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+package be.nabu.utils.io;
+
+import java.io.IOException;
+
+import be.nabu.utils.io.buffers.bytes.ByteBufferPool;
+import be.nabu.utils.io.buffers.bytes.DynamicByteBuffer;
+import junit.framework.TestCase;
+
+public class TestBufferPool extends TestCase {
+	
+	public void testSizeClasses() {
+		ByteBufferPool pool = new ByteBufferPool(65536, 2, 2);
+		assertEquals(1024, pool.acquire(10).length);
+		assertEquals(16384, pool.acquire(10240).length);
+		// too big to pool
+		assertEquals(100000, pool.acquire(100000).length);
+		assertEquals(3, pool.getMisses());
+	}
+	
+	public void testRecycle() {
+		ByteBufferPool pool = new ByteBufferPool(65536, 1, 1);
+		byte [] first = pool.acquire(4096);
+		byte [] second = pool.acquire(4096);
+		byte [] third = pool.acquire(4096);
+		// one goes to the thread local cache, one to the shared list and one is dropped
+		pool.release(first);
+		pool.release(second);
+		pool.release(third);
+		assertEquals(1, pool.getDiscards());
+		assertSame(first, pool.acquire(4096));
+		assertSame(second, pool.acquire(4096));
+		assertEquals(1, pool.getLocalHits());
+		assertEquals(1, pool.getSharedHits());
+	}
+	
+	public void testDynamicBuffer() throws IOException {
+		ByteBufferPool pool = new ByteBufferPool(65536, 8, 8);
+		pool.setLeakDetection(true);
+		DynamicByteBuffer buffer = new DynamicByteBuffer(1024, pool);
+		byte [] data = new byte[5000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) i;
+		}
+		buffer.write(data);
+		assertEquals(5, pool.getOutstanding());
+		byte [] result = new byte[data.length];
+		assertEquals(3000, buffer.read(result, 0, 3000));
+		// the fully read fragments are released
+		assertEquals(3, pool.getOutstanding());
+		assertEquals(2000, buffer.read(result, 3000, 2000));
+		for (int i = 0; i < data.length; i++) {
+			assertEquals(data[i], result[i]);
+		}
+		buffer.close();
+		assertEquals(0, pool.getOutstanding());
+		
+		// the arrays are reused
+		DynamicByteBuffer other = new DynamicByteBuffer(1024, pool);
+		other.write(data);
+		assertEquals(5, pool.getMisses());
+		other.truncate();
+		assertEquals(0, pool.getOutstanding());
+	}
+	
+	public void testDuplicateIsNotRecycled() throws IOException {
+		ByteBufferPool pool = new ByteBufferPool(65536, 8, 8);
+		DynamicByteBuffer buffer = new DynamicByteBuffer(1024, pool);
+		buffer.write(new byte[3000]);
+		buffer.mark();
+		buffer.duplicate(true);
+		buffer.unmark();
+		buffer.read(new byte[3000]);
+		buffer.truncate();
+		assertEquals(0, pool.getReleases());
+	}
+}
@@ -0,0 +1,85 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+package be.nabu.utils.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.buffers.bytes.CyclicByteBuffer;
+import be.nabu.utils.io.buffers.bytes.DynamicByteBuffer;
+import be.nabu.utils.io.containers.bytes.ByteChannelContainer;
+import junit.framework.TestCase;
+
+public class TestChannelViews extends TestCase {
+	
+	public void testScatterGather() throws IOException {
+		byte [] data = new byte[50000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i % 251);
+		}
+		File file = File.createTempFile("views", ".bin");
+		try {
+			// small fragments so the data is spread over a lot of views
+			DynamicByteBuffer source = new DynamicByteBuffer(1024, null);
+			source.write(data);
+			ByteChannelContainer<FileChannel> output = new ByteChannelContainer<FileChannel>(FileChannel.open(file.toPath(), StandardOpenOption.WRITE));
+			assertEquals(data.length, output.write(source));
+			assertEquals(0, source.remainingData());
+			output.close();
+			assertEquals(data.length, file.length());
+			
+			ByteChannelContainer<FileChannel> input = new ByteChannelContainer<FileChannel>(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+			DynamicByteBuffer target = new DynamicByteBuffer(1024, null);
+			assertEquals(data.length, input.read(target));
+			assertEquals(-1, input.read(target));
+			input.close();
+			byte [] result = IOUtils.toBytes(target);
+			assertEquals(data.length, result.length);
+			for (int i = 0; i < data.length; i++) {
+				assertEquals(data[i], result[i]);
+			}
+		}
+		finally {
+			file.delete();
+		}
+	}
+	
+	public void testCyclicViews() throws IOException {
+		CyclicByteBuffer buffer = new CyclicByteBuffer(8);
+		buffer.write("abcdef".getBytes());
+		buffer.skip(4);
+		java.nio.ByteBuffer [] views = new java.nio.ByteBuffer[4];
+		// the space wraps around the end
+		assertEquals(2, buffer.getSpaceViews(views, 0));
+		assertEquals(2, views[0].remaining());
+		assertEquals(4, views[1].remaining());
+		views[0].put("gh".getBytes());
+		views[1].put("ij".getBytes());
+		buffer.produced(4);
+		assertEquals(6, buffer.remainingData());
+		// and so does the data
+		assertEquals(2, buffer.getDataViews(views, 0));
+		assertEquals(6, views[0].remaining() + views[1].remaining());
+		buffer.consumed(5);
+		ByteBuffer result = IOUtils.newByteBuffer();
+		result.write(buffer);
+		assertEquals("j", new String(IOUtils.toBytes(result)));
+	}
+}
@@ -0,0 +1,146 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.UnmappableCharacterException;
+import java.util.Arrays;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.CharBuffer;
+import be.nabu.utils.io.api.ReadableContainer;
+import be.nabu.utils.io.api.WritableContainer;
+import be.nabu.utils.io.containers.chars.FastReadableCharContainer;
+import junit.framework.TestCase;
+
+public class TestCharsets extends TestCase {
+	
+	private static final String TEXT = "plain ascii, spécial chäractèrs, 100€ and 😀 emoji";
+	
+	public void testUtf8() throws IOException {
+		assertDecoded(TEXT, "UTF-8");
+	}
+	
+	public void testLatin1() throws IOException {
+		assertDecoded("spécial chäractèrs ÿ", "ISO-8859-1");
+	}
+	
+	public void testAscii() throws IOException {
+		assertDecoded("plain ascii", "US-ASCII");
+	}
+	
+	private void assertDecoded(String text, String charsetName) throws IOException {
+		Charset charset = Charset.forName(charsetName);
+		byte [] bytes = text.getBytes(charset);
+		ReadableContainer<CharBuffer> readable = IOUtils.wrapReadable(IOUtils.wrap(bytes, true), charset);
+		assertTrue(readable instanceof FastReadableCharContainer);
+		assertEquals(text, IOUtils.toString(readable));
+		// a single byte per read splits every multibyte sequence and a single char per read splits the surrogate pair
+		readable = IOUtils.wrapReadable(Fixtures.trickle(bytes), charset);
+		CharBuffer target = IOUtils.newCharBuffer(1, false);
+		StringBuilder builder = new StringBuilder();
+		long read;
+		while ((read = readable.read(target)) >= 0) {
+			if (read > 0) {
+				builder.append(IOUtils.toString(target));
+				target.truncate();
+			}
+		}
+		assertEquals(text, builder.toString());
+	}
+	
+	public void testMalformed() throws IOException {
+		assertMalformed(new byte[] { 'a', (byte) 0xc3, '(' });
+		// an encoded surrogate
+		assertMalformed(new byte[] { 'a', (byte) 0xed, (byte) 0xa0, (byte) 0x80 });
+		// an overlong encoding of '/'
+		assertMalformed(new byte[] { 'a', (byte) 0xc0, (byte) 0xaf });
+		// beyond U+10FFFF
+		assertMalformed(new byte[] { 'a', (byte) 0xf4, (byte) 0x90, (byte) 0x80, (byte) 0x80 });
+	}
+	
+	private void assertMalformed(byte [] bytes) throws IOException {
+		ReadableContainer<CharBuffer> readable = IOUtils.wrapReadable(IOUtils.wrap(bytes, true), Charset.forName("UTF-8"));
+		CharBuffer target = IOUtils.newCharBuffer(10, false);
+		// the valid chars are returned before the error
+		assertEquals(1, readable.read(target));
+		try {
+			readable.read(target);
+			fail("Expected a malformed input exception");
+		}
+		catch (MalformedInputException e) {
+			// expected
+		}
+	}
+	
+	public void testIncomplete() throws IOException {
+		ReadableContainer<CharBuffer> readable = IOUtils.wrapReadable(IOUtils.wrap(new byte[] { 'a', (byte) 0xe2, (byte) 0x82 }, true), Charset.forName("UTF-8"));
+		try {
+			IOUtils.toString(readable);
+			fail("Expected an incomplete stream");
+		}
+		catch (IOException e) {
+			assertFalse(e instanceof MalformedInputException);
+		}
+	}
+	
+	public void testEncode() throws IOException {
+		assertEncoded(TEXT, "UTF-8");
+		assertEncoded("spécial chäractèrs ÿ", "ISO-8859-1");
+		assertEncoded("plain ascii", "US-ASCII");
+		// goes through the charset encoder
+		assertEncoded(TEXT, "UTF-16");
+	}
+	
+	private void assertEncoded(String text, String charsetName) throws IOException {
+		Charset charset = Charset.forName(charsetName);
+		ByteBuffer target = IOUtils.newByteBuffer();
+		WritableContainer<CharBuffer> writable = IOUtils.wrapWritable(target, charset);
+		assertEquals(text.length(), writable.write(IOUtils.wrap(text)));
+		writable.flush();
+		assertTrue(Arrays.equals(text.getBytes(charset), IOUtils.toBytes(target)));
+	}
+	
+	public void testEncodeSplitSurrogate() throws IOException {
+		ByteBuffer target = IOUtils.newByteBuffer();
+		WritableContainer<CharBuffer> writable = IOUtils.wrapWritable(target, Charset.forName("UTF-8"));
+		CharBuffer source = IOUtils.newCharBuffer();
+		source.write("a\ud83d".toCharArray());
+		// the high surrogate waits for its pair
+		assertEquals(1, writable.write(source));
+		source.write("\ude00b".toCharArray());
+		assertEquals(3, writable.write(source));
+		writable.flush();
+		assertEquals("a\ud83d\ude00b", new String(IOUtils.toBytes(target), "UTF-8"));
+	}
+	
+	public void testUnmappable() throws IOException {
+		WritableContainer<CharBuffer> writable = IOUtils.wrapWritable(IOUtils.newByteBuffer(), Charset.forName("US-ASCII"));
+		CharBuffer source = IOUtils.wrap("aé");
+		assertEquals(1, writable.write(source));
+		try {
+			writable.write(source);
+			fail("Expected an unmappable character");
+		}
+		catch (UnmappableCharacterException e) {
+			// expected
+		}
+	}
+}
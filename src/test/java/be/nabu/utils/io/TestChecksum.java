@@ -0,0 +1,93 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.containers.bytes.ChecksumAlgorithm;
+import be.nabu.utils.io.containers.bytes.ChecksumReadableContainer;
+import be.nabu.utils.io.containers.bytes.ChecksumWritableContainer;
+import be.nabu.utils.io.containers.bytes.XxHash64;
+import junit.framework.TestCase;
+
+public class TestChecksum extends TestCase {
+	
+	private static long checksum(ChecksumAlgorithm algorithm, String value) {
+		Checksum checksum = algorithm.newChecksum();
+		byte [] bytes = value.getBytes();
+		checksum.update(bytes, 0, bytes.length);
+		return checksum.getValue();
+	}
+	
+	public void testKnownValues() {
+		assertEquals(0xE3069283L, checksum(ChecksumAlgorithm.CRC32C, "123456789"));
+		assertEquals(0x091E01DEL, checksum(ChecksumAlgorithm.ADLER32, "123456789"));
+		assertEquals(0xEF46DB3751D8E999L, checksum(ChecksumAlgorithm.XXHASH64, ""));
+		assertEquals(0x44BC2CF5AD770999L, checksum(ChecksumAlgorithm.XXHASH64, "abc"));
+		// more than a stripe
+		assertEquals(0xFBCEA83C8A378BF1L, checksum(ChecksumAlgorithm.XXHASH64, "Nobody inspects the spammish repetition"));
+	}
+	
+	public void testXxHashIncremental() {
+		byte [] bytes = new byte[1000];
+		new Random(1).nextBytes(bytes);
+		XxHash64 whole = new XxHash64(), pieces = new XxHash64();
+		whole.update(bytes, 0, bytes.length);
+		for (int offset = 0; offset < bytes.length; offset += 7) {
+			pieces.update(bytes, offset, Math.min(7, bytes.length - offset));
+		}
+		assertEquals(whole.getValue(), pieces.getValue());
+	}
+	
+	public void testContainers() throws IOException {
+		byte [] bytes = new byte[20000];
+		new Random(2).nextBytes(bytes);
+		CRC32 expected = new CRC32();
+		expected.update(bytes, 0, bytes.length);
+		
+		// a source that exposes its array and one that does not
+		for (ByteBuffer source : new ByteBuffer[] { IOUtils.wrap(bytes, true), Fixtures.copy(bytes) }) {
+			ByteBuffer target = IOUtils.newByteBuffer();
+			ChecksumWritableContainer writable = IOUtils.checksumWritable(target, new CRC32());
+			assertEquals(bytes.length, writable.write(source));
+			assertEquals(expected.getValue(), writable.getChecksum().getValue());
+			assertEquals(bytes.length, target.remainingData());
+		}
+		
+		// a parent that only takes part of the data
+		for (ByteBuffer source : new ByteBuffer[] { IOUtils.wrap(bytes, true), Fixtures.copy(bytes) }) {
+			ChecksumWritableContainer writable = IOUtils.checksumWritable(IOUtils.newByteBuffer(5000, false), new CRC32());
+			assertEquals(5000, writable.write(source));
+			assertEquals(bytes.length - 5000, source.remainingData());
+			CRC32 partial = new CRC32();
+			partial.update(bytes, 0, 5000);
+			assertEquals(partial.getValue(), writable.getChecksum().getValue());
+		}
+		
+		// a target that exposes its space and one that does not
+		for (ByteBuffer target : new ByteBuffer[] { IOUtils.newByteBuffer(bytes.length, false), IOUtils.newByteBuffer() }) {
+			ChecksumReadableContainer readable = IOUtils.checksumReadable(IOUtils.wrap(bytes, true), new CRC32());
+			assertEquals(bytes.length, readable.read(target));
+			assertEquals(expected.getValue(), readable.getChecksum().getValue());
+		}
+	}
+}
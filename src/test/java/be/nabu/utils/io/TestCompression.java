@@ -0,0 +1,206 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.WritableContainer;
+import be.nabu.utils.io.containers.bytes.DeflateWritableContainer;
+import be.nabu.utils.io.containers.bytes.InflateReadableContainer;
+import be.nabu.utils.io.containers.bytes.ParallelDeflateWritableContainer;
+import junit.framework.TestCase;
+
+public class TestCompression extends TestCase {
+	
+	private static byte [] data(int length) {
+		// compressible but not trivially so
+		byte [] bytes = new byte[length];
+		Random random = new Random(length);
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) ('a' + random.nextInt(8));
+		}
+		return bytes;
+	}
+	
+	private static byte [] compress(byte [] bytes, boolean gzip) throws IOException {
+		ByteBuffer target = IOUtils.newByteBuffer();
+		DeflateWritableContainer writable = new DeflateWritableContainer(target, gzip);
+		// once from a buffer that exposes its array and once from one that does not
+		int half = bytes.length / 2;
+		assertEquals(half, writable.write(IOUtils.wrap(bytes, 0, half, true)));
+		ByteBuffer rest = IOUtils.newByteBuffer();
+		rest.write(bytes, half, bytes.length - half);
+		assertEquals(bytes.length - half, writable.write(rest));
+		writable.close();
+		return IOUtils.toBytes(target);
+	}
+	
+	private static byte [] stream(java.io.InputStream input) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		byte [] buffer = new byte[4096];
+		int read;
+		while ((read = input.read(buffer)) >= 0) {
+			output.write(buffer, 0, read);
+		}
+		return output.toByteArray();
+	}
+	
+	public void testCompress() throws IOException {
+		for (int length : new int[] { 0, 100, 100000 }) {
+			byte [] bytes = data(length);
+			assertTrue(Arrays.equals(bytes, stream(new GZIPInputStream(new ByteArrayInputStream(compress(bytes, true))))));
+			assertTrue(Arrays.equals(bytes, stream(new InflaterInputStream(new ByteArrayInputStream(compress(bytes, false))))));
+		}
+	}
+	
+	public void testDecompress() throws IOException {
+		byte [] bytes = data(100000);
+		ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+		GZIPOutputStream gzip = new GZIPOutputStream(gzipped);
+		gzip.write(bytes);
+		gzip.close();
+		assertTrue(Arrays.equals(bytes, IOUtils.toBytes(new InflateReadableContainer(IOUtils.wrap(gzipped.toByteArray(), true), true))));
+		// a single byte at a time splits the header and the trailer
+		assertTrue(Arrays.equals(bytes, IOUtils.toBytes(new InflateReadableContainer(Fixtures.trickle(gzipped.toByteArray()), true))));
+		
+		ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+		DeflaterOutputStream deflate = new DeflaterOutputStream(deflated);
+		deflate.write(bytes);
+		deflate.close();
+		assertTrue(Arrays.equals(bytes, IOUtils.toBytes(new InflateReadableContainer(IOUtils.wrap(deflated.toByteArray(), true), false))));
+	}
+	
+	public void testConcatenatedMembers() throws IOException {
+		byte [] first = compress("first".getBytes(), true);
+		byte [] second = compress("second".getBytes(), true);
+		byte [] both = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, both, first.length, second.length);
+		assertEquals("firstsecond", new String(IOUtils.toBytes(new InflateReadableContainer(IOUtils.wrap(both, true), true))));
+	}
+	
+	public void testSyncFlush() throws IOException {
+		ByteBuffer pipe = IOUtils.newByteBuffer();
+		DeflateWritableContainer writable = new DeflateWritableContainer(pipe, true);
+		InflateReadableContainer readable = new InflateReadableContainer(pipe, true);
+		writable.write(IOUtils.wrap("hello".getBytes(), true));
+		writable.flush();
+		// everything up to the flush can be decompressed while the stream is still open
+		ByteBuffer target = IOUtils.newByteBuffer(100, false);
+		assertEquals(5, readable.read(target));
+		assertEquals(0, readable.read(target));
+		writable.write(IOUtils.wrap(" world".getBytes(), true));
+		writable.close();
+		assertEquals(6, readable.read(target));
+		assertEquals(-1, readable.read(target));
+		assertEquals("hello world", new String(IOUtils.toBytes(target)));
+	}
+	
+	public void testParallel() throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			// blocks smaller than the window use the history of several blocks before them
+			for (int blockSize : new int[] { 1000, 65536 }) {
+				for (int length : new int[] { 0, 100, 300000 }) {
+					byte [] bytes = data(length);
+					ByteBuffer target = IOUtils.newByteBuffer();
+					ParallelDeflateWritableContainer writable = new ParallelDeflateWritableContainer(target, Deflater.DEFAULT_COMPRESSION, blockSize, pool);
+					int half = length / 2;
+					assertEquals(half, writable.write(IOUtils.wrap(bytes, 0, half, true)));
+					// a partial block in between
+					writable.flush();
+					assertEquals(length - half, writable.write(IOUtils.wrap(bytes, half, length - half, true)));
+					writable.close();
+					byte [] compressed = IOUtils.toBytes(target);
+					assertTrue(Arrays.equals(bytes, stream(new GZIPInputStream(new ByteArrayInputStream(compressed)))));
+					assertTrue(Arrays.equals(bytes, IOUtils.toBytes(new InflateReadableContainer(IOUtils.wrap(compressed, true), true))));
+				}
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+	
+	public void testRetriedClose() throws IOException {
+		// the parent can only take a small part of the compressed data at a time
+		ByteBuffer parent = IOUtils.newByteBuffer(256, false);
+		retriedClose(new DeflateWritableContainer(parent, true), parent);
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			parent = IOUtils.newByteBuffer(256, false);
+			retriedClose(new ParallelDeflateWritableContainer(parent, Deflater.DEFAULT_COMPRESSION, 1000, pool), parent);
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+	
+	private static void retriedClose(WritableContainer<ByteBuffer> writable, ByteBuffer parent) throws IOException {
+		byte [] bytes = data(100000);
+		ByteBuffer compressed = IOUtils.newByteBuffer();
+		ByteBuffer source = IOUtils.wrap(bytes, true);
+		while (source.remainingData() > 0) {
+			writable.write(source);
+			drain(parent, compressed);
+		}
+		int failures = 0;
+		while (true) {
+			try {
+				writable.close();
+				break;
+			}
+			catch (IOException e) {
+				failures++;
+				drain(parent, compressed);
+			}
+		}
+		drain(parent, compressed);
+		assertTrue(failures > 0);
+		assertEquals(-1, writable.write(IOUtils.wrap(bytes, true)));
+		assertTrue(Arrays.equals(bytes, stream(new GZIPInputStream(new ByteArrayInputStream(IOUtils.toBytes(compressed))))));
+	}
+	
+	private static void drain(ByteBuffer parent, ByteBuffer target) throws IOException {
+		target.write(parent);
+		parent.truncate();
+	}
+	
+	public void testCorrupt() throws IOException {
+		byte [] compressed = compress(data(1000), true);
+		// the crc in the trailer
+		compressed[compressed.length - 8]++;
+		try {
+			IOUtils.toBytes(new InflateReadableContainer(IOUtils.wrap(compressed, true), true));
+			fail("Expected a crc mismatch");
+		}
+		catch (IOException e) {
+			// expected
+		}
+	}
+}
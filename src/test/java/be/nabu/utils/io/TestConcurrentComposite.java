@@ -0,0 +1,163 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.buffers.ConcurrentCompositeBuffer;
+import be.nabu.utils.io.buffers.bytes.ByteBufferFactory;
+import junit.framework.TestCase;
+
+public class TestConcurrentComposite extends TestCase {
+	
+	public void testFifo() throws IOException {
+		ConcurrentCompositeBuffer<ByteBuffer> buffer = new ConcurrentCompositeBuffer<ByteBuffer>(ByteBufferFactory.getInstance());
+		buffer.write(IOUtils.wrap("abc".getBytes(), true));
+		buffer.write(IOUtils.wrap("defg".getBytes(), true));
+		assertEquals(7, buffer.remainingData());
+		
+		ByteBuffer peeked = IOUtils.newByteBuffer();
+		assertEquals(7, buffer.peek(peeked));
+		assertEquals("abcdefg", new String(IOUtils.toBytes(peeked)));
+		
+		ByteBuffer target = IOUtils.newByteBuffer(2, false);
+		assertEquals(2, buffer.read(target));
+		assertEquals("ab", new String(IOUtils.toBytes(target)));
+		assertEquals(2, buffer.skip(2));
+		assertEquals(3, buffer.remainingData());
+		buffer.write(IOUtils.wrap("h".getBytes(), true));
+		assertEquals("efgh", new String(IOUtils.toBytes(buffer)));
+		
+		buffer.write(IOUtils.wrap("i".getBytes(), true));
+		buffer.truncate();
+		assertEquals(0, buffer.remainingData());
+		buffer.close();
+		assertEquals(-1, buffer.read(target));
+		assertEquals(-1, buffer.write(IOUtils.wrap("j".getBytes(), true)));
+	}
+	
+	public void testWriteConsumesSource() throws IOException {
+		ConcurrentCompositeBuffer<ByteBuffer> buffer = new ConcurrentCompositeBuffer<ByteBuffer>(ByteBufferFactory.getInstance());
+		ByteBuffer source = IOUtils.wrap("abc".getBytes(), true);
+		assertEquals(3, buffer.write(source));
+		assertEquals(0, source.remainingData());
+		
+		ByteBuffer owned = IOUtils.wrap("def".getBytes(), true);
+		assertEquals(3, buffer.append(owned));
+		assertEquals(6, buffer.remainingData());
+		assertEquals("abcdef", new String(IOUtils.toBytes(buffer)));
+		buffer.close();
+		assertEquals(-1, buffer.append(IOUtils.wrap("g".getBytes(), true)));
+	}
+	
+	public void testConcurrentWriters() throws Exception {
+		final ConcurrentCompositeBuffer<ByteBuffer> buffer = new ConcurrentCompositeBuffer<ByteBuffer>(ByteBufferFactory.getInstance());
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final int writes = 2000;
+		List<Thread> writers = new ArrayList<Thread>();
+		for (int i = 0; i < 4; i++) {
+			final byte writer = (byte) i;
+			writers.add(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						// every write is [writer, sequence high, sequence low]
+						for (int j = 0; j < writes; j++) {
+							buffer.write(IOUtils.wrap(new byte[] { writer, (byte) (j >> 8), (byte) j }, true));
+						}
+					}
+					catch (Throwable e) {
+						failure.set(e);
+					}
+				}
+			}));
+		}
+		for (Thread thread : writers) {
+			thread.start();
+		}
+		int [] expected = new int[writers.size()];
+		ByteBuffer target = IOUtils.newByteBuffer(3, false);
+		byte [] record = new byte[3];
+		int received = 0;
+		while (received < writes * writers.size()) {
+			if (buffer.read(target) == 0) {
+				Thread.yield();
+			}
+			if (target.remainingSpace() == 0) {
+				target.read(record);
+				target.truncate();
+				int sequence = ((record[1] & 0xff) << 8) | (record[2] & 0xff);
+				assertEquals(expected[record[0]]++, sequence);
+				received++;
+			}
+		}
+		for (Thread thread : writers) {
+			thread.join();
+		}
+		assertNull(failure.get());
+		assertEquals(0, buffer.remainingData());
+	}
+	
+	public void testCloseDuringWrites() throws Exception {
+		for (int attempt = 0; attempt < 20; attempt++) {
+			final ConcurrentCompositeBuffer<ByteBuffer> buffer = new ConcurrentCompositeBuffer<ByteBuffer>(ByteBufferFactory.getInstance());
+			final AtomicLong accepted = new AtomicLong();
+			List<Thread> writers = new ArrayList<Thread>();
+			for (int i = 0; i < 4; i++) {
+				writers.add(new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							long written;
+							while ((written = buffer.write(IOUtils.wrap(new byte[10], true))) >= 0) {
+								accepted.addAndGet(written);
+							}
+						}
+						catch (IOException e) {
+							throw new RuntimeException(e);
+						}
+					}
+				}));
+			}
+			for (Thread thread : writers) {
+				thread.start();
+			}
+			Thread.yield();
+			buffer.close();
+			// everything a writer was told was accepted has to be readable before the end is reported
+			ByteBuffer target = IOUtils.newByteBuffer(1024, false);
+			long read, total = 0;
+			while ((read = buffer.read(target)) >= 0) {
+				total += read;
+				target.truncate();
+				if (read == 0) {
+					Thread.yield();
+				}
+			}
+			for (Thread thread : writers) {
+				thread.join();
+			}
+			assertEquals(accepted.get(), total);
+		}
+	}
+}
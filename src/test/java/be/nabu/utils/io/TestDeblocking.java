@@ -0,0 +1,92 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import be.nabu.utils.io.blocking.DeblockingInputStream;
+import junit.framework.TestCase;
+
+public class TestDeblocking extends TestCase {
+	
+	public void testBackPressure() throws Exception {
+		// more than fits in the buffer, the pump has to wait for the reader
+		byte [] data = new byte[1024 * 1024];
+		new Random(1).nextBytes(data);
+		DeblockingInputStream deblocking = new DeblockingInputStream(new ByteArrayInputStream(data));
+		try {
+			InputStream input = deblocking.newInputStream();
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			byte [] bytes = new byte[1000];
+			int read;
+			while ((read = input.read(bytes)) >= 0) {
+				assertTrue(read > 0);
+				output.write(bytes, 0, read);
+			}
+			assertTrue(Arrays.equals(data, output.toByteArray()));
+		}
+		finally {
+			deblocking.close();
+		}
+	}
+	
+	public void testIdleStreams() throws Exception {
+		// fewer pumps than idle streams
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		List<PipedOutputStream> outputs = new ArrayList<PipedOutputStream>();
+		List<DeblockingInputStream> streams = new ArrayList<DeblockingInputStream>();
+		try {
+			for (int i = 0; i < 8; i++) {
+				PipedOutputStream output = new PipedOutputStream();
+				outputs.add(output);
+				streams.add(new DeblockingInputStream(new PipedInputStream(output), executor));
+			}
+			DeblockingInputStream deblocking = new DeblockingInputStream(new ByteArrayInputStream("hello".getBytes()), executor);
+			streams.add(deblocking);
+			InputStream input = deblocking.newInputStream();
+			long deadline = System.currentTimeMillis() + 5000;
+			while (input.available() < 5 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals(5, input.available());
+			byte [] bytes = new byte[5];
+			assertEquals(5, input.read(bytes));
+			assertEquals("hello", new String(bytes));
+			assertEquals(-1, input.read(bytes));
+		}
+		finally {
+			for (PipedOutputStream output : outputs) {
+				output.close();
+			}
+			for (DeblockingInputStream stream : streams) {
+				stream.close();
+			}
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+package be.nabu.utils.io;
+
+import java.io.IOException;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.buffers.bytes.ByteBufferFactory;
+import be.nabu.utils.io.buffers.bytes.CyclicDirectByteBuffer;
+import be.nabu.utils.io.buffers.bytes.DirectBufferPool;
+import be.nabu.utils.io.buffers.bytes.DirectByteBuffer;
+import be.nabu.utils.io.buffers.bytes.DynamicDirectByteBuffer;
+import be.nabu.utils.io.buffers.bytes.StaticDirectByteBuffer;
+import junit.framework.TestCase;
+
+public class TestDirectBuffers extends TestCase {
+	
+	private static byte [] data(int size) {
+		byte [] data = new byte[size];
+		for (int i = 0; i < size; i++) {
+			data[i] = (byte) (i * 31);
+		}
+		return data;
+	}
+	
+	public void testStatic() throws IOException {
+		StaticDirectByteBuffer buffer = new StaticDirectByteBuffer(10);
+		assertEquals(10, buffer.write("some data here".getBytes()));
+		assertEquals(0, buffer.remainingSpace());
+		ByteBuffer peeked = IOUtils.newByteBuffer();
+		assertEquals(10, buffer.peek(peeked));
+		assertEquals("some data ", new String(IOUtils.toBytes(peeked)));
+		assertEquals(5, buffer.skip(5));
+		assertEquals("data ", new String(IOUtils.toBytes(buffer)));
+		buffer.reset();
+		assertEquals("some data ", new String(IOUtils.toBytes(buffer)));
+	}
+	
+	public void testCyclic() throws IOException {
+		CyclicDirectByteBuffer container = new CyclicDirectByteBuffer(2);
+		assertEquals(2, container.write("tes".getBytes()));
+		assertEquals(0, container.remainingSpace());
+		assertEquals("te", new String(IOUtils.toBytes(container)));
+		assertEquals(1, container.write("s".getBytes()));
+		assertEquals(1, container.skip(1));
+		// wraps around the end of the memory
+		assertEquals(2, container.write("ab".getBytes()));
+		byte [] result = new byte[2];
+		assertEquals(2, container.read(result));
+		assertEquals("ab", new String(result));
+	}
+	
+	public void testFactoryRelease() throws IOException {
+		DirectBufferPool pool = DirectBufferPool.getInstance();
+		long releases = pool.getReleases();
+		for (boolean cyclic : new boolean[] { false, true }) {
+			ByteBuffer buffer = ByteBufferFactory.getDirectInstance().newInstance(1000, cyclic);
+			// the pooled memory is bigger but the buffer only uses what was asked
+			assertEquals(1000, buffer.remainingSpace());
+			assertEquals(1000, buffer.write(data(1500)));
+			((DirectByteBuffer) buffer).release();
+		}
+		assertEquals(releases + 2, pool.getReleases());
+	}
+	
+	public void testDynamic() throws IOException {
+		DirectBufferPool pool = new DirectBufferPool(65536, 4, 4);
+		pool.setLeakDetection(true);
+		DynamicDirectByteBuffer buffer = new DynamicDirectByteBuffer(1024, pool);
+		byte [] data = data(10000);
+		buffer.write(data);
+		assertEquals(10000, buffer.remainingData());
+		
+		// copy from direct to heap and back again
+		ByteBuffer heap = IOUtils.newByteBuffer();
+		assertEquals(10000, IOUtils.copyBytes(buffer, heap));
+		DynamicDirectByteBuffer copy = new DynamicDirectByteBuffer(1024, pool);
+		assertEquals(10000, IOUtils.copyBytes(heap, copy));
+		
+		java.nio.ByteBuffer nio = java.nio.ByteBuffer.allocateDirect(10000);
+		assertEquals(10000, copy.read(nio));
+		nio.flip();
+		for (int i = 0; i < data.length; i++) {
+			assertEquals(data[i], nio.get(i));
+		}
+		buffer.release();
+		copy.release();
+		assertEquals(0, pool.getOutstanding());
+	}
+	
+	public void testFactory() {
+		assertTrue(ByteBufferFactory.getDirectInstance().newInstance() instanceof DynamicDirectByteBuffer);
+		assertTrue(ByteBufferFactory.getDirectInstance().newInstance(10, true) instanceof CyclicDirectByteBuffer);
+		assertTrue(ByteBufferFactory.getDirectInstance().newNioBuffer(10).isDirect());
+		assertFalse(ByteBufferFactory.getInstance().newNioBuffer(10).isDirect());
+	}
+}
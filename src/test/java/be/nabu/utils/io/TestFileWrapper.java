@@ -19,11 +19,16 @@ package be.nabu.utils.io;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
 
 import be.nabu.utils.io.api.ByteBuffer;
 import be.nabu.utils.io.api.CharBuffer;
 import be.nabu.utils.io.api.Container;
+import be.nabu.utils.io.containers.bytes.ByteChannelContainer;
+import be.nabu.utils.io.containers.bytes.FileWrapper;
+import be.nabu.utils.io.containers.bytes.ReadOnlyFileWrapper;
 import junit.framework.TestCase;
 
 public class TestFileWrapper extends TestCase {
@@ -64,4 +69,37 @@ public class TestFileWrapper extends TestCase {
 		
 		target.delete();
 	}
+	
+	public void testTransfer() throws IOException {
+		File source = File.createTempFile("source", ".txt");
+		File channelFile = File.createTempFile("channel", ".txt");
+		File target = File.createTempFile("target", ".txt");
+		try {
+			String testString = "transferring some spécial chäractèrs";
+			IOUtils.wrap(source).write(IOUtils.wrap(testString.getBytes("UTF-8"), true));
+			
+			ReadOnlyFileWrapper input = new ReadOnlyFileWrapper(source);
+			ByteChannelContainer<FileChannel> output = new ByteChannelContainer<FileChannel>(FileChannel.open(channelFile.toPath(), StandardOpenOption.WRITE));
+			assertEquals(CopyStrategy.TRANSFER_TO, IOUtils.getCopyStrategy(input, output));
+			assertEquals(source.length(), IOUtils.copyBytes(input, output));
+			assertEquals(0, input.remainingData());
+			output.close();
+			input.close();
+			
+			ByteChannelContainer<FileChannel> channelInput = new ByteChannelContainer<FileChannel>(FileChannel.open(channelFile.toPath(), StandardOpenOption.READ));
+			FileWrapper fileOutput = new FileWrapper(target);
+			assertEquals(CopyStrategy.TRANSFER_FROM, IOUtils.getCopyStrategy(channelInput, fileOutput));
+			assertEquals(source.length(), IOUtils.copyBytes(channelInput, fileOutput));
+			channelInput.close();
+			assertEquals(testString, new String(IOUtils.toBytes(fileOutput), "UTF-8"));
+			fileOutput.close();
+			
+			assertEquals(CopyStrategy.BUFFERED, IOUtils.getCopyStrategy(fileOutput, IOUtils.newByteBuffer()));
+		}
+		finally {
+			source.delete();
+			channelFile.delete();
+			target.delete();
+		}
+	}
 }
@@ -0,0 +1,75 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.CharBuffer;
+import be.nabu.utils.io.containers.chars.HexReadableCharContainer;
+import be.nabu.utils.io.containers.chars.HexWritableCharContainer;
+import junit.framework.TestCase;
+
+public class TestHex extends TestCase {
+	
+	public void testRoundTrip() throws IOException {
+		byte [] bytes = new byte[10000];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) (i * 31);
+		}
+		String hex = IOUtils.toString(new HexReadableCharContainer(IOUtils.wrap(bytes, true)));
+		assertEquals(bytes.length * 2, hex.length());
+		assertEquals("001f3e5d7c9bbad9", hex.substring(0, 16));
+		
+		ByteBuffer target = IOUtils.newByteBuffer();
+		HexWritableCharContainer writable = new HexWritableCharContainer(target);
+		assertEquals(hex.length(), writable.write(IOUtils.wrap(hex.toUpperCase())));
+		assertTrue(Arrays.equals(bytes, IOUtils.toBytes(target)));
+	}
+	
+	public void testSingleChars() throws IOException {
+		HexReadableCharContainer readable = new HexReadableCharContainer(IOUtils.wrap(new byte[] { (byte) 0xab, 0x01 }, true));
+		CharBuffer target = IOUtils.newCharBuffer(1, false);
+		StringBuilder builder = new StringBuilder();
+		while (readable.read(target) > 0) {
+			builder.append(IOUtils.toString(target));
+			target.truncate();
+		}
+		assertEquals("ab01", builder.toString());
+	}
+	
+	public void testOddAndInvalid() throws IOException {
+		ByteBuffer target = IOUtils.newByteBuffer();
+		HexWritableCharContainer writable = new HexWritableCharContainer(target);
+		CharBuffer source = IOUtils.newCharBuffer();
+		source.write("abc".toCharArray());
+		// the trailing char waits for the next one
+		assertEquals(2, writable.write(source));
+		source.write("d".toCharArray());
+		assertEquals(2, writable.write(source));
+		assertTrue(Arrays.equals(new byte[] { (byte) 0xab, (byte) 0xcd }, IOUtils.toBytes(target)));
+		try {
+			writable.write(IOUtils.wrap("0g"));
+			fail("Expected an invalid hex character");
+		}
+		catch (IOException e) {
+			// expected
+		}
+	}
+}
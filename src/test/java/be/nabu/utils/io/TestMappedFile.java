@@ -0,0 +1,78 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+package be.nabu.utils.io;
+
+import java.io.File;
+import java.io.IOException;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.buffers.bytes.CyclicByteBuffer;
+import be.nabu.utils.io.containers.bytes.MappedFileContainer;
+import junit.framework.TestCase;
+
+public class TestMappedFile extends TestCase {
+	
+	private File file;
+	private byte [] data;
+	
+	@Override
+	protected void setUp() throws Exception {
+		data = new byte[10000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i % 253);
+		}
+		file = File.createTempFile("mapped", ".bin");
+		IOUtils.wrap(file).write(IOUtils.wrap(data, true));
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+	
+	private void assertData(byte [] result, int offset) {
+		for (int i = 0; i < result.length; i++) {
+			assertEquals(data[offset + i], result[i]);
+		}
+	}
+
+	public void testRead() throws IOException {
+		// a small window so the reads cross window boundaries
+		MappedFileContainer container = new MappedFileContainer(file, 1024);
+		assertEquals(data.length, container.remainingData());
+		
+		ByteBuffer peeked = IOUtils.newByteBuffer();
+		assertEquals(data.length, container.peek(peeked));
+		assertEquals(data.length, container.remainingData());
+		assertData(IOUtils.toBytes(peeked), 0);
+		
+		assertEquals(1000, container.skip(1000));
+		container.mark();
+		byte [] bytes = new byte[3000];
+		assertEquals(3000, container.read(IOUtils.wrap(bytes, false)));
+		assertData(bytes, 1000);
+		
+		container.reset();
+		assertEquals(4000, container.read(new CyclicByteBuffer(4000)));
+		
+		MappedFileContainer duplicate = container.duplicate(false);
+		container.close();
+		assertData(IOUtils.toBytes(duplicate), 5000);
+		assertEquals(-1, duplicate.read(IOUtils.newByteBuffer()));
+		duplicate.close();
+	}
+}
@@ -0,0 +1,97 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.EventfulSubscriber;
+import be.nabu.utils.io.api.EventfulSubscription;
+import be.nabu.utils.io.containers.bytes.SocketByteContainer;
+import be.nabu.utils.io.reactor.Reactor;
+import be.nabu.utils.io.reactor.SelectableContainer;
+import junit.framework.TestCase;
+
+public class TestReactor extends TestCase {
+	
+	public void testEvents() throws Exception {
+		Reactor reactor = new Reactor(2);
+		ServerSocketChannel server = ServerSocketChannel.open();
+		try {
+			server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+			SelectableContainer<SocketChannel> client = reactor.register(new SocketByteContainer(server.getLocalAddress()));
+			SelectableContainer<SocketChannel> receiver = reactor.register(new SocketByteContainer(server.accept()));
+			
+			// either side being signalled means the loop can continue
+			final Semaphore signal = new Semaphore(0), closed = new Semaphore(0);
+			client.availableSpace(release(signal));
+			receiver.availableData(release(signal));
+			receiver.closed(release(closed));
+			
+			// enough to fill the socket buffers so the writer has to wait for space
+			byte [] bytes = new byte[8 * 1024 * 1024];
+			new Random(1).nextBytes(bytes);
+			ByteBuffer source = IOUtils.wrap(bytes, true);
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			byte [] chunk = new byte[65536];
+			while (output.size() < bytes.length) {
+				if (source.remainingData() > 0) {
+					client.write(source);
+				}
+				long read;
+				while ((read = receiver.read(IOUtils.wrap(chunk, false))) > 0) {
+					output.write(chunk, 0, (int) read);
+				}
+				// nothing left to read, wait until either side is signalled
+				if (output.size() < bytes.length) {
+					assertTrue(signal.tryAcquire(10, TimeUnit.SECONDS));
+				}
+			}
+			assertTrue(Arrays.equals(bytes, output.toByteArray()));
+			
+			client.close();
+			long read;
+			while ((read = receiver.read(IOUtils.newByteBuffer())) == 0) {
+				assertTrue(signal.tryAcquire(10, TimeUnit.SECONDS));
+			}
+			assertEquals(-1, read);
+			assertTrue(closed.tryAcquire(10, TimeUnit.SECONDS));
+		}
+		finally {
+			server.close();
+			reactor.close();
+		}
+	}
+	
+	private static EventfulSubscriber release(final Semaphore semaphore) {
+		return new EventfulSubscriber() {
+			@Override
+			public void on(EventfulSubscription subscription) {
+				semaphore.release();
+			}
+		};
+	}
+}
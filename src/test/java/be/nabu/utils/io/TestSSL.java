@@ -0,0 +1,218 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.Container;
+import be.nabu.utils.io.buffers.bytes.ByteBufferFactory;
+import be.nabu.utils.io.buffers.bytes.LimitedByteBuffer;
+import be.nabu.utils.io.containers.bytes.SSLSocketByteContainer;
+import junit.framework.TestCase;
+
+/**
+ * Runs a client and a server over an in-memory loopback, the non-blocking handshake is driven from a single thread
+ */
+public class TestSSL extends TestCase {
+	
+	private static SSLContext context;
+	
+	/**
+	 * Generates a throwaway self-signed certificate with the keytool of the running jvm
+	 */
+	private static synchronized SSLContext getContext() throws Exception {
+		if (context == null) {
+			File keystore = File.createTempFile("test", ".p12");
+			keystore.delete();
+			try {
+				String keytool = new File(new File(System.getProperty("java.home"), "bin"), "keytool").getAbsolutePath();
+				Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "test", "-keyalg", "RSA", "-keysize", "2048",
+					"-dname", "CN=localhost", "-validity", "1", "-storetype", "PKCS12", "-keystore", keystore.getAbsolutePath(),
+					"-storepass", "changeit", "-keypass", "changeit").redirectErrorStream(true).start();
+				IOUtils.toBytes(IOUtils.wrap(process.getInputStream()));
+				if (process.waitFor() != 0)
+					throw new IllegalStateException("Could not generate a keystore");
+				KeyStore store = KeyStore.getInstance("PKCS12");
+				InputStream input = new FileInputStream(keystore);
+				try {
+					store.load(input, "changeit".toCharArray());
+				}
+				finally {
+					input.close();
+				}
+				KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+				keyManagerFactory.init(store, "changeit".toCharArray());
+				TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+				trustManagerFactory.init(store);
+				context = SSLContext.getInstance("TLS");
+				context.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(), null);
+			}
+			finally {
+				keystore.delete();
+			}
+		}
+		return context;
+	}
+	
+	/**
+	 * One side of the loopback, every write is limited to the given amount to simulate a congested network
+	 */
+	private static class Pipe implements Container<ByteBuffer> {
+		private ByteBuffer input, output;
+		private long writeLimit;
+		
+		private Pipe(ByteBuffer input, ByteBuffer output, long writeLimit) {
+			this.input = input;
+			this.output = output;
+			this.writeLimit = writeLimit;
+		}
+		@Override
+		public long read(ByteBuffer buffer) throws IOException {
+			return input.read(buffer);
+		}
+		@Override
+		public long write(ByteBuffer buffer) throws IOException {
+			return output.write(writeLimit > 0 ? new LimitedByteBuffer(buffer, writeLimit, null) : buffer);
+		}
+		@Override
+		public void close() {
+			// do nothing
+		}
+		@Override
+		public void flush() {
+			// do nothing
+		}
+	}
+	
+	private ByteBuffer clientToServer, serverToClient;
+	private SSLSocketByteContainer client, server;
+	
+	private void connect(String host, long writeLimit) throws Exception {
+		clientToServer = IOUtils.newByteBuffer();
+		serverToClient = IOUtils.newByteBuffer();
+		client = new SSLSocketByteContainer(new Pipe(serverToClient, clientToServer, writeLimit), getContext(), true, host, 443, ByteBufferFactory.getInstance());
+		server = new SSLSocketByteContainer(new Pipe(clientToServer, serverToClient, writeLimit), getContext(), false);
+		client.setBlockingHandshake(false);
+		server.setBlockingHandshake(false);
+		boolean clientDone = false, serverDone = false;
+		for (int i = 0; i < 1000 && !(clientDone && serverDone); i++) {
+			clientDone = client.shakeHands();
+			serverDone = server.shakeHands();
+		}
+		assertTrue(clientDone);
+		assertTrue(serverDone);
+	}
+	
+	private static byte [] data(int size) {
+		byte [] data = new byte[size];
+		new Random(size).nextBytes(data);
+		return data;
+	}
+	
+	/**
+	 * Reads until the expected amount has arrived, the other side has to have written everything already
+	 */
+	private static byte [] receive(SSLSocketByteContainer container, ByteBuffer target, int expected) throws IOException {
+		for (int i = 0; i < 1000 && target.remainingData() < expected; i++) {
+			if (container.read(target) < 0)
+				break;
+		}
+		return IOUtils.toBytes(target);
+	}
+	
+	private void assertTransfer(SSLSocketByteContainer from, SSLSocketByteContainer to, ByteBuffer target, int size) throws IOException {
+		byte [] data = data(size);
+		ByteBuffer source = IOUtils.wrap(data, true);
+		for (int i = 0; i < 1000 && source.remainingData() > 0; i++) {
+			from.write(source);
+			// the other side drains the loopback
+			to.read(target);
+		}
+		assertEquals(0, source.remainingData());
+		from.flush();
+		assertTrue(Arrays.equals(data, receive(to, target, size)));
+	}
+	
+	public void testNonBlockingHandshake() throws Exception {
+		// the handshake flights are bigger than what the loopback accepts per write
+		connect(null, 1000);
+		assertTransfer(client, server, IOUtils.newByteBuffer(), 50000);
+		assertTransfer(server, client, IOUtils.newByteBuffer(), 50000);
+	}
+	
+	public void testUnwrapTargets() throws Exception {
+		connect(null, 0);
+		// nio backed targets are unwrapped into directly
+		assertTransfer(client, server, IOUtils.newByteBuffer(100000, false), 100000);
+		// other targets get the data through the application buffer
+		assertTransfer(client, server, new LimitedByteBuffer(IOUtils.newByteBuffer(), null, null), 100000);
+		// a target that is smaller than a record
+		byte [] data = data(20000);
+		client.write(IOUtils.wrap(data, true));
+		ByteBuffer result = IOUtils.newByteBuffer();
+		ByteBuffer small = IOUtils.newByteBuffer(100, false);
+		for (int i = 0; i < 1000 && result.remainingData() < data.length; i++) {
+			small.truncate();
+			server.read(small);
+			result.write(small);
+		}
+		assertTrue(Arrays.equals(data, IOUtils.toBytes(result)));
+	}
+	
+	public void testCoalesce() throws Exception {
+		connect(null, 0);
+		client.setCoalesceSize(65536);
+		byte [] data = data(10000);
+		for (int i = 0; i < data.length; i += 1000) {
+			assertEquals(1000, client.write(IOUtils.wrap(data, i, 1000, true)));
+		}
+		// nothing is sent until the records fill the coalesce buffer or we flush
+		assertEquals(0, clientToServer.remainingData());
+		client.flush();
+		assertTrue(clientToServer.remainingData() > data.length);
+		assertTrue(Arrays.equals(data, receive(server, IOUtils.newByteBuffer(), data.length)));
+	}
+	
+	public void testHandshakeStatistics() throws Exception {
+		long full = SSLSocketByteContainer.getFullHandshakes(), resumed = SSLSocketByteContainer.getResumedHandshakes();
+		connect("resume.example.com", 0);
+		assertFalse(client.getHandshakeStatistics().isResumed());
+		assertEquals("resume.example.com", client.getHandshakeStatistics().getPeerHost());
+		// on tls 1.3 the session ticket arrives after the handshake
+		assertTransfer(server, client, IOUtils.newByteBuffer(), 100);
+		assertTransfer(client, server, IOUtils.newByteBuffer(), 100);
+		
+		// a new connection to the same peer resumes the session
+		connect("resume.example.com", 0);
+		assertTrue(client.getHandshakeStatistics().isResumed());
+		assertTrue(server.getHandshakeStatistics().isResumed());
+		assertEquals(full + 2, SSLSocketByteContainer.getFullHandshakes());
+		assertEquals(resumed + 2, SSLSocketByteContainer.getResumedHandshakes());
+	}
+}
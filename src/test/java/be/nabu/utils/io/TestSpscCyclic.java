@@ -0,0 +1,128 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.CharBuffer;
+import be.nabu.utils.io.buffers.bytes.SpscCyclicByteBuffer;
+import be.nabu.utils.io.buffers.chars.SpscCyclicCharBuffer;
+import junit.framework.TestCase;
+
+public class TestSpscCyclic extends TestCase {
+	
+	public void testCycle() throws IOException {
+		ByteBuffer buffer = new SpscCyclicByteBuffer(10);
+		assertEquals(7, buffer.write("abcdefg".getBytes()));
+		byte [] bytes = new byte[5];
+		assertEquals(5, buffer.read(bytes));
+		assertEquals("abcde", new String(bytes));
+		// wraps around the end
+		assertEquals(8, buffer.write("hijklmnopq".getBytes()));
+		assertEquals(0, buffer.remainingSpace());
+		ByteBuffer peeked = IOUtils.newByteBuffer();
+		assertEquals(10, buffer.peek(peeked));
+		assertEquals("fghijklmno", new String(IOUtils.toBytes(peeked)));
+		assertEquals(2, buffer.skip(2));
+		assertEquals("hijklmno", new String(IOUtils.toBytes(buffer)));
+		buffer.close();
+		assertEquals(-1, buffer.read(bytes));
+		assertEquals(-1, buffer.write(bytes));
+	}
+	
+	public void testBytesAcrossThreads() throws Exception {
+		final byte [] data = new byte[1024 * 1024];
+		new Random(1).nextBytes(data);
+		final SpscCyclicByteBuffer buffer = new SpscCyclicByteBuffer(1023);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					int offset = 0;
+					while (offset < data.length) {
+						int written = buffer.write(data, offset, Math.min(777, data.length - offset));
+						// the reader might need the cpu to catch up
+						if (written == 0) {
+							Thread.yield();
+						}
+						offset += written;
+					}
+					buffer.close();
+				}
+				catch (Throwable e) {
+					failure.set(e);
+				}
+			}
+		});
+		writer.start();
+		byte [] result = new byte[data.length];
+		int offset = 0, read;
+		while ((read = buffer.read(result, offset, Math.min(501, Math.max(1, result.length - offset)))) >= 0) {
+			if (read == 0) {
+				Thread.yield();
+			}
+			offset += read;
+		}
+		writer.join();
+		assertNull(failure.get());
+		assertEquals(data.length, offset);
+		assertTrue(Arrays.equals(data, result));
+	}
+	
+	public void testCharsAcrossThreads() throws Exception {
+		StringBuilder builder = new StringBuilder();
+		Random random = new Random(1);
+		for (int i = 0; i < 256 * 1024; i++) {
+			builder.append((char) random.nextInt(Character.MAX_VALUE));
+		}
+		final char [] data = builder.toString().toCharArray();
+		final SpscCyclicCharBuffer buffer = new SpscCyclicCharBuffer(100);
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				CharBuffer source = IOUtils.wrap(data, true);
+				try {
+					while (source.remainingData() > 0) {
+						if (buffer.write(source) == 0) {
+							Thread.yield();
+						}
+					}
+				}
+				catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+				buffer.close();
+			}
+		});
+		writer.start();
+		CharBuffer target = IOUtils.newCharBuffer();
+		long read;
+		while ((read = buffer.read(target)) >= 0) {
+			if (read == 0) {
+				Thread.yield();
+			}
+		}
+		writer.join();
+		assertTrue(Arrays.equals(data, IOUtils.toString(target).toCharArray()));
+	}
+}
@@ -0,0 +1,86 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.utils.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import be.nabu.utils.io.api.ByteBuffer;
+import be.nabu.utils.io.api.CharBuffer;
+import be.nabu.utils.io.buffers.bytes.ByteBufferFactory;
+import be.nabu.utils.io.containers.bytes.ReadableStraightCharToByteContainer;
+import be.nabu.utils.io.containers.chars.ReadableStraightByteToCharContainer;
+import be.nabu.utils.io.containers.chars.WritableStraightByteToCharContainer;
+import junit.framework.TestCase;
+
+public class TestStraight extends TestCase {
+	
+	private static byte [] allBytes(int length) {
+		byte [] bytes = new byte[length];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) i;
+		}
+		return bytes;
+	}
+	
+	private static char [] allChars(int length) {
+		char [] chars = new char[length];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = (char) (i & 0xff);
+		}
+		return chars;
+	}
+	
+	public void testReadBytesAsChars() throws IOException {
+		// bigger than the internal arrays
+		byte [] bytes = allBytes(20000);
+		ReadableStraightByteToCharContainer readable = new ReadableStraightByteToCharContainer(IOUtils.wrap(bytes, true));
+		assertTrue(Arrays.equals(allChars(bytes.length), IOUtils.toString(readable).toCharArray()));
+		
+		// a small target does not make it read ahead
+		ByteBuffer source = IOUtils.wrap(bytes, true);
+		readable = new ReadableStraightByteToCharContainer(source);
+		assertEquals(10, readable.read(IOUtils.newCharBuffer(10, false)));
+		assertEquals(bytes.length - 10, source.remainingData());
+	}
+	
+	public void testWriteBytesAsChars() throws IOException {
+		byte [] bytes = allBytes(20000);
+		// the static buffer exposes its array, the dynamic one goes through peek and skip
+		for (ByteBuffer source : new ByteBuffer[] { IOUtils.wrap(bytes, true), Fixtures.copy(bytes) }) {
+			CharBuffer target = IOUtils.newCharBuffer(15000, false);
+			WritableStraightByteToCharContainer writable = new WritableStraightByteToCharContainer(target);
+			assertEquals(15000, writable.write(source));
+			assertEquals(5000, source.remainingData());
+			assertTrue(Arrays.equals(allChars(15000), IOUtils.toString(target).toCharArray()));
+		}
+	}
+	
+	public void testReadCharsAsBytes() throws IOException {
+		char [] chars = allChars(20000);
+		// the static buffer exposes its array, the limited one is written to
+		for (ByteBuffer target : new ByteBuffer[] { IOUtils.newByteBuffer(15000, false), ByteBufferFactory.getInstance().limit(IOUtils.newByteBuffer(), null, 15000l) }) {
+			CharBuffer source = IOUtils.wrap(chars, true);
+			ReadableStraightCharToByteContainer readable = new ReadableStraightCharToByteContainer(source);
+			long read = readable.read(target);
+			assertEquals(15000, read);
+			assertEquals(5000, source.remainingData());
+			assertTrue(Arrays.equals(Arrays.copyOf(allBytes(20000), 15000), IOUtils.toBytes(target)));
+		}
+	}
+}